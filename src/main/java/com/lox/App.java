@@ -1,16 +1,78 @@
 package com.lox;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Scanner;
 
+import com.lox.cache.AstCache;
 import com.lox.interpreter.exceptions.RuntimeError;
 import com.lox.parser.exceptions.ParseError;
 import com.lox.parser.exceptions.SyntaxError;
 
 public class App
 {
-    final public Lox interpreter = new Lox();
+    final public Lox interpreter;
     final public Scanner scanner = new Scanner(System.in);
 
+    public App (CommandLine cmd) {
+        this.interpreter = new Lox(cmd.hasLongFlag("regex-lexer"), astCache(cmd), engine(cmd));
+    }
+
+    /**
+     * `--engine=<name>` selects one of `Lox.ENGINES` to run programs with.
+     */
+    public static String engine (CommandLine cmd) {
+        String engine = cmd.getParameter("engine");
+        if (engine == null) {
+            return Lox.ENGINES.get(0);
+        } else if (!Lox.ENGINES.contains(engine)) {
+            System.err.println("unknown --engine: " + engine + " (expected one of " + String.join(", ", Lox.ENGINES) + ")");
+            System.exit(64);
+        }
+        return engine;
+    }
+
+    /**
+     * `--cache-dir <dir>` caches parsed scripts in `dir`, which is kept under
+     * `--cache-size <bytes>` (with an optional `k`, `m` or `g` suffix).
+     */
+    public static AstCache astCache (CommandLine cmd) {
+        String directory = cmd.getParameter("cache-dir");
+        if (directory == null) {
+            return null;
+        }
+
+        long maxSize = AstCache.DEFAULT_MAX_SIZE;
+        String size = cmd.getParameter("cache-size");
+        if (size != null) {
+            try {
+                maxSize = parseSize(size);
+            } catch (NumberFormatException e) {
+                System.err.println("invalid --cache-size: " + size);
+                System.exit(64);
+            }
+        }
+        return new AstCache(Path.of(directory), maxSize, Lox.VERSION);
+    }
+
+    private static long parseSize (String size) {
+        String lower = size.toLowerCase();
+        int shift = 0;
+        switch (lower.isEmpty() ? ' ' : lower.charAt(lower.length() - 1)) {
+            case 'k': shift = 10; break;
+            case 'm': shift = 20; break;
+            case 'g': shift = 30; break;
+        }
+        if (shift > 0) {
+            lower = lower.substring(0, lower.length() - 1);
+        }
+        long bytes = Long.parseLong(lower);
+        if (bytes < 0) {
+            throw new NumberFormatException(size);
+        }
+        return bytes << shift;
+    }
+
     public static void debugRuntimeError (RuntimeException e, boolean debugMode) {
         if (debugMode) {
             throw e;
@@ -19,17 +81,95 @@ public class App
         }
     }
 
+    /**
+     * `lox run <file> [--debug] [--cache-dir <dir>] [--engine=<name>] [--jit-stats]`
+     * executes a script file (`-` reads it from stdin). With `--engine=jit`,
+     * `--jit-stats` reports which functions were compiled once the script
+     * completes.
+     */
+    public static void runFile (CommandLine cmd, String path) {
+        App app = new App(cmd);
+        boolean debugMode = cmd.hasLongFlag("debug");
+
+        try {
+            app.interpreter.runFile(path);
+            String jitStats = app.interpreter.jitStats();
+            if (cmd.hasLongFlag("jit-stats") && jitStats != null) {
+                System.err.print(jitStats);
+            }
+        } catch (IOException e) {
+            System.err.println("cannot read '" + path + "': " + e.getMessage());
+            System.exit(66);
+        } catch (RuntimeError e) {
+            System.err.println(e.token);
+            debugRuntimeError(e, debugMode);
+            System.exit(70);
+        } catch (SyntaxError e) {
+            System.err.println(e.token);
+            debugRuntimeError(e, debugMode);
+            System.exit(65);
+        } catch (ParseError e) {
+            debugRuntimeError(e, debugMode);
+            System.exit(65);
+        }
+    }
+
+    /**
+     * `lox compile <file> -o <jar>` (or `--output <jar>`) compiles a script
+     * file into a jar that runs it with `java -jar <jar>`, and reports which
+     * functions were compiled to bytecode.
+     */
+    public static void compileFile (CommandLine cmd, String path, String output) {
+        App app = new App(cmd);
+        boolean debugMode = cmd.hasLongFlag("debug");
+
+        try {
+            for (var line : app.interpreter.compileFile(path, Path.of(output))) {
+                System.err.println("aot: " + line);
+            }
+        } catch (IOException e) {
+            System.err.println("cannot compile '" + path + "' to '" + output + "': " + e.getMessage());
+            System.exit(66);
+        } catch (IllegalStateException e) {
+            System.err.println("cannot compile '" + path + "': " + e.getMessage());
+            System.exit(70);
+        } catch (ParseError e) {
+            debugRuntimeError(e, debugMode);
+            System.exit(65);
+        }
+    }
+
     public static void main( String[] args )
     {   
-        System.out.println("Starting Lox REPL v0.1");
+        CommandLine cmd = new CommandLine(args);
+        if ("compile".equals(cmd.getArgument(0))) {
+            String path = cmd.getArgument(1);
+            String output = cmd.hasShortFlag("o") ? cmd.getArgument(2) : cmd.getParameter("output");
+            if (path == null || output == null) {
+                System.err.println("usage: lox compile <file> -o <jar>");
+                System.exit(64);
+            }
+            compileFile(cmd, path, output);
+            return;
+        }
+        if ("run".equals(cmd.getArgument(0))) {
+            String path = cmd.getArgument(1);
+            if (path == null) {
+                System.err.println("usage: lox run <file>");
+                System.exit(64);
+            }
+            runFile(cmd, path);
+            return;
+        }
+
+        System.out.println("Starting Lox REPL v" + Lox.VERSION);
         System.err.println("");
-        App app = new App();
+        App app = new App(cmd);
         
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             app.scanner.close();
         }));
 
-        CommandLine cmd = new CommandLine(args);
         boolean debugMode = cmd.hasLongFlag("debug");
 
         while (true) {
@@ -1,12 +1,15 @@
 package com.lox;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 
 public class CommandLine {
     
     final private HashMap<String, Boolean> shortFlags = new HashMap<>();
     final private HashMap<String, Boolean> longFlags = new HashMap<>();
     final private HashMap<String, String> parameters = new HashMap<>();
+    final private List<String> positionals = new ArrayList<>();
 
     public CommandLine(String[] arguments) {
         int curr = 0;
@@ -14,7 +17,11 @@ public class CommandLine {
         while (curr < arguments.length) {
             String arg = arguments[curr];
 
-            if (isLongFlag(arg)) {
+            if (isLongFlag(arg) && arg.indexOf('=') > 2) {
+                // `--flag=value`
+                int equals = arg.indexOf('=');
+                parameters.put(arg.substring(2, equals), arg.substring(equals + 1));
+            } else if (isLongFlag(arg)) {
                 if (curr < arguments.length - 1) {
                     String nextFlag = arguments[curr + 1];
                     if (!isShortFlag(nextFlag) && !isLongFlag(nextFlag)) {
@@ -26,6 +33,8 @@ public class CommandLine {
                 longFlags.put(arg.substring(2), true);
             } else if (isShortFlag(arg)) {
                 shortFlags.put(arg.substring(1), true);
+            } else {
+                positionals.add(arg);
             }
 
             curr++;
@@ -33,7 +42,8 @@ public class CommandLine {
     }
     
     private boolean isShortFlag (String arg) {
-        return arg.startsWith("-");
+        // a lone '-' is an argument (e.g. stdin)
+        return arg.startsWith("-") && arg.length() > 1;
     } 
 
     private boolean isLongFlag (String arg) {
@@ -52,4 +62,11 @@ public class CommandLine {
         return parameters.get(flag);
     }
 
+    /**
+     * Returns the positional argument at `index`, or `null` if there is none.
+     */
+    public String getArgument (int index) {
+        return index < positionals.size() ? positionals.get(index) : null;
+    }
+
 }
@@ -1,27 +1,140 @@
 package com.lox;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+import com.lox.cache.AstCache;
+import com.lox.closure.ClosureEngine;
+import com.lox.interpreter.LoxEngine;
 import com.lox.interpreter.LoxInterpreter;
+import com.lox.jit.AotCompiler;
+import com.lox.jit.Jit;
 import com.lox.lexer.LoxToken;
 import com.lox.lexer.LoxTokenType;
+import com.lox.lexer.MappedCharSequence;
+import com.lox.parser.ast.Stmt;
+import com.lox.vm.LoxVM;
 
 public class Lox {
-    final private LoxInterpreter interpreter = new LoxInterpreter();
-    private String source = "";
+    /** Interpreter version, part of the key of cached ASTs. */
+    static final public String VERSION = "0.1";
+    /** Engines selectable with `--engine`, the first is the default. */
+    static final public List<String> ENGINES = List.of("tree", "vm", "closure", "specializing", "jit");
+
+    final private LoxInterpreter interpreter;
+    final private LoxEngine engine;
+    final private ReplBuffer repl;
+    final private AstCache cache;
+
+    public Lox () {
+        this(false);
+    }
+
+    public Lox (boolean useRegexLexer) {
+        this(useRegexLexer, null);
+    }
+
+    /**
+     * With a `cache`, script files are only lexed and parsed the first time
+     * they are run.
+     */
+    public Lox (boolean useRegexLexer, AstCache cache) {
+        this(useRegexLexer, cache, ENGINES.get(0));
+    }
+
+    /**
+     * Runs programs with the `engine` of `ENGINES` named `engine`: the
+     * tree-walking `LoxInterpreter` (`tree`), the bytecode `LoxVM` (`vm`) or
+     * the `ClosureEngine`, without (`closure`) or with (`specializing`) nodes
+     * that specialise on operand types, or the `LoxInterpreter` compiling hot
+     * functions with a `Jit` (`jit`).
+     */
+    public Lox (boolean useRegexLexer, AstCache cache, String engine) {
+        this.interpreter = new LoxInterpreter(useRegexLexer);
+        this.engine = engine(engine, this.interpreter);
+        this.repl = new ReplBuffer(this.interpreter, this.engine);
+        this.cache = cache;
+    }
+
+    /**
+     * The engine named `name`, running programs parsed by `interpreter`.
+     */
+    public static LoxEngine engine (String name, LoxInterpreter interpreter) {
+        switch (name) {
+            case "tree": return interpreter;
+            case "vm": return new LoxVM(interpreter.getSymbols());
+            case "closure": return new ClosureEngine(interpreter.getSymbols());
+            case "specializing": return new ClosureEngine(interpreter.getSymbols(), true);
+            case "jit": {
+                interpreter.enableJit(new Jit());
+                return interpreter;
+            }
+            default: throw new IllegalArgumentException("unknown engine: " + name);
+        }
+    }
+
+    /**
+     * What the `jit` engine compiled and deoptimised (see `Jit.stats()`), or
+     * `null` with the other engines.
+     */
+    public String jitStats () {
+        Jit jit = this.interpreter.getJit();
+        return jit == null ? null : jit.stats();
+    }
 
     public boolean sourceIsEmpty () {
-        return source.length() <= 0;
+        return this.repl.isEmpty();
     }
 
+    /**
+     * Adds a line of REPL input, executing every statement it completes.
+     */
     public void writeLine (String line) {
-        this.source += line + "\n";
+        this.repl.writeLine(line);
     }
 
+    /**
+     * Executes whatever is left of the REPL input (`\run`).
+     */
     public void interpretSource () {
-        try {
-            this.interpreter.interpret(this.source);
-        } finally {
-            this.source = "";
+        this.repl.flush();
+    }
+
+    /**
+     * Runs a script file. The file is memory-mapped and lexed in place rather
+     * than read into a `String`; `-` streams the script from stdin instead.
+     */
+    public void runFile (String path) throws IOException {
+        if (path.equals("-")) {
+            this.interpreter.interpret(new InputStreamReader(System.in, StandardCharsets.UTF_8), this.engine);
+            return;
         }
+
+        MappedCharSequence source = MappedCharSequence.map(Path.of(path));
+        if (this.cache == null) {
+            this.engine.interpret(this.interpreter.parse(source));
+            return;
+        }
+
+        String key = this.cache.key(source.bytes());
+        List<Stmt> program = this.cache.load(key, this.interpreter.getSymbols());
+        if (program == null) {
+            program = this.interpreter.parse(source);
+            this.cache.store(key, program);
+        }
+        this.engine.interpret(program);
+    }
+
+    /**
+     * Compiles a script file ahead of time into the runnable jar `jar` (see
+     * `AotCompiler`), returning what happened to each of its functions.
+     */
+    public List<String> compileFile (String path, Path jar) throws IOException {
+        List<Stmt> program = this.interpreter.parse(MappedCharSequence.map(Path.of(path)));
+        return new AotCompiler().compile(program, jar);
     }
 
     public static void report (Object... args) {
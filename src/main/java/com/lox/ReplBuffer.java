@@ -0,0 +1,258 @@
+package com.lox;
+
+import com.lox.interpreter.LoxEngine;
+import com.lox.interpreter.LoxInterpreter;
+import com.lox.lexer.LoxScanner;
+import com.lox.lexer.LoxTokenType;
+import com.lox.lexer.TokenBuffer;
+import com.lox.lexer.exceptions.InvalidTokenException;
+
+/**
+ * The REPL's input buffer. Each line written to it is lexed on its own and its
+ * tokens are appended to those of the lines before it. A running count of open
+ * parentheses and braces tells when a statement is complete, and only the
+ * completed statements are then parsed and executed. Entering a long
+ * multi-line declaration thus lexes every line once and parses the declaration
+ * once, however large the buffer grows.
+ *
+ * A statement containing an `if` is held back until the next token, which may
+ * continue it with an `else`. A blank line or `flush()` executes it.
+ */
+class ReplBuffer {
+    final private LoxInterpreter interpreter;
+    final private LoxEngine engine;
+    final private StringBuilder text = new StringBuilder();
+    private TokenBuffer tokens;
+
+    // offset in `text` lexed so far, and the scanner's line and col there
+    private int lexed;
+    private int line;
+    private int col;
+
+    // tokens before `executed` were executed, tokens before `complete` form
+    // complete statements
+    private int executed;
+    private int complete;
+    // end of a complete statement an `else` could still continue (or -1)
+    private int held;
+    private int depth;
+    private boolean sawIf;
+    private LoxTokenType previous;
+    // whether the open `(` holds, or the last `)` closed, the parameters of an
+    // anonymous function, and whether the outermost open brace is its body
+    private boolean inParameters;
+    private boolean closedParameters;
+    private boolean inExpression;
+
+    ReplBuffer (LoxInterpreter interpreter) {
+        this(interpreter, interpreter);
+    }
+
+    /**
+     * Parses the statements with `interpreter` and executes them with `engine`.
+     */
+    ReplBuffer (LoxInterpreter interpreter, LoxEngine engine) {
+        this.interpreter = interpreter;
+        this.engine = engine;
+        this.reset();
+    }
+
+    boolean isEmpty () {
+        return this.text.length() == 0;
+    }
+
+    /**
+     * Appends a line and executes the statements it completes.
+     */
+    void writeLine (String line) {
+        int tokenCount = this.tokens.size();
+        this.text.append(line).append('\n');
+        if (!this.lex(false)) {
+            return;
+        }
+
+        if (this.held >= 0 && this.tokens.size() == tokenCount && this.lexed == this.text.length()) {
+            // a blank line rules out an `else`
+            this.completeHeld();
+        }
+        this.executeComplete();
+    }
+
+    /**
+     * Executes everything left in the buffer as if the input ended here, which
+     * reports incomplete statements as parse errors.
+     */
+    void flush () {
+        try {
+            if (!this.lex(true)) {
+                return;
+            }
+            if (this.executed < this.tokens.size()) {
+                this.engine.interpret(this.interpreter.parse(this.tokens.slice(this.executed, this.tokens.size())));
+            }
+        } finally {
+            this.reset();
+        }
+    }
+
+    private void reset () {
+        this.text.setLength(0);
+        this.tokens = new TokenBuffer(this.text, this.interpreter.getSymbols());
+        this.lexed = 0;
+        this.line = 1;
+        this.col = 0;
+        this.executed = 0;
+        this.complete = 0;
+        this.held = -1;
+        this.depth = 0;
+        this.sawIf = false;
+        this.previous = null;
+        this.inParameters = false;
+        this.closedParameters = false;
+        this.inExpression = false;
+    }
+
+    /**
+     * Lexes the text appended since the last call. Unless `atEnd`, a string
+     * literal that is still open is left to be lexed with the next line.
+     * Returns `false` if an invalid token was reported and the buffer dropped.
+     */
+    private boolean lex (boolean atEnd) {
+        LoxScanner scanner = new LoxScanner(this.text, this.lexed, this.text.length(), this.line, this.col);
+        try {
+            LoxTokenType type;
+            while ((type = scanner.scanToken()) != null) {
+                this.tokens.add(type, scanner.getStart(), scanner.getLength(), scanner.getLine(), scanner.getCol());
+                this.track(type);
+            }
+        } catch (InvalidTokenException e) {
+            if (atEnd || !this.isOpenString(scanner.getStart())) {
+                System.err.println(e.getMessage());
+                this.reset();
+                return false;
+            }
+        }
+
+        this.lexed = scanner.getStart();
+        this.line = scanner.getLine();
+        this.col = scanner.getCol();
+        return true;
+    }
+
+    /**
+     * Whether the text from `start` is a string literal that more input could
+     * still close (an escaped line terminator can never be).
+     */
+    private boolean isOpenString (int start) {
+        if (this.text.charAt(start) != '"') {
+            return false;
+        }
+        for (int i = start + 1; i < this.text.length(); i++) {
+            char c = this.text.charAt(i);
+            if (c == '"') {
+                return false;
+            } else if (c == '\\') {
+                if (++i < this.text.length() && isLineTerminator(this.text.charAt(i))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean isLineTerminator (char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    /**
+     * Updates the statement boundaries with the token just appended. A `}`
+     * closing the body of an anonymous function ends an expression rather
+     * than a statement, which goes on to its `;`.
+     */
+    private void track (LoxTokenType type) {
+        if (this.held >= 0) {
+            if (type == LoxTokenType.ELSE) {
+                this.held = -1;
+            } else {
+                this.completeHeld();
+            }
+        }
+
+        boolean afterFun = this.previous == LoxTokenType.FUN;
+        boolean afterParameters = this.closedParameters;
+        this.previous = type;
+        this.closedParameters = false;
+
+        switch (type) {
+            case LEFT_PAREN: {
+                this.inParameters = afterFun;
+                this.depth++;
+                return;
+            }
+            case LEFT_BRACE: {
+                if (this.depth <= 0) {
+                    this.inExpression = afterParameters;
+                }
+                this.depth++;
+                return;
+            }
+            case RIGHT_PAREN: {
+                this.closedParameters = this.inParameters;
+                this.inParameters = false;
+                this.depth--;
+                return;
+            }
+            case IF: {
+                this.sawIf |= this.depth <= 0;
+                return;
+            }
+            case RIGHT_BRACE: {
+                if (--this.depth <= 0 && this.inExpression) {
+                    this.depth = 0;
+                    this.inExpression = false;
+                    return;
+                }
+                break;
+            }
+            case SEMICOLON: {
+                break;
+            }
+            default: {
+                return;
+            }
+        }
+
+        if (this.depth > 0) {
+            return;
+        }
+        this.depth = 0;
+        if (this.sawIf) {
+            this.held = this.tokens.size();
+        } else {
+            this.complete = this.tokens.size();
+        }
+    }
+
+    private void completeHeld () {
+        this.complete = this.held;
+        this.held = -1;
+        this.sawIf = false;
+    }
+
+    private void executeComplete () {
+        if (this.complete > this.executed) {
+            int start = this.executed;
+            this.executed = this.complete;
+            try {
+                this.engine.interpret(this.interpreter.parse(this.tokens.slice(start, this.complete)));
+            } catch (RuntimeException e) {
+                this.reset();
+                throw e;
+            }
+        }
+
+        if (this.executed == this.tokens.size() && this.held < 0 && this.lexed == this.text.length()) {
+            this.reset();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.lox.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+import com.lox.lexer.SymbolTable;
+import com.lox.parser.ast.Stmt;
+
+/**
+ * A directory of parsed programs, like Python's `__pycache__`. Entries are
+ * named by the SHA-256 of the interpreter version, the `AstCodec` format
+ * version and the source, so a changed script or interpreter never hits a
+ * stale entry.
+ *
+ * The directory is kept under `maxSize` bytes by deleting the least recently
+ * used entries, using their modification time (which a hit refreshes). Entries
+ * are written to a temporary file and moved in place, so concurrent runs of
+ * the same script never read a partially written entry; an unreadable entry is
+ * treated as a miss and deleted.
+ */
+public class AstCache {
+    /** Cache size used when none is configured. */
+    static final public long DEFAULT_MAX_SIZE = 64L << 20;
+    static final private String SUFFIX = ".loxast";
+
+    final private Path directory;
+    final private long maxSize;
+    final private String version;
+
+    public AstCache (Path directory, long maxSize, String version) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.version = version;
+    }
+
+    /**
+     * The cache key of a source file's raw bytes.
+     */
+    public String key (ByteBuffer source) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+        digest.update((this.version + "/" + AstCodec.FORMAT_VERSION + "\n").getBytes());
+        digest.update(source.duplicate());
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Returns the cached program for `key`, or `null` on a miss.
+     */
+    public List<Stmt> load (String key, SymbolTable symbols) {
+        Path entry = this.entry(key);
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(entry))) {
+            List<Stmt> program = AstCodec.read(new DataInputStream(in), symbols);
+            this.touch(entry);
+            return program;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            // corrupt or truncated entry
+            this.delete(entry);
+            return null;
+        }
+    }
+
+    /**
+     * Stores `program` under `key` and evicts old entries if the cache grew
+     * past its size. Failing to write the cache never fails the run.
+     */
+    public void store (String key, List<Stmt> program) {
+        Path entry = this.entry(key);
+        Path temporary = null;
+        try {
+            Files.createDirectories(this.directory);
+            temporary = Files.createTempFile(this.directory, key, ".tmp");
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temporary))) {
+                AstCodec.write(program, new DataOutputStream(out));
+            }
+            try {
+                Files.move(temporary, entry, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, entry, StandardCopyOption.REPLACE_EXISTING);
+            }
+            this.evict();
+        } catch (IOException e) {
+            if (temporary != null) {
+                this.delete(temporary);
+            }
+        }
+    }
+
+    private Path entry (String key) {
+        return this.directory.resolve(key + SUFFIX);
+    }
+
+    private void touch (Path path) {
+        try {
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // a read-only cache is still usable, it just cannot track recency
+        }
+    }
+
+    private void delete (Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // another run may be holding or replacing it
+        }
+    }
+
+    /**
+     * Deletes the least recently used entries until the cache fits `maxSize`.
+     */
+    private void evict () throws IOException {
+        record Entry (Path path, long size, long lastUsed) {}
+
+        List<Entry> entries = new ArrayList<>();
+        long total = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory, "*" + SUFFIX)) {
+            for (Path path : stream) {
+                try {
+                    Entry entry = new Entry(path, Files.size(path), Files.getLastModifiedTime(path).toMillis());
+                    entries.add(entry);
+                    total += entry.size;
+                } catch (NoSuchFileException e) {
+                    // evicted by a concurrent run
+                }
+            }
+        }
+
+        if (total <= this.maxSize) {
+            return;
+        }
+        entries.sort((a, b) -> Long.compare(a.lastUsed, b.lastUsed));
+        for (Entry entry : entries) {
+            if (total <= this.maxSize) break;
+            this.delete(entry.path);
+            total -= entry.size;
+        }
+    }
+}
@@ -0,0 +1,524 @@
+package com.lox.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.lox.lexer.LoxScanner;
+import com.lox.lexer.LoxToken;
+import com.lox.lexer.LoxTokenType;
+import com.lox.lexer.SymbolTable;
+import com.lox.parser.ast.Expr;
+import com.lox.parser.ast.Stmt;
+
+/**
+ * Binary encoding of a parsed program. Each lexeme is stored once in a string
+ * table that precedes the statements; nodes are written depth-first as a tag
+ * byte followed by their fields, and tokens as their type, lexeme index, line
+ * and col. Literals are not stored but rebuilt from the lexeme the same way
+ * the `LoxScanner` builds them.
+ */
+public class AstCodec {
+    /** Bump whenever the encoding or the set of AST nodes changes. */
+    static final public int FORMAT_VERSION = 3;
+    static final private int MAGIC = 0x4C4F5843; // "LOXC"
+
+    static final private LoxTokenType[] TYPES = LoxTokenType.values();
+
+    // node tags, 0 encodes `null`
+    static final private int VAR_DECL_STMT = 1;
+    static final private int FUN_DECL_STMT = 2;
+    static final private int EXPRESSION_STMT = 3;
+    static final private int PRINT_STMT = 4;
+    static final private int RETURN_STMT = 5;
+    static final private int BLOCK_STMT = 6;
+    static final private int IF_STMT = 7;
+    static final private int WHILE_STMT = 8;
+    static final private int SINGLE_KEYWORD_STMT = 9;
+    static final private int FOR_STMT = 10;
+
+    static final private int ASSIGNMENT_EXPR = 16;
+    static final private int ANONYMOUS_FUNC_EXPR = 17;
+    static final private int GROUPING_EXPR = 18;
+    static final private int BINARY_EXPR = 19;
+    static final private int UNARY_EXPR = 20;
+    static final private int LITERAL_EXPR = 21;
+    static final private int VARIABLE_EXPR = 22;
+    static final private int CALL_EXPR = 23;
+    static final private int LOGICAL_EXPR = 24;
+
+    // ===== ENCODING =====
+
+    public static void write (List<Stmt> program, DataOutputStream out) throws IOException {
+        // the string table is only complete once the whole AST was visited
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        Encoder encoder = new Encoder(new DataOutputStream(body));
+        encoder.writeStatements(program);
+
+        out.writeInt(MAGIC);
+        writeVarint(out, FORMAT_VERSION);
+        writeVarint(out, encoder.lexemes.size());
+        for (String lexeme : encoder.lexemes) {
+            byte[] bytes = lexeme.getBytes(StandardCharsets.UTF_8);
+            writeVarint(out, bytes.length);
+            out.write(bytes);
+        }
+        body.writeTo(out);
+    }
+
+    static private class Encoder implements Stmt.Visitor<Void>, Expr.Visitor<Void> {
+        final private DataOutputStream out;
+        final private Map<String, Integer> indices = new HashMap<>();
+        final private List<String> lexemes = new ArrayList<>();
+
+        Encoder (DataOutputStream out) {
+            this.out = out;
+        }
+
+        void writeStatements (List<? extends Stmt> statements) throws IOException {
+            this.varint(statements.size());
+            for (Stmt statement : statements) {
+                this.writeStatement(statement);
+            }
+        }
+
+        void writeStatement (Stmt statement) throws IOException {
+            if (statement == null) {
+                this.varint(0);
+            } else {
+                this.unchecked(() -> statement.accept(this));
+            }
+        }
+
+        void writeExpressions (List<Expr> expressions) throws IOException {
+            this.varint(expressions.size());
+            for (Expr expression : expressions) {
+                this.writeExpression(expression);
+            }
+        }
+
+        void writeExpression (Expr expression) throws IOException {
+            if (expression == null) {
+                this.varint(0);
+            } else {
+                this.unchecked(() -> expression.accept(this));
+            }
+        }
+
+        void writeTokens (List<LoxToken> tokens) throws IOException {
+            this.varint(tokens.size());
+            for (LoxToken token : tokens) {
+                this.writeToken(token);
+            }
+        }
+
+        void writeToken (LoxToken token) throws IOException {
+            if (token == null) {
+                this.varint(0);
+                return;
+            }
+            Integer index = this.indices.get(token.lexeme);
+            if (index == null) {
+                index = this.lexemes.size();
+                this.indices.put(token.lexeme, index);
+                this.lexemes.add(token.lexeme);
+            }
+            this.varint(token.type.ordinal() + 1);
+            this.varint(index);
+            this.varint(token.line);
+            this.varint(token.col);
+        }
+
+        void varint (int value) throws IOException {
+            writeVarint(this.out, value);
+        }
+
+        // ===== VISITORS =====
+
+        @FunctionalInterface
+        interface Write {
+            void run () throws IOException;
+        }
+
+        /**
+         * Visitor methods cannot throw `IOException`: it is tunneled out of
+         * `accept` and rethrown.
+         */
+        private void unchecked (Runnable visit) throws IOException {
+            try {
+                visit.run();
+            } catch (EncodingException e) {
+                throw e.cause;
+            }
+        }
+
+        private Void node (int tag, Write fields) {
+            try {
+                this.varint(tag);
+                fields.run();
+            } catch (IOException e) {
+                throw new EncodingException(e);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitVarDeclStmt (Stmt.VarDeclStmt stmt) {
+            return this.node(VAR_DECL_STMT, () -> {
+                this.writeToken(stmt.identifier);
+                this.writeExpression(stmt.expression);
+            });
+        }
+
+        @Override
+        public Void visitFunDeclStmt (Stmt.FunDeclStmt stmt) {
+            return this.node(FUN_DECL_STMT, () -> {
+                this.writeToken(stmt.identifier);
+                this.writeTokens(stmt.parameters);
+                this.writeStatement(stmt.body);
+            });
+        }
+
+        @Override
+        public Void visitExpressionStmt (Stmt.ExpressionStmt stmt) {
+            return this.node(EXPRESSION_STMT, () -> this.writeExpression(stmt.expression));
+        }
+
+        @Override
+        public Void visitPrintStmt (Stmt.PrintStmt stmt) {
+            return this.node(PRINT_STMT, () -> this.writeExpression(stmt.expression));
+        }
+
+        @Override
+        public Void visitReturnStmt (Stmt.ReturnStmt stmt) {
+            return this.node(RETURN_STMT, () -> this.writeExpression(stmt.expression));
+        }
+
+        @Override
+        public Void visitBlockStmt (Stmt.BlockStmt stmt) {
+            return this.node(BLOCK_STMT, () -> this.writeStatements(stmt.declarations));
+        }
+
+        @Override
+        public Void visitIfStmt (Stmt.IfStmt stmt) {
+            return this.node(IF_STMT, () -> {
+                this.writeExpression(stmt.condition);
+                this.writeStatement(stmt.statement);
+                this.writeStatements(stmt.elseIfStatements);
+                this.writeStatement(stmt.elseStatement);
+            });
+        }
+
+        @Override
+        public Void visitWhileStmt (Stmt.WhileStmt stmt) {
+            return this.node(WHILE_STMT, () -> {
+                this.writeExpression(stmt.condition);
+                this.writeStatement(stmt.statement);
+            });
+        }
+
+        @Override
+        public Void visitForStmt (Stmt.ForStmt stmt) {
+            return this.node(FOR_STMT, () -> {
+                this.writeStatement(stmt.initializer);
+                this.writeExpression(stmt.condition);
+                this.writeExpression(stmt.increment);
+                this.writeStatement(stmt.statement);
+            });
+        }
+
+        @Override
+        public Void visitSingleKeywordStmt (Stmt.SingleKeywordStmt stmt) {
+            return this.node(SINGLE_KEYWORD_STMT, () -> this.writeToken(stmt.keyword));
+        }
+
+        @Override
+        public Void visitAssignmentExpr (Expr.Assignment expr) {
+            return this.node(ASSIGNMENT_EXPR, () -> {
+                this.writeToken(expr.variable);
+                this.writeExpression(expr.right);
+            });
+        }
+
+        @Override
+        public Void visitAnonymousFuncExpr (Expr.AnonymousFunc expr) {
+            return this.node(ANONYMOUS_FUNC_EXPR, () -> {
+                this.writeTokens(expr.parameters);
+                this.writeStatement(expr.body);
+            });
+        }
+
+        @Override
+        public Void visitGroupingExpr (Expr.Grouping expr) {
+            return this.node(GROUPING_EXPR, () -> this.writeExpression(expr.expression));
+        }
+
+        @Override
+        public Void visitBinaryExpr (Expr.Binary expr) {
+            return this.node(BINARY_EXPR, () -> {
+                this.writeExpression(expr.left);
+                this.writeToken(expr.operator);
+                this.writeExpression(expr.right);
+            });
+        }
+
+        @Override
+        public Void visitLogicalExpr (Expr.Logical expr) {
+            return this.node(LOGICAL_EXPR, () -> {
+                this.writeExpression(expr.left);
+                this.writeToken(expr.operator);
+                this.writeExpression(expr.right);
+            });
+        }
+
+        @Override
+        public Void visitUnaryExpr (Expr.Unary expr) {
+            return this.node(UNARY_EXPR, () -> {
+                this.writeToken(expr.operator);
+                this.writeExpression(expr.right);
+            });
+        }
+
+        @Override
+        public Void visitLiteralExpr (Expr.Literal expr) {
+            return this.node(LITERAL_EXPR, () -> this.writeToken(expr.token));
+        }
+
+        @Override
+        public Void visitVariableExpr (Expr.Variable expr) {
+            return this.node(VARIABLE_EXPR, () -> this.writeToken(expr.token));
+        }
+
+        @Override
+        public Void visitCallExpr (Expr.Call expr) {
+            return this.node(CALL_EXPR, () -> {
+                this.writeExpression(expr.callee);
+                this.writeToken(expr.paren);
+                this.writeExpressions(expr.arguments);
+            });
+        }
+    }
+
+    static private class EncodingException extends RuntimeException {
+        final IOException cause;
+
+        EncodingException (IOException cause) {
+            this.cause = cause;
+        }
+    }
+
+    // ===== DECODING =====
+
+    /**
+     * Reads a program written by `write`. Names are interned in `symbols`, as
+     * if the program had been lexed by a `LoxLexer` sharing them. `in` must
+     * report the rest of its length through `available()` (as file and byte
+     * array streams do), which bounds the sizes read from a corrupt entry.
+     */
+    public static List<Stmt> read (DataInputStream in, SymbolTable symbols) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("not a Lox AST cache file");
+        }
+        int version = readVarint(in);
+        if (version != FORMAT_VERSION) {
+            throw new IOException("unsupported AST format version " + version);
+        }
+
+        String[] lexemes = new String[readLength(in)];
+        for (int i = 0; i < lexemes.length; i++) {
+            byte[] bytes = new byte[readLength(in)];
+            in.readFully(bytes);
+            lexemes[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        return new Decoder(in, symbols, lexemes).readStatements();
+    }
+
+    static private class Decoder {
+        final private DataInputStream in;
+        final private SymbolTable symbols;
+        final private String[] lexemes;
+
+        Decoder (DataInputStream in, SymbolTable symbols, String[] lexemes) {
+            this.in = in;
+            this.symbols = symbols;
+            this.lexemes = lexemes;
+        }
+
+        List<Stmt> readStatements () throws IOException {
+            int size = readLength(this.in);
+            List<Stmt> statements = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                statements.add(this.readStatement());
+            }
+            return statements;
+        }
+
+        Stmt readStatement () throws IOException {
+            int tag = readVarint(this.in);
+            switch (tag) {
+                case 0:
+                    return null;
+                case VAR_DECL_STMT: {
+                    LoxToken identifier = this.readToken();
+                    return new Stmt.VarDeclStmt(identifier, this.readExpression());
+                }
+                case FUN_DECL_STMT: {
+                    LoxToken identifier = this.readToken();
+                    List<LoxToken> parameters = this.readTokens();
+                    return new Stmt.FunDeclStmt(identifier, parameters, (Stmt.BlockStmt)this.readStatement());
+                }
+                case EXPRESSION_STMT:
+                    return new Stmt.ExpressionStmt(this.readExpression());
+                case PRINT_STMT:
+                    return new Stmt.PrintStmt(this.readExpression());
+                case RETURN_STMT:
+                    return new Stmt.ReturnStmt(this.readExpression());
+                case BLOCK_STMT:
+                    return new Stmt.BlockStmt(this.readStatements());
+                case IF_STMT: {
+                    Expr condition = this.readExpression();
+                    Stmt statement = this.readStatement();
+                    List<Stmt.IfStmt> elseIfStatements = new ArrayList<>();
+                    for (Stmt elseIfStatement : this.readStatements()) {
+                        elseIfStatements.add((Stmt.IfStmt)elseIfStatement);
+                    }
+                    return new Stmt.IfStmt(condition, statement, elseIfStatements, this.readStatement());
+                }
+                case WHILE_STMT: {
+                    Expr condition = this.readExpression();
+                    return new Stmt.WhileStmt(condition, this.readStatement());
+                }
+                case FOR_STMT: {
+                    Stmt initializer = this.readStatement();
+                    Expr condition = this.readExpression();
+                    Expr increment = this.readExpression();
+                    return new Stmt.ForStmt(initializer, condition, increment, this.readStatement());
+                }
+                case SINGLE_KEYWORD_STMT:
+                    return new Stmt.SingleKeywordStmt(this.readToken());
+                default:
+                    throw new IOException("unknown statement tag " + tag);
+            }
+        }
+
+        List<Expr> readExpressions () throws IOException {
+            int size = readLength(this.in);
+            List<Expr> expressions = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                expressions.add(this.readExpression());
+            }
+            return expressions;
+        }
+
+        Expr readExpression () throws IOException {
+            int tag = readVarint(this.in);
+            switch (tag) {
+                case 0:
+                    return null;
+                case ASSIGNMENT_EXPR: {
+                    LoxToken variable = this.readToken();
+                    return new Expr.Assignment(variable, this.readExpression());
+                }
+                case ANONYMOUS_FUNC_EXPR: {
+                    List<LoxToken> parameters = this.readTokens();
+                    return new Expr.AnonymousFunc(parameters, (Stmt.BlockStmt)this.readStatement());
+                }
+                case GROUPING_EXPR:
+                    return new Expr.Grouping(this.readExpression());
+                case BINARY_EXPR: {
+                    Expr left = this.readExpression();
+                    LoxToken operator = this.readToken();
+                    return new Expr.Binary(left, operator, this.readExpression());
+                }
+                case LOGICAL_EXPR: {
+                    Expr left = this.readExpression();
+                    LoxToken operator = this.readToken();
+                    return new Expr.Logical(left, operator, this.readExpression());
+                }
+                case UNARY_EXPR: {
+                    LoxToken operator = this.readToken();
+                    return new Expr.Unary(operator, this.readExpression());
+                }
+                case LITERAL_EXPR:
+                    return new Expr.Literal(this.readToken());
+                case VARIABLE_EXPR:
+                    return new Expr.Variable(this.readToken());
+                case CALL_EXPR: {
+                    Expr callee = this.readExpression();
+                    LoxToken paren = this.readToken();
+                    return new Expr.Call(callee, paren, this.readExpressions());
+                }
+                default:
+                    throw new IOException("unknown expression tag " + tag);
+            }
+        }
+
+        List<LoxToken> readTokens () throws IOException {
+            int size = readLength(this.in);
+            List<LoxToken> tokens = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                tokens.add(this.readToken());
+            }
+            return tokens;
+        }
+
+        LoxToken readToken () throws IOException {
+            int type = readVarint(this.in);
+            if (type == 0) {
+                return null;
+            }
+            if (type > TYPES.length) {
+                throw new IOException("unknown token type " + (type - 1));
+            }
+            int index = readVarint(this.in);
+            if (index >= this.lexemes.length) {
+                throw new IOException("lexeme index out of range: " + index);
+            }
+            String lexeme = this.lexemes[index];
+            int line = readVarint(this.in);
+            int col = readVarint(this.in);
+            return LoxScanner.materialize(lexeme, this.symbols, TYPES[type - 1], 0, lexeme.length(), line, col);
+        }
+    }
+
+    // ===== VARINTS =====
+
+    static private void writeVarint (DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Reads the size of a list or string, which can be no larger than what is
+     * left of the input since every element takes at least one byte.
+     */
+    static private int readLength (DataInputStream in) throws IOException {
+        int length = readVarint(in);
+        if (length < 0 || length > in.available()) {
+            throw new IOException("length " + length + " runs past the end of the input");
+        }
+        return length;
+    }
+
+    static private int readVarint (DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("malformed varint");
+    }
+}
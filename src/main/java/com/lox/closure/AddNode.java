@@ -0,0 +1,61 @@
+package com.lox.closure;
+
+import com.lox.interpreter.Environment;
+import com.lox.interpreter.exceptions.RuntimeError;
+import com.lox.lexer.LoxToken;
+
+/**
+ * `+`, which also specialises on strings.
+ */
+final class AddNode extends ArithmeticNode {
+
+    AddNode (ExprNode left, ExprNode right, LoxToken operator) {
+        super(left, right, operator);
+    }
+
+    @Override
+    Object numbers (double left, double right) {
+        return left + right;
+    }
+
+    @Override
+    public double evaluateNumber (Environment environment) {
+        if (this.state != NUMBERS) {
+            return this.unspecialized(environment);
+        }
+        double left;
+        try {
+            left = this.left.evaluateNumber(environment);
+        } catch (UnexpectedResult e) {
+            return this.leftFailed(e.result, environment);
+        }
+        try {
+            return left + this.right.evaluateNumber(environment);
+        } catch (UnexpectedResult e) {
+            return this.rightFailed(left, e.result);
+        }
+    }
+
+    @Override
+    Object strings (String left, String right) {
+        return left + right;
+    }
+
+    @Override
+    Object generic (Object left, Object right) {
+        if (left instanceof Double && right instanceof Double) {
+            return (Double)left + (Double)right;
+        } else if (left instanceof String && right instanceof String) {
+            return (String)left + (String)right;
+        }
+        throw new RuntimeError(this.operator, "operands must be of type: 'String' or 'Number'");
+    }
+
+    @Override
+    int specialize (Object left, Object right) {
+        if (left instanceof String && right instanceof String) {
+            return STRINGS;
+        }
+        return super.specialize(left, right);
+    }
+}
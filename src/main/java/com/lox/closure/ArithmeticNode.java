@@ -0,0 +1,128 @@
+package com.lox.closure;
+
+import com.lox.interpreter.Environment;
+import com.lox.lexer.LoxToken;
+
+/**
+ * A `SpecializingBinary` whose result for two numbers is a number, which it
+ * hands to a parent that speculates on numbers without boxing it. Each
+ * operator repeats the unboxed path of `evaluateNumber(Environment)` with its
+ * own operation, so the JIT compiles one straight-line path per operator.
+ */
+abstract class ArithmeticNode extends SpecializingBinary {
+
+    ArithmeticNode (ExprNode left, ExprNode right, LoxToken operator) {
+        super(left, right, operator);
+    }
+
+    /** The result of the operator when the operands are not known to be numbers. */
+    final double unspecialized (Environment environment) {
+        return unbox(this.evaluate(environment));
+    }
+
+    /** Gives up speculating after the left operand evaluated to `left`. */
+    final double leftFailed (Object left, Environment environment) {
+        return unbox(this.generalize(left, this.right.evaluate(environment)));
+    }
+
+    /** Gives up speculating after the right operand evaluated to `right`. */
+    final double rightFailed (double left, Object right) {
+        return unbox(this.generalize(left, right));
+    }
+
+    private static double unbox (Object value) {
+        if (value instanceof Double number) {
+            return number;
+        }
+        throw new UnexpectedResult(value);
+    }
+
+    // ===== OPERATORS =====
+
+    static final class Subtract extends ArithmeticNode {
+        Subtract (ExprNode left, ExprNode right, LoxToken operator) {
+            super(left, right, operator);
+        }
+
+        @Override
+        Object numbers (double left, double right) {
+            return left - right;
+        }
+
+        @Override
+        public double evaluateNumber (Environment environment) {
+            if (this.state != NUMBERS) {
+                return this.unspecialized(environment);
+            }
+            double left;
+            try {
+                left = this.left.evaluateNumber(environment);
+            } catch (UnexpectedResult e) {
+                return this.leftFailed(e.result, environment);
+            }
+            try {
+                return left - this.right.evaluateNumber(environment);
+            } catch (UnexpectedResult e) {
+                return this.rightFailed(left, e.result);
+            }
+        }
+    }
+
+    static final class Multiply extends ArithmeticNode {
+        Multiply (ExprNode left, ExprNode right, LoxToken operator) {
+            super(left, right, operator);
+        }
+
+        @Override
+        Object numbers (double left, double right) {
+            return left * right;
+        }
+
+        @Override
+        public double evaluateNumber (Environment environment) {
+            if (this.state != NUMBERS) {
+                return this.unspecialized(environment);
+            }
+            double left;
+            try {
+                left = this.left.evaluateNumber(environment);
+            } catch (UnexpectedResult e) {
+                return this.leftFailed(e.result, environment);
+            }
+            try {
+                return left * this.right.evaluateNumber(environment);
+            } catch (UnexpectedResult e) {
+                return this.rightFailed(left, e.result);
+            }
+        }
+    }
+
+    static final class Divide extends ArithmeticNode {
+        Divide (ExprNode left, ExprNode right, LoxToken operator) {
+            super(left, right, operator);
+        }
+
+        @Override
+        Object numbers (double left, double right) {
+            return left / right;
+        }
+
+        @Override
+        public double evaluateNumber (Environment environment) {
+            if (this.state != NUMBERS) {
+                return this.unspecialized(environment);
+            }
+            double left;
+            try {
+                left = this.left.evaluateNumber(environment);
+            } catch (UnexpectedResult e) {
+                return this.leftFailed(e.result, environment);
+            }
+            try {
+                return left / this.right.evaluateNumber(environment);
+            } catch (UnexpectedResult e) {
+                return this.rightFailed(left, e.result);
+            }
+        }
+    }
+}
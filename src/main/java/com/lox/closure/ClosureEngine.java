@@ -0,0 +1,74 @@
+package com.lox.closure;
+
+import java.util.List;
+
+import com.lox.interpreter.Environment;
+import com.lox.interpreter.LoxEngine;
+import com.lox.interpreter.LoxInterpreter;
+import com.lox.interpreter.Resolver;
+import com.lox.interpreter.exceptions.Return;
+import com.lox.lexer.SymbolTable;
+import com.lox.parser.ast.LoxCallable;
+import com.lox.parser.ast.Stmt;
+
+/**
+ * An engine that compiles each node of a program once into an `ExprNode` or
+ * `StmtNode` lambda with its children already linked (see `NodeCompiler`),
+ * then runs the lambdas. Compared to the `LoxInterpreter` there is no double
+ * dispatch through the AST visitors and no `switch` on operators at run time.
+ *
+ * Scopes are the same `Environment`s as in the `LoxInterpreter`, so both
+ * engines behave the same. A `return`, `break` or `continue` is not thrown but
+ * passed back up to the function or loop as the result of each statement (see
+ * `StmtNode`): unwinding an exception through the lambdas' frames, which the
+ * JIT does not inline into each other, would make every call several times
+ * slower. Only a `break` or `continue` that leaves its function is thrown, as
+ * the same exception as in the `LoxInterpreter`.
+ *
+ * With `specialize`, arithmetic and comparison nodes specialise themselves on
+ * the operand types they see (see `SpecializingBinary`).
+ */
+public class ClosureEngine implements LoxEngine {
+    final private boolean specialize;
+    final private Resolver resolver = new Resolver();
+    final private Environment globals = new Environment();
+    final private Environment script;
+
+    /**
+     * Names in the programs run by this engine must be interned in `symbols`.
+     */
+    public ClosureEngine (SymbolTable symbols) {
+        this(symbols, false);
+    }
+
+    public ClosureEngine (SymbolTable symbols, boolean specialize) {
+        this.specialize = specialize;
+        this.globals.define(symbols.intern("clock"), new LoxCallable() {
+            @Override
+            public int arity() { return 0; }
+
+            @Override
+            public Object call(LoxInterpreter interpreter, List<Object> arguments) {
+                return (double)System.currentTimeMillis() / 1000.0;
+            }
+
+            @Override
+            public String toString() { return "<native fn>"; }
+        });
+
+        this.script = new Environment(this.globals);
+    }
+
+    @Override
+    public void interpret (List<Stmt> program) {
+        this.resolver.resolve(program);
+        for (var statement : NodeCompiler.compile(program, this.specialize)) {
+            Object value = statement.execute(this.script);
+            LoxInterpreter.escape(value);
+            if (value != null) {
+                // like the `LoxInterpreter`, a `return` outside of a function escapes
+                throw new Return(value == StmtNode.NIL ? null : value);
+            }
+        }
+    }
+}
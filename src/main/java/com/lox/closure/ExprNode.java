@@ -0,0 +1,25 @@
+package com.lox.closure;
+
+import com.lox.interpreter.Environment;
+
+/**
+ * An expression compiled by the `NodeCompiler`: evaluates it in the scope it
+ * is handed, with its operands already compiled and linked.
+ */
+@FunctionalInterface
+interface ExprNode {
+    Object evaluate (Environment environment);
+
+    /**
+     * Evaluates an expression expected to be a number, without boxing it if
+     * the node can avoid it. Throws `UnexpectedResult` with the value if it is
+     * not a number.
+     */
+    default double evaluateNumber (Environment environment) {
+        Object value = this.evaluate(environment);
+        if (value instanceof Double number) {
+            return number;
+        }
+        throw new UnexpectedResult(value);
+    }
+}
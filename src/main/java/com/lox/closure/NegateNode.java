@@ -0,0 +1,55 @@
+package com.lox.closure;
+
+import com.lox.interpreter.Environment;
+import com.lox.interpreter.helpers.ExprHelper;
+import com.lox.lexer.LoxToken;
+
+/**
+ * Unary `-`, which speculates that its operand is a number (see
+ * `SpecializingBinary`) until it is not.
+ */
+final class NegateNode implements ExprNode {
+    final private ExprNode right;
+    final private LoxToken operator;
+    private boolean numbers = true;
+
+    NegateNode (ExprNode right, LoxToken operator) {
+        this.right = right;
+        this.operator = operator;
+    }
+
+    @Override
+    public Object evaluate (Environment environment) {
+        if (this.numbers) {
+            try {
+                return -this.right.evaluateNumber(environment);
+            } catch (UnexpectedResult e) {
+                return this.generalize(e.result);
+            }
+        }
+        return this.generic(this.right.evaluate(environment));
+    }
+
+    @Override
+    public double evaluateNumber (Environment environment) {
+        if (this.numbers) {
+            try {
+                return -this.right.evaluateNumber(environment);
+            } catch (UnexpectedResult e) {
+                // fails unless the operand is a number
+                return (Double)this.generalize(e.result);
+            }
+        }
+        return ExprNode.super.evaluateNumber(environment);
+    }
+
+    private Object generalize (Object value) {
+        this.numbers = false;
+        return this.generic(value);
+    }
+
+    private Object generic (Object value) {
+        ExprHelper.assertNumberOperand(this.operator, value);
+        return -(Double)value;
+    }
+}
@@ -0,0 +1,531 @@
+package com.lox.closure;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.lox.interpreter.Environment;
+import com.lox.interpreter.exceptions.RuntimeError;
+import com.lox.interpreter.helpers.ExprHelper;
+import com.lox.lexer.LoxToken;
+import com.lox.lexer.LoxTokenType;
+import com.lox.parser.ast.Expr;
+import com.lox.parser.ast.LoxCallable;
+import com.lox.parser.ast.Stmt;
+import com.lox.parser.exceptions.SyntaxError;
+
+/**
+ * Compiles a resolved program (see `Resolver`) into `StmtNode`s for the
+ * `ClosureEngine`. Every node is compiled once, into a lambda specialised for
+ * what the `LoxInterpreter` would do with it: operators are chosen here rather
+ * than on every evaluation, and each lambda calls its compiled children
+ * directly. The lambdas evaluate operands and report errors in the same order
+ * as the `LoxInterpreter`.
+ *
+ * With `specialize`, arithmetic and comparisons compile to nodes that
+ * specialise themselves on the operand types they see instead (see
+ * `SpecializingBinary`).
+ */
+class NodeCompiler implements Stmt.Visitor<StmtNode>, Expr.Visitor<ExprNode> {
+    final private boolean specialize;
+
+    private NodeCompiler (boolean specialize) {
+        this.specialize = specialize;
+    }
+
+    static StmtNode[] compile (List<Stmt> statements, boolean specialize) {
+        return new NodeCompiler(specialize).compileAll(statements);
+    }
+
+    private StmtNode[] compileAll (List<Stmt> statements) {
+        StmtNode[] nodes = new StmtNode[statements.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = statements.get(i).accept(this);
+        }
+        return nodes;
+    }
+
+    private ExprNode compile (Expr expression) {
+        if (expression == null) {
+            return environment -> null;
+        }
+        return expression.accept(this);
+    }
+
+    // ===== STATEMENT VISITOR METHODS =====
+
+    @Override
+    public StmtNode visitVarDeclStmt (Stmt.VarDeclStmt varDeclStmt) {
+        int slot = varDeclStmt.slot;
+        String name = (String)varDeclStmt.identifier.literal;
+        if (varDeclStmt.expression == null) {
+            return environment -> {
+                environment.define(slot, name, Environment.UNINITIALIZED);
+                return null;
+            };
+        }
+
+        ExprNode expression = this.compile(varDeclStmt.expression);
+        return environment -> {
+            environment.define(slot, name, expression.evaluate(environment));
+            return null;
+        };
+    }
+
+    @Override
+    public StmtNode visitFunDeclStmt (Stmt.FunDeclStmt funDeclStmt) {
+        int slot = funDeclStmt.slot;
+        LoxToken identifier = funDeclStmt.identifier;
+        int arity = funDeclStmt.parameters.size();
+        String[] locals = funDeclStmt.locals;
+        StmtNode[] body = this.compileAll(funDeclStmt.body.declarations);
+        return environment -> {
+            environment.define(slot, identifier.lexeme, new NodeFunction(identifier, arity, locals, body, environment));
+            return null;
+        };
+    }
+
+    @Override
+    public StmtNode visitBlockStmt (Stmt.BlockStmt blockStmt) {
+        String[] locals = blockStmt.locals;
+        StmtNode[] body = this.compileAll(blockStmt.declarations);
+        if (locals.length == 0) {
+            // the block declares nothing, so it has no scope of its own
+            return environment -> {
+                for (var statement : body) {
+                    Object value = statement.execute(environment);
+                    if (value != null) {
+                        return value;
+                    }
+                }
+                return null;
+            };
+        }
+        return environment -> {
+            Environment scope = new Environment(environment, locals);
+            for (var statement : body) {
+                Object value = statement.execute(scope);
+                if (value != null) {
+                    return value;
+                }
+            }
+            return null;
+        };
+    }
+
+    @Override
+    public StmtNode visitExpressionStmt (Stmt.ExpressionStmt exprStmt) {
+        ExprNode expression = this.compile(exprStmt.expression);
+        return environment -> {
+            expression.evaluate(environment);
+            return null;
+        };
+    }
+
+    @Override
+    public StmtNode visitPrintStmt (Stmt.PrintStmt printStmt) {
+        ExprNode expression = this.compile(printStmt.expression);
+        return environment -> {
+            System.out.println(expression.evaluate(environment));
+            return null;
+        };
+    }
+
+    @Override
+    public StmtNode visitReturnStmt (Stmt.ReturnStmt returnStmt) {
+        ExprNode expression = this.compile(returnStmt.expression);
+        return environment -> {
+            Object value = expression.evaluate(environment);
+            return value == null ? StmtNode.NIL : value;
+        };
+    }
+
+    @Override
+    public StmtNode visitIfStmt (Stmt.IfStmt ifStmt) {
+        // the `if` and `else if` branches, in order
+        int count = ifStmt.elseIfStatements.size() + 1;
+        ExprNode[] conditions = new ExprNode[count];
+        StmtNode[] branches = new StmtNode[count];
+        conditions[0] = this.compile(ifStmt.condition);
+        branches[0] = ifStmt.statement.accept(this);
+        for (int i = 1; i < count; i++) {
+            var elseIf = ifStmt.elseIfStatements.get(i - 1);
+            conditions[i] = this.compile(elseIf.condition);
+            branches[i] = elseIf.statement.accept(this);
+        }
+        StmtNode otherwise = ifStmt.elseStatement == null ? environment -> null : ifStmt.elseStatement.accept(this);
+
+        if (count == 1) {
+            ExprNode condition = conditions[0];
+            StmtNode branch = branches[0];
+            return environment -> {
+                if (ExprHelper.isTruthy(condition.evaluate(environment))) {
+                    return branch.execute(environment);
+                }
+                return otherwise.execute(environment);
+            };
+        }
+
+        return environment -> {
+            for (int i = 0; i < conditions.length; i++) {
+                if (ExprHelper.isTruthy(conditions[i].evaluate(environment))) {
+                    return branches[i].execute(environment);
+                }
+            }
+            return otherwise.execute(environment);
+        };
+    }
+
+    @Override
+    public StmtNode visitWhileStmt (Stmt.WhileStmt whileStmt) {
+        ExprNode condition = this.compile(whileStmt.condition);
+        StmtNode body = whileStmt.statement.accept(this);
+        return environment -> {
+            while (ExprHelper.isTruthy(condition.evaluate(environment))) {
+                Object value;
+                try {
+                    value = body.execute(environment);
+                } catch (SyntaxError err) {
+                    // a `break` or `continue` of a function called in the loop
+                    switch (err.token.type) {
+                        case BREAK:
+                            return null;
+                        case CONTINUE:
+                            continue;
+                        default:
+                            throw err;
+                    }
+                }
+                if (value instanceof LoxToken keyword) {
+                    if (keyword.type == LoxTokenType.BREAK) {
+                        return null;
+                    }
+                } else if (value != null) {
+                    return value;
+                }
+            }
+            return null;
+        };
+    }
+
+    @Override
+    public StmtNode visitForStmt (Stmt.ForStmt forStmt) {
+        String[] locals = forStmt.locals;
+        StmtNode initializer = forStmt.initializer == null ? environment -> null : forStmt.initializer.accept(this);
+        ExprNode condition = this.compile(forStmt.condition);
+        ExprNode increment = this.compile(forStmt.increment);
+        StmtNode body = forStmt.statement.accept(this);
+        return environment -> {
+            // one scope for the whole loop, not one per iteration, and none if
+            // the loop declares nothing
+            Environment scope = locals.length == 0 ? environment : new Environment(environment, locals);
+            initializer.execute(scope);
+            while (ExprHelper.isTruthy(condition.evaluate(scope))) {
+                Object value;
+                try {
+                    value = body.execute(scope);
+                } catch (SyntaxError err) {
+                    // a `break` or `continue` of a function called in the loop
+                    if (err.token.type != LoxTokenType.BREAK && err.token.type != LoxTokenType.CONTINUE) {
+                        throw err;
+                    }
+                    value = err.token;
+                }
+                if (value instanceof LoxToken keyword) {
+                    if (keyword.type == LoxTokenType.BREAK) {
+                        return null;
+                    }
+                } else if (value != null) {
+                    return value;
+                }
+                increment.evaluate(scope);
+            }
+            return null;
+        };
+    }
+
+    @Override
+    public StmtNode visitSingleKeywordStmt (Stmt.SingleKeywordStmt singleKeywordStmt) {
+        LoxToken keyword = singleKeywordStmt.keyword;
+        switch (keyword.type) {
+            case BREAK:
+            case CONTINUE:
+                return environment -> keyword;
+            default:
+                return environment -> null;
+        }
+    }
+
+    // ===== EXPRESSION VISITOR METHODS =====
+
+    @Override
+    public ExprNode visitAssignmentExpr (Expr.Assignment assignment) {
+        int depth = assignment.depth;
+        int slot = assignment.slot;
+        LoxToken variable = assignment.variable;
+        ExprNode right = this.compile(assignment.right);
+        return environment -> {
+            Object value = right.evaluate(environment);
+            environment.assign(depth, slot, variable, value);
+            return value;
+        };
+    }
+
+    @Override
+    public ExprNode visitAnonymousFuncExpr (Expr.AnonymousFunc anonymousFunc) {
+        int arity = anonymousFunc.parameters.size();
+        String[] locals = anonymousFunc.locals;
+        StmtNode[] body = this.compileAll(anonymousFunc.body.declarations);
+        return environment -> new NodeFunction(null, arity, locals, body, environment);
+    }
+
+    @Override
+    public ExprNode visitGroupingExpr (Expr.Grouping group) {
+        return this.compile(group.expression);
+    }
+
+    @Override
+    public ExprNode visitBinaryExpr (Expr.Binary binary) {
+        ExprNode left = this.compile(binary.left);
+        ExprNode right = this.compile(binary.right);
+        LoxToken operator = binary.operator;
+
+        if (this.specialize) {
+            ExprNode node = specializing(left, right, operator);
+            if (node != null) {
+                return node;
+            }
+        }
+
+        switch (operator.type) {
+            case PLUS:
+                return environment -> {
+                    Object l = left.evaluate(environment);
+                    Object r = right.evaluate(environment);
+                    if (l instanceof Double && r instanceof Double) {
+                        return (Double)l + (Double)r;
+                    } else if (l instanceof String && r instanceof String) {
+                        return (String)l + (String)r;
+                    }
+                    throw new RuntimeError(operator, "operands must be of type: 'String' or 'Number'");
+                };
+            case MINUS:
+                return environment -> {
+                    Object l = left.evaluate(environment);
+                    Object r = right.evaluate(environment);
+                    ExprHelper.assertNumberOperands(operator, l, r);
+                    return (Double)l - (Double)r;
+                };
+            case STAR:
+                return environment -> {
+                    Object l = left.evaluate(environment);
+                    Object r = right.evaluate(environment);
+                    ExprHelper.assertNumberOperands(operator, l, r);
+                    return (Double)l * (Double)r;
+                };
+            case SLASH:
+                return environment -> {
+                    Object l = left.evaluate(environment);
+                    Object r = right.evaluate(environment);
+                    ExprHelper.assertNumberOperands(operator, l, r);
+                    return (Double)l / (Double)r;
+                };
+            case LESS:
+                return environment -> {
+                    Object l = left.evaluate(environment);
+                    Object r = right.evaluate(environment);
+                    ExprHelper.assertNumberOperands(operator, l, r);
+                    return (Double)l < (Double)r;
+                };
+            case GREATER:
+                return environment -> {
+                    Object l = left.evaluate(environment);
+                    Object r = right.evaluate(environment);
+                    ExprHelper.assertNumberOperands(operator, l, r);
+                    return (Double)l > (Double)r;
+                };
+            case LESS_EQUAL:
+                return environment -> {
+                    Object l = left.evaluate(environment);
+                    Object r = right.evaluate(environment);
+                    ExprHelper.assertNumberOperands(operator, l, r);
+                    return (Double)l <= (Double)r;
+                };
+            case GREATER_EQUAL:
+                return environment -> {
+                    Object l = left.evaluate(environment);
+                    Object r = right.evaluate(environment);
+                    ExprHelper.assertNumberOperands(operator, l, r);
+                    return (Double)l >= (Double)r;
+                };
+            case EQUAL_EQUAL:
+                return environment -> ExprHelper.isEqual(left.evaluate(environment), right.evaluate(environment));
+            case BANG_EQUAL:
+                return environment -> !ExprHelper.isEqual(left.evaluate(environment), right.evaluate(environment));
+            default:
+                // like the `LoxInterpreter`, only fails if it runs
+                return environment -> {
+                    left.evaluate(environment);
+                    right.evaluate(environment);
+                    throw new RuntimeError(operator, "invalid binary operator");
+                };
+        }
+    }
+
+    /**
+     * The `SpecializingBinary` for an arithmetic or comparison operator, or
+     * `null` for other operators.
+     */
+    private static ExprNode specializing (ExprNode left, ExprNode right, LoxToken operator) {
+        switch (operator.type) {
+            case PLUS:
+                return new AddNode(left, right, operator);
+            case MINUS:
+                return new ArithmeticNode.Subtract(left, right, operator);
+            case STAR:
+                return new ArithmeticNode.Multiply(left, right, operator);
+            case SLASH:
+                return new ArithmeticNode.Divide(left, right, operator);
+            case LESS:
+                return new SpecializingBinary(left, right, operator) {
+                    @Override
+                    Object numbers (double l, double r) { return l < r; }
+                };
+            case GREATER:
+                return new SpecializingBinary(left, right, operator) {
+                    @Override
+                    Object numbers (double l, double r) { return l > r; }
+                };
+            case LESS_EQUAL:
+                return new SpecializingBinary(left, right, operator) {
+                    @Override
+                    Object numbers (double l, double r) { return l <= r; }
+                };
+            case GREATER_EQUAL:
+                return new SpecializingBinary(left, right, operator) {
+                    @Override
+                    Object numbers (double l, double r) { return l >= r; }
+                };
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public ExprNode visitLogicalExpr (Expr.Logical logical) {
+        ExprNode left = this.compile(logical.left);
+        ExprNode right = this.compile(logical.right);
+        if (logical.operator.type == LoxTokenType.OR) {
+            return environment -> {
+                Object l = left.evaluate(environment);
+                return ExprHelper.isTruthy(l) ? l : right.evaluate(environment);
+            };
+        }
+        return environment -> {
+            Object l = left.evaluate(environment);
+            return ExprHelper.isTruthy(l) ? right.evaluate(environment) : l;
+        };
+    }
+
+    @Override
+    public ExprNode visitUnaryExpr (Expr.Unary unary) {
+        ExprNode right = this.compile(unary.right);
+        LoxToken operator = unary.operator;
+
+        switch (operator.type) {
+            case MINUS:
+                if (this.specialize) {
+                    return new NegateNode(right, operator);
+                }
+                return environment -> {
+                    Object value = right.evaluate(environment);
+                    ExprHelper.assertNumberOperand(operator, value);
+                    return -(Double)value;
+                };
+            case BANG:
+                return environment -> !ExprHelper.isTruthy(right.evaluate(environment));
+            default:
+                return environment -> {
+                    right.evaluate(environment);
+                    throw new RuntimeError(operator, "invalid unary operator");
+                };
+        }
+    }
+
+    @Override
+    public ExprNode visitCallExpr (Expr.Call call) {
+        ExprNode callee = this.compile(call.callee);
+        ExprNode[] arguments = new ExprNode[call.arguments.size()];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = this.compile(call.arguments.get(i));
+        }
+        LoxToken paren = call.paren;
+
+        return environment -> {
+            Object function = callee.evaluate(environment);
+            Object[] values = new Object[arguments.length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = arguments[i].evaluate(environment);
+            }
+
+            if (function instanceof NodeFunction nodeFunction) {
+                if (values.length != nodeFunction.arity) {
+                    throw new RuntimeError(paren, "Expected " + nodeFunction.arity + " arguments but got " + values.length);
+                }
+                return nodeFunction.invoke(values);
+            } else if (!(function instanceof LoxCallable)) {
+                throw new RuntimeError(paren, "can only call functions and classes");
+            }
+
+            LoxCallable callable = (LoxCallable)function;
+            if (values.length != callable.arity()) {
+                throw new RuntimeError(paren, "Expected " + callable.arity() + " arguments but got " + values.length);
+            }
+            return callable.call(null, Arrays.asList(values));
+        };
+    }
+
+    @Override
+    public ExprNode visitLiteralExpr (Expr.Literal literal) {
+        Object value = literal.token.literal;
+        if (this.specialize && value instanceof Double number) {
+            double unboxed = number;
+            return new ExprNode() {
+                @Override
+                public Object evaluate (Environment environment) {
+                    return value;
+                }
+
+                @Override
+                public double evaluateNumber (Environment environment) {
+                    return unboxed;
+                }
+            };
+        }
+        return environment -> value;
+    }
+
+    @Override
+    public ExprNode visitVariableExpr (Expr.Variable variable) {
+        int depth = variable.depth;
+        int slot = variable.slot;
+        LoxToken token = variable.token;
+        if (this.specialize) {
+            return new ExprNode() {
+                @Override
+                public Object evaluate (Environment environment) {
+                    return environment.use(depth, slot, token);
+                }
+
+                @Override
+                public double evaluateNumber (Environment environment) {
+                    Object value = environment.use(depth, slot, token);
+                    if (value instanceof Double number) {
+                        return number;
+                    }
+                    throw new UnexpectedResult(value);
+                }
+            };
+        }
+        return environment -> environment.use(depth, slot, token);
+    }
+}
@@ -0,0 +1,64 @@
+package com.lox.closure;
+
+import java.util.List;
+
+import com.lox.interpreter.Environment;
+import com.lox.interpreter.LoxInterpreter;
+import com.lox.lexer.LoxToken;
+import com.lox.parser.ast.LoxCallable;
+
+/**
+ * A Lox function value of the `ClosureEngine`: a compiled body and the scope
+ * it was declared in.
+ */
+final class NodeFunction implements LoxCallable {
+    // `null` for anonymous functions
+    final private LoxToken identifier;
+    final int arity;
+    final private String[] locals;
+    final private StmtNode[] body;
+    final private Environment closure;
+
+    NodeFunction (LoxToken identifier, int arity, String[] locals, StmtNode[] body, Environment closure) {
+        this.identifier = identifier;
+        this.arity = arity;
+        this.locals = locals;
+        this.body = body;
+        this.closure = closure;
+    }
+
+    /**
+     * Calls the function with as many `arguments` as it has parameters.
+     */
+    Object invoke (Object[] arguments) {
+        Environment environment = new Environment(this.closure, this.locals);
+        for (int i = 0; i < arguments.length; i++) {
+            // parameters take the first slots of a resolved function's frame
+            environment.define(i, this.locals[i], arguments[i]);
+        }
+
+        for (var statement : this.body) {
+            Object value = statement.execute(environment);
+            if (value != null) {
+                LoxInterpreter.escape(value);
+                return value == StmtNode.NIL ? null : value;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int arity () {
+        return this.arity;
+    }
+
+    @Override
+    public Object call (LoxInterpreter interpreter, List<Object> arguments) {
+        return this.invoke(arguments.toArray());
+    }
+
+    @Override
+    public String toString () {
+        return "<fn " + this.identifier.lexeme + ">";
+    }
+}
@@ -0,0 +1,97 @@
+package com.lox.closure;
+
+import com.lox.interpreter.Environment;
+import com.lox.interpreter.helpers.ExprHelper;
+import com.lox.lexer.LoxToken;
+
+/**
+ * A binary operator node that specialises itself on the operand types it has
+ * seen. The first evaluation records whether the operands were numbers (or
+ * strings, for nodes that concatenate them); from then on the node evaluates
+ * its operands as that type, e.g. with `ExprNode.evaluateNumber(Environment)`
+ * so that numbers are not boxed between nodes. The first time the speculation
+ * fails, the node falls back to the generic operation for good.
+ */
+abstract class SpecializingBinary implements ExprNode {
+    // the operand types seen so far
+    static final int UNINITIALIZED = 0;
+    static final int NUMBERS = 1;
+    static final int STRINGS = 2;
+    static final int GENERIC = 3;
+
+    final ExprNode left;
+    final ExprNode right;
+    final LoxToken operator;
+    int state = UNINITIALIZED;
+
+    SpecializingBinary (ExprNode left, ExprNode right, LoxToken operator) {
+        this.left = left;
+        this.right = right;
+        this.operator = operator;
+    }
+
+    /** The result for two numbers. */
+    abstract Object numbers (double left, double right);
+
+    /**
+     * The result for operands of any type, with the errors the
+     * `LoxInterpreter` reports. Only numbers are valid unless overridden.
+     */
+    Object generic (Object left, Object right) {
+        ExprHelper.assertNumberOperands(this.operator, left, right);
+        return this.numbers((Double)left, (Double)right);
+    }
+
+    /** The result for two strings, if `specialize` can return `STRINGS`. */
+    Object strings (String left, String right) {
+        return this.generic(left, right);
+    }
+
+    /** The state to speculate on after seeing `left` and `right`. */
+    int specialize (Object left, Object right) {
+        return left instanceof Double && right instanceof Double ? NUMBERS : GENERIC;
+    }
+
+    @Override
+    public Object evaluate (Environment environment) {
+        switch (this.state) {
+            case NUMBERS: {
+                double left;
+                try {
+                    left = this.left.evaluateNumber(environment);
+                } catch (UnexpectedResult e) {
+                    return this.generalize(e.result, this.right.evaluate(environment));
+                }
+                double right;
+                try {
+                    right = this.right.evaluateNumber(environment);
+                } catch (UnexpectedResult e) {
+                    return this.generalize(left, e.result);
+                }
+                return this.numbers(left, right);
+            }
+            case STRINGS: {
+                Object left = this.left.evaluate(environment);
+                Object right = this.right.evaluate(environment);
+                if (left instanceof String l && right instanceof String r) {
+                    return this.strings(l, r);
+                }
+                return this.generalize(left, right);
+            }
+            case GENERIC:
+                return this.generic(this.left.evaluate(environment), this.right.evaluate(environment));
+            default: {
+                Object left = this.left.evaluate(environment);
+                Object right = this.right.evaluate(environment);
+                this.state = this.specialize(left, right);
+                return this.generic(left, right);
+            }
+        }
+    }
+
+    /** Gives up speculating, and computes the result for the operands that broke the speculation. */
+    Object generalize (Object left, Object right) {
+        this.state = GENERIC;
+        return this.generic(left, right);
+    }
+}
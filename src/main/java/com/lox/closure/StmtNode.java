@@ -0,0 +1,17 @@
+package com.lox.closure;
+
+import com.lox.interpreter.Environment;
+
+/**
+ * A statement compiled by the `NodeCompiler`: executes it in the scope it is
+ * handed, and returns the value of the `return` statement it ran, the keyword
+ * token of a `break` or `continue` it ran outside of a loop of its own, or
+ * `null` if it completed normally.
+ */
+@FunctionalInterface
+interface StmtNode {
+    /** What a statement that ran `return nil;` returns. */
+    static final Object NIL = new Object();
+
+    Object execute (Environment environment);
+}
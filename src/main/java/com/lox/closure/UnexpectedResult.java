@@ -0,0 +1,16 @@
+package com.lox.closure;
+
+/**
+ * Thrown by `ExprNode.evaluateNumber(Environment)` when the expression did not
+ * evaluate to a number, with the value it evaluated to. Only thrown when a
+ * speculation fails, after which the node that speculated stops doing so.
+ */
+final class UnexpectedResult extends RuntimeException {
+    final Object result;
+
+    UnexpectedResult (Object result) {
+        // nothing looks at the message or the stack trace
+        super(null, null, false, false);
+        this.result = result;
+    }
+}
@@ -0,0 +1,285 @@
+package com.lox.interpreter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.lox.interpreter.helpers.ExprHelper;
+import com.lox.lexer.LoxToken;
+import com.lox.lexer.LoxTokenType;
+import com.lox.lexer.SymbolTable;
+import com.lox.parser.ast.Expr;
+import com.lox.parser.ast.Stmt;
+
+/**
+ * A pass run between parsing and resolving that rewrites a program into an
+ * equivalent one with less to evaluate: operators whose operands are all
+ * literals are replaced by the literal they evaluate to, groupings by their
+ * expression, and branches of `if`, `while` and `for` statements whose
+ * condition is a literal that never lets them run are dropped.
+ *
+ * An operator is only folded if evaluating it cannot fail, so `"a" - 1` is
+ * left to fail at runtime at its own operator. Operators with an operand that
+ * is not a literal are kept as they are even where an identity like `x * 1`
+ * holds for numbers, since `x` may turn out not to be one.
+ *
+ * The nodes are rebuilt rather than updated, so the pass must run before the
+ * `Resolver` annotates them.
+ */
+public class ConstantFolder implements Stmt.Visitor<Stmt>, Expr.Visitor<Expr> {
+
+    // interns the strings of folded concatenations, like the lexer's literals
+    final private SymbolTable symbols;
+
+    public ConstantFolder (SymbolTable symbols) {
+        this.symbols = symbols;
+    }
+
+    public List<Stmt> fold (List<Stmt> program) {
+        List<Stmt> folded = new ArrayList<>(program.size());
+        for (var statement : program) {
+            Stmt stmt = this.fold(statement);
+            if (stmt != null) {
+                folded.add(stmt);
+            }
+        }
+        return folded;
+    }
+
+    /** The folded `statement`, or `null` if it would do nothing. */
+    private Stmt fold (Stmt statement) {
+        return statement == null ? null : statement.accept(this);
+    }
+
+    /**
+     * The folded `statement` of a loop or branch, an empty block (which gets
+     * no frame) where it would do nothing.
+     */
+    private Stmt body (Stmt statement) {
+        Stmt folded = this.fold(statement);
+        return folded == null ? new Stmt.BlockStmt(new ArrayList<>()) : folded;
+    }
+
+    private Expr fold (Expr expression) {
+        return expression == null ? null : expression.accept(this);
+    }
+
+    // ===== HELPERS =====
+
+    private static boolean isLiteral (Expr expression) {
+        return expression instanceof Expr.Literal;
+    }
+
+    private static Object value (Expr literal) {
+        return ((Expr.Literal)literal).token.literal;
+    }
+
+    /** Whether `condition` is a literal that is falsy. */
+    private static boolean isFalse (Expr condition) {
+        return isLiteral(condition) && !ExprHelper.isTruthy(value(condition));
+    }
+
+    /** A literal of `value`, at the position of the token it was folded at. */
+    private Expr literal (Object value, LoxToken at) {
+        LoxToken token;
+        if (value == null) {
+            token = new LoxToken(LoxTokenType.NIL, "nil", null, at.line, at.col);
+        } else if (value instanceof Boolean bool) {
+            token = new LoxToken(bool ? LoxTokenType.TRUE : LoxTokenType.FALSE, bool.toString(), bool, at.line, at.col);
+        } else if (value instanceof Double number) {
+            // `Double.toString` is read back by `Double.parseDouble` when the
+            // token is rebuilt from its lexeme
+            token = new LoxToken(LoxTokenType.NUMBER, number.toString(), number, at.line, at.col);
+        } else {
+            String string = this.symbols.intern((String)value);
+            token = new LoxToken(LoxTokenType.STRING, "\"" + string + "\"", string, at.line, at.col);
+        }
+        return new Expr.Literal(token);
+    }
+
+    // ===== STATEMENT VISITOR METHODS =====
+
+    @Override
+    public Stmt visitVarDeclStmt (Stmt.VarDeclStmt varDeclStmt) {
+        if (varDeclStmt.expression == null) {
+            return new Stmt.VarDeclStmt(varDeclStmt.identifier);
+        }
+        return new Stmt.VarDeclStmt(varDeclStmt.identifier, this.fold(varDeclStmt.expression));
+    }
+
+    @Override
+    public Stmt visitFunDeclStmt (Stmt.FunDeclStmt funDeclStmt) {
+        return new Stmt.FunDeclStmt(funDeclStmt.identifier, funDeclStmt.parameters, (Stmt.BlockStmt)this.visitBlockStmt(funDeclStmt.body));
+    }
+
+    @Override
+    public Stmt visitExpressionStmt (Stmt.ExpressionStmt expressionStmt) {
+        return new Stmt.ExpressionStmt(this.fold(expressionStmt.expression));
+    }
+
+    @Override
+    public Stmt visitPrintStmt (Stmt.PrintStmt printStmt) {
+        return new Stmt.PrintStmt(this.fold(printStmt.expression));
+    }
+
+    @Override
+    public Stmt visitReturnStmt (Stmt.ReturnStmt returnStmt) {
+        return new Stmt.ReturnStmt(this.fold(returnStmt.expression));
+    }
+
+    @Override
+    public Stmt visitBlockStmt (Stmt.BlockStmt blockStmt) {
+        return new Stmt.BlockStmt(this.fold(blockStmt.declarations));
+    }
+
+    @Override
+    public Stmt visitIfStmt (Stmt.IfStmt ifStmt) {
+        List<Stmt.IfStmt> branches = new ArrayList<>();
+        branches.add(ifStmt);
+        branches.addAll(ifStmt.elseIfStatements);
+
+        // the branches that may run, up to the first that always does
+        List<Stmt.IfStmt> folded = new ArrayList<>();
+        Stmt elseStatement = ifStmt.elseStatement;
+        for (var branch : branches) {
+            Expr condition = this.fold(branch.condition);
+            if (isFalse(condition)) {
+                continue;
+            } else if (isLiteral(condition)) {
+                elseStatement = branch.statement;
+                break;
+            }
+            folded.add(new Stmt.IfStmt(condition, this.body(branch.statement)));
+        }
+
+        if (folded.isEmpty()) {
+            return this.fold(elseStatement);
+        }
+        Stmt.IfStmt first = folded.remove(0);
+        return new Stmt.IfStmt(first.condition, first.statement, folded, elseStatement == null ? null : this.body(elseStatement));
+    }
+
+    @Override
+    public Stmt visitWhileStmt (Stmt.WhileStmt whileStmt) {
+        Expr condition = this.fold(whileStmt.condition);
+        if (isFalse(condition)) {
+            return null;
+        }
+        return new Stmt.WhileStmt(condition, this.body(whileStmt.statement));
+    }
+
+    @Override
+    public Stmt visitForStmt (Stmt.ForStmt forStmt) {
+        Stmt initializer = this.fold(forStmt.initializer);
+        Expr condition = this.fold(forStmt.condition);
+        if (isFalse(condition)) {
+            // only the initializer runs, in a scope of its own
+            return initializer == null ? null : new Stmt.BlockStmt(new ArrayList<>(List.of(initializer)));
+        }
+        return new Stmt.ForStmt(initializer, condition, this.fold(forStmt.increment), this.body(forStmt.statement));
+    }
+
+    @Override
+    public Stmt visitSingleKeywordStmt (Stmt.SingleKeywordStmt singleKeywordStmt) {
+        return singleKeywordStmt;
+    }
+
+    // ===== EXPRESSION VISITOR METHODS =====
+
+    @Override
+    public Expr visitAssignmentExpr (Expr.Assignment assignment) {
+        return new Expr.Assignment(assignment.variable, this.fold(assignment.right));
+    }
+
+    @Override
+    public Expr visitAnonymousFuncExpr (Expr.AnonymousFunc anonymousFunc) {
+        return new Expr.AnonymousFunc(anonymousFunc.parameters, (Stmt.BlockStmt)this.visitBlockStmt(anonymousFunc.body));
+    }
+
+    @Override
+    public Expr visitGroupingExpr (Expr.Grouping group) {
+        return this.fold(group.expression);
+    }
+
+    @Override
+    public Expr visitBinaryExpr (Expr.Binary binary) {
+        Expr left = this.fold(binary.left);
+        Expr right = this.fold(binary.right);
+        LoxToken operator = binary.operator;
+        if (!isLiteral(left) || !isLiteral(right)) {
+            return new Expr.Binary(left, operator, right);
+        }
+
+        Object l = value(left);
+        Object r = value(right);
+        if (operator.type == LoxTokenType.EQUAL_EQUAL) {
+            return this.literal(ExprHelper.isEqual(l, r), operator);
+        } else if (operator.type == LoxTokenType.BANG_EQUAL) {
+            return this.literal(!ExprHelper.isEqual(l, r), operator);
+        } else if (operator.type == LoxTokenType.PLUS && ExprHelper.isString(l, r)) {
+            return this.literal((String)l + (String)r, operator);
+        } else if (!ExprHelper.isNumber(l, r)) {
+            // fails at runtime
+            return new Expr.Binary(left, operator, right);
+        }
+
+        double a = (Double)l;
+        double b = (Double)r;
+        switch (operator.type) {
+            case PLUS: return this.literal(a + b, operator);
+            case MINUS: return this.literal(a - b, operator);
+            case STAR: return this.literal(a * b, operator);
+            case SLASH: return this.literal(a / b, operator);
+            case LESS: return this.literal(a < b, operator);
+            case LESS_EQUAL: return this.literal(a <= b, operator);
+            case GREATER: return this.literal(a > b, operator);
+            case GREATER_EQUAL: return this.literal(a >= b, operator);
+            default: return new Expr.Binary(left, operator, right);
+        }
+    }
+
+    @Override
+    public Expr visitLogicalExpr (Expr.Logical logical) {
+        Expr left = this.fold(logical.left);
+        Expr right = this.fold(logical.right);
+        if (!isLiteral(left)) {
+            return new Expr.Logical(left, logical.operator, right);
+        }
+
+        boolean truthy = ExprHelper.isTruthy(value(left));
+        boolean decides = logical.operator.type == LoxTokenType.OR ? truthy : !truthy;
+        return decides ? left : right;
+    }
+
+    @Override
+    public Expr visitUnaryExpr (Expr.Unary unary) {
+        Expr right = this.fold(unary.right);
+        if (isLiteral(right)) {
+            Object value = value(right);
+            if (unary.operator.type == LoxTokenType.BANG) {
+                return this.literal(!ExprHelper.isTruthy(value), unary.operator);
+            } else if (unary.operator.type == LoxTokenType.MINUS && value instanceof Double number) {
+                return this.literal(-number, unary.operator);
+            }
+        }
+        return new Expr.Unary(unary.operator, right);
+    }
+
+    @Override
+    public Expr visitCallExpr (Expr.Call call) {
+        List<Expr> arguments = new ArrayList<>(call.arguments.size());
+        for (var argument : call.arguments) {
+            arguments.add(this.fold(argument));
+        }
+        return new Expr.Call(this.fold(call.callee), call.paren, arguments);
+    }
+
+    @Override
+    public Expr visitLiteralExpr (Expr.Literal literal) {
+        return literal;
+    }
+
+    @Override
+    public Expr visitVariableExpr (Expr.Variable variable) {
+        return variable;
+    }
+}
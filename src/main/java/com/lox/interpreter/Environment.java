@@ -1,63 +1,223 @@
 package com.lox.interpreter;
 
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.Map;
 
 import com.lox.interpreter.exceptions.RuntimeError;
 import com.lox.lexer.LoxToken;
 
+/**
+ * A scope of variables. The global and script scopes key their variables by
+ * name in a map; block and function scopes are frames that keep them in the
+ * slots the `Resolver` assigned, so a resolved variable is found by hopping a
+ * known number of frames and indexing an array.
+ *
+ * Variables are keyed by their interned name (see `SymbolTable`) and compared
+ * by identity, so names must come from the interpreter's `SymbolTable`.
+ */
 public class Environment {
     static final public String UNINITIALIZED = "uninitialized";
+    // value of a slot whose declaration was not executed yet
+    static final private Object UNDECLARED = new Object();
 
-    private Environment enclosing;
-    final private Map<String, Object> variables = new HashMap<>();
+    final private Environment enclosing;
+    // variables of name-keyed scopes (`null` for frames)
+    final private Map<String, Object> variables;
+    // names and values of the slots of frames (`null` for name-keyed scopes)
+    final private String[] names;
+    final private Object[] slots;
 
     public Environment (Environment enclosing) {
-        this.enclosing = enclosing;
+        this(enclosing, null);
     }
 
     public Environment () {
-        this.enclosing = null;
+        this(null, null);
+    }
+
+    /**
+     * A frame with one slot per name in `locals`, or a name-keyed scope if
+     * `locals` is `null` (i.e. the scope was not resolved).
+     */
+    public Environment (Environment enclosing, String[] locals) {
+        this.enclosing = enclosing;
+        if (locals == null) {
+            this.variables = new IdentityHashMap<>();
+            this.names = null;
+            this.slots = null;
+        } else {
+            this.variables = null;
+            this.names = locals;
+            this.slots = new Object[locals.length];
+            for (int i = 0; i < this.slots.length; i++) {
+                this.slots[i] = UNDECLARED;
+            }
+        }
     }
 
+    public Environment getEnclosing () {
+        return this.enclosing;
+    }
+
+    /**
+     * Undeclares every variable of a frame, so that it can be reused for
+     * another call of the same function.
+     */
+    public void clear () {
+        Arrays.fill(this.slots, UNDECLARED);
+    }
+
+    // ===== DECLARATIONS =====
+
     public void define (String name, Object value) {
-        this.variables.put(name, value);
+        if (this.variables != null) {
+            this.variables.put(name, value);
+            return;
+        }
+
+        int slot = this.indexOf(name);
+        if (slot < 0) {
+            throw new IllegalStateException("'" + name + "' has no slot in this frame");
+        }
+        this.slots[slot] = value;
     }
 
     public void define (String name) {
-        this.variables.put(name, Environment.UNINITIALIZED);
+        this.define(name, Environment.UNINITIALIZED);
     }
 
     public void define (LoxToken variable, Object value) {
-        this.variables.put((String)variable.literal, value);
+        this.define((String)variable.literal, value);
     }
 
     public void define (LoxToken variable) {
-        this.variables.put((String)variable.literal, Environment.UNINITIALIZED);
+        this.define((String)variable.literal, Environment.UNINITIALIZED);
     }
 
-    public void assign (LoxToken variable, Object value) {
-        if (this.variables.containsKey((String)variable.literal)) {
-            this.variables.put((String)variable.literal, value);
-        } else if (this.enclosing != null) {
-            this.enclosing.assign(variable, value);
+    /**
+     * Declares the variable in `slot` of this frame, or by `name` if it was not
+     * resolved to a slot.
+     */
+    public void define (int slot, String name, Object value) {
+        if (slot >= 0 && this.slots != null) {
+            this.slots[slot] = value;
+        } else {
+            this.define(name, value);
+        }
+    }
+
+    // ===== RESOLVED ACCESS =====
+
+    /**
+     * Reads a variable the `Resolver` placed `depth` frames up in `slot`. A
+     * negative `slot` means the variable is looked up by name from `depth`
+     * frames up, and a negative `depth` that it is looked up by name from
+     * here.
+     */
+    public Object use (int depth, int slot, LoxToken variable) {
+        if (depth < 0) {
+            return this.use(variable);
+        }
+
+        Environment environment = this.ancestor(depth);
+        if (slot < 0 || environment.slots == null) {
+            return environment.use(variable);
+        }
+
+        Object value = environment.slots[slot];
+        if (value == Environment.UNINITIALIZED) {
+            throw new RuntimeError(variable, "variable is uninitialized before use");
+        } else if (value == UNDECLARED) {
+            return this.use(variable);
+        }
+        return value;
+    }
+
+    /**
+     * Assigns a variable the `Resolver` placed `depth` frames up in `slot` (see
+     * `use(int, int, LoxToken)`).
+     */
+    public void assign (int depth, int slot, LoxToken variable, Object value) {
+        if (depth < 0) {
+            this.assign(variable, value);
+            return;
+        }
+
+        Environment environment = this.ancestor(depth);
+        if (slot < 0 || environment.slots == null) {
+            environment.assign(variable, value);
+        } else if (environment.slots[slot] == UNDECLARED) {
+            this.assign(variable, value);
         } else {
-            throw new RuntimeError(variable, "undeclared variable");
+            environment.slots[slot] = value;
         }
     }
 
+    private Environment ancestor (int depth) {
+        Environment environment = this;
+        for (int i = 0; i < depth; i++) {
+            environment = environment.enclosing;
+        }
+        return environment;
+    }
+
+    // ===== LOOKUP BY NAME =====
+
+    public void assign (LoxToken variable, Object value) {
+        String name = (String)variable.literal;
+        for (Environment environment = this; environment != null; environment = environment.enclosing) {
+            if (environment.variables != null) {
+                if (environment.variables.containsKey(name)) {
+                    environment.variables.put(name, value);
+                    return;
+                }
+            } else {
+                int slot = environment.indexOfDeclared(name);
+                if (slot >= 0) {
+                    environment.slots[slot] = value;
+                    return;
+                }
+            }
+        }
+        throw new RuntimeError(variable, "undeclared variable");
+    }
+
     public Object use (LoxToken variable) {
-        if (this.variables.containsKey((String)variable.literal)) {
-            Object value = this.variables.get((String)variable.literal);
+        String name = (String)variable.literal;
+        for (Environment environment = this; environment != null; environment = environment.enclosing) {
+            Object value;
+            if (environment.variables != null) {
+                if (!environment.variables.containsKey(name)) continue;
+                value = environment.variables.get(name);
+            } else {
+                int slot = environment.indexOfDeclared(name);
+                if (slot < 0) continue;
+                value = environment.slots[slot];
+            }
+
             if (value == Environment.UNINITIALIZED) {
                 throw new RuntimeError(variable, "variable is uninitialized before use");
-            } else {
-                return value;
             }
-        } else if (this.enclosing != null) {
-            return this.enclosing.use(variable);
-        } else {
-            throw new RuntimeError(variable, "cannot use an undeclared variable: " + variable.lexeme);
+            return value;
+        }
+        throw new RuntimeError(variable, "cannot use an undeclared variable: " + variable.lexeme);
+    }
+
+    /**
+     * The slot of `name` in this frame. Repeated names (e.g. duplicate
+     * parameters) resolve to the last slot, which is the one that was
+     * declared last.
+     */
+    private int indexOf (String name) {
+        for (int i = this.names.length - 1; i >= 0; i--) {
+            if (this.names[i] == name) return i;
         }
+        return -1;
+    }
+
+    private int indexOfDeclared (String name) {
+        int slot = this.indexOf(name);
+        return slot >= 0 && this.slots[slot] != UNDECLARED ? slot : -1;
     }
 }
@@ -0,0 +1,292 @@
+package com.lox.interpreter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.lox.parser.ast.Expr;
+import com.lox.parser.ast.Stmt;
+
+/**
+ * A pass run after the `Resolver` that inlines small global functions into
+ * their call sites for the tree-walking interpreter (which the `jit` engine
+ * runs on too, see below).
+ *
+ * A function is inlined if its body is a single `return` of an expression of
+ * at most `MAX_SIZE` nodes that neither calls the function itself nor declares
+ * one, and it is declared once at the top level of the program and never
+ * assigned. Lox has no expression binding a variable, so rather than being
+ * copied into the call site the returned expression is marked on the call
+ * (`Expr.Call.inlined`) and evaluated there in a frame of the function, its
+ * arguments evaluated straight into the frame: a call builds no argument list
+ * and runs no block.
+ *
+ * The function's name is still looked up on every call. If it no longer holds
+ * a closure of the inlined declaration (it was assigned, or declared again in
+ * the REPL), the call site falls back to an ordinary call for good.
+ *
+ * The pass does not run when the interpreter has a `Jit`: an inlined call
+ * skips `LoxFunction.invoke`, so it is never counted towards compiling the
+ * function, and the small hot functions the pass inlines are just the ones
+ * the `Jit` compiles to faster code.
+ */
+public class Inliner implements Stmt.Visitor<Void>, Expr.Visitor<Void> {
+    static final private int MAX_SIZE = 16;
+
+    // the function each global name is declared as, `null` for names declared
+    // more than once or as anything else
+    final private Map<String, Stmt.FunDeclStmt> functions = new IdentityHashMap<>();
+    // global names assigned anywhere in the program
+    final private Set<String> assigned = Collections.newSetFromMap(new IdentityHashMap<>());
+    // calls of a global name
+    final private List<Expr.Call> calls = new ArrayList<>();
+
+    /**
+     * Marks the calls of `program`, which must have been resolved, that can
+     * be inlined.
+     */
+    public void inline (List<Stmt> program) {
+        this.functions.clear();
+        this.assigned.clear();
+        this.calls.clear();
+
+        for (var statement : program) {
+            this.declare(statement, false);
+        }
+        for (var statement : program) {
+            this.visit(statement);
+        }
+
+        for (var call : this.calls) {
+            String name = (String)((Expr.Variable)call.callee).token.literal;
+            Stmt.FunDeclStmt function = this.functions.get(name);
+            if (function != null && !this.assigned.contains(name) && function.parameters.size() == call.arguments.size() && isInlinable(function)) {
+                call.inlined = function;
+            }
+        }
+    }
+
+    // ===== HELPERS =====
+
+    /**
+     * Records the global names `statement` declares. A function declared as
+     * the body of an `if` or a `while` may never be, so it is not inlined.
+     */
+    private void declare (Stmt statement, boolean conditional) {
+        if (statement instanceof Stmt.VarDeclStmt varDecl) {
+            this.functions.put((String)varDecl.identifier.literal, null);
+        } else if (statement instanceof Stmt.FunDeclStmt funDecl) {
+            String name = (String)funDecl.identifier.literal;
+            this.functions.put(name, conditional || this.functions.containsKey(name) ? null : funDecl);
+        } else if (statement instanceof Stmt.IfStmt ifStmt) {
+            this.declare(ifStmt.statement, true);
+            for (var elseIf : ifStmt.elseIfStatements) {
+                this.declare(elseIf, true);
+            }
+            if (ifStmt.elseStatement != null) {
+                this.declare(ifStmt.elseStatement, true);
+            }
+        } else if (statement instanceof Stmt.WhileStmt whileStmt) {
+            this.declare(whileStmt.statement, true);
+        }
+    }
+
+    private static boolean isInlinable (Stmt.FunDeclStmt function) {
+        // functions compiled ahead of time run their compiled code
+        if (function.profile != null || function.enclosesFunction || function.body.declarations.size() != 1) {
+            return false;
+        }
+        return function.body.declarations.get(0) instanceof Stmt.ReturnStmt returnStmt
+            && returnStmt.expression != null
+            && size(returnStmt.expression, (String)function.identifier.literal) <= MAX_SIZE;
+    }
+
+    /**
+     * The number of nodes of `expression`, or more than `MAX_SIZE` if it calls
+     * `name` or declares a function.
+     */
+    private static int size (Expr expression, String name) {
+        if (expression instanceof Expr.Binary binary) {
+            return 1 + size(binary.left, name) + size(binary.right, name);
+        } else if (expression instanceof Expr.Logical logical) {
+            return 1 + size(logical.left, name) + size(logical.right, name);
+        } else if (expression instanceof Expr.Unary unary) {
+            return 1 + size(unary.right, name);
+        } else if (expression instanceof Expr.Grouping group) {
+            return size(group.expression, name);
+        } else if (expression instanceof Expr.Assignment assignment) {
+            return 1 + size(assignment.right, name);
+        } else if (expression instanceof Expr.Call call) {
+            if (call.callee instanceof Expr.Variable callee && callee.token.literal == name) {
+                return MAX_SIZE + 1;
+            }
+            int size = 1 + size(call.callee, name);
+            for (var argument : call.arguments) {
+                size += size(argument, name);
+            }
+            return size;
+        } else if (expression instanceof Expr.AnonymousFunc) {
+            return MAX_SIZE + 1;
+        }
+        // literals and variables
+        return 1;
+    }
+
+    private void visit (Stmt statement) {
+        if (statement != null) {
+            statement.accept(this);
+        }
+    }
+
+    private void visit (Expr expression) {
+        if (expression != null) {
+            expression.accept(this);
+        }
+    }
+
+    private void visit (List<Stmt> statements) {
+        for (var statement : statements) {
+            this.visit(statement);
+        }
+    }
+
+    // ===== STATEMENT VISITOR METHODS =====
+
+    @Override
+    public Void visitVarDeclStmt (Stmt.VarDeclStmt varDeclStmt) {
+        this.visit(varDeclStmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitFunDeclStmt (Stmt.FunDeclStmt funDeclStmt) {
+        this.visit(funDeclStmt.body.declarations);
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt (Stmt.ExpressionStmt expressionStmt) {
+        this.visit(expressionStmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt (Stmt.PrintStmt printStmt) {
+        this.visit(printStmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt (Stmt.ReturnStmt returnStmt) {
+        this.visit(returnStmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitBlockStmt (Stmt.BlockStmt blockStmt) {
+        this.visit(blockStmt.declarations);
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt (Stmt.IfStmt ifStmt) {
+        this.visit(ifStmt.condition);
+        this.visit(ifStmt.statement);
+        for (var elseIf : ifStmt.elseIfStatements) {
+            this.visit(elseIf);
+        }
+        this.visit(ifStmt.elseStatement);
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt (Stmt.WhileStmt whileStmt) {
+        this.visit(whileStmt.condition);
+        this.visit(whileStmt.statement);
+        return null;
+    }
+
+    @Override
+    public Void visitForStmt (Stmt.ForStmt forStmt) {
+        this.visit(forStmt.initializer);
+        this.visit(forStmt.condition);
+        this.visit(forStmt.increment);
+        this.visit(forStmt.statement);
+        return null;
+    }
+
+    @Override
+    public Void visitSingleKeywordStmt (Stmt.SingleKeywordStmt singleKeywordStmt) {
+        return null;
+    }
+
+    // ===== EXPRESSION VISITOR METHODS =====
+
+    @Override
+    public Void visitAssignmentExpr (Expr.Assignment assignment) {
+        // an assignment resolved to a slot may still fall back to the global
+        // at runtime, which the call sites check for
+        if (assignment.slot < 0) {
+            this.assigned.add((String)assignment.variable.literal);
+        }
+        this.visit(assignment.right);
+        return null;
+    }
+
+    @Override
+    public Void visitAnonymousFuncExpr (Expr.AnonymousFunc anonymousFunc) {
+        this.visit(anonymousFunc.body.declarations);
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr (Expr.Grouping group) {
+        this.visit(group.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr (Expr.Binary binary) {
+        this.visit(binary.left);
+        this.visit(binary.right);
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr (Expr.Logical logical) {
+        this.visit(logical.left);
+        this.visit(logical.right);
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr (Expr.Unary unary) {
+        this.visit(unary.right);
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr (Expr.Call call) {
+        if (call.callee instanceof Expr.Variable callee && callee.slot < 0) {
+            this.calls.add(call);
+        }
+        this.visit(call.callee);
+        for (var argument : call.arguments) {
+            this.visit(argument);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr (Expr.Literal literal) {
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr (Expr.Variable variable) {
+        return null;
+    }
+}
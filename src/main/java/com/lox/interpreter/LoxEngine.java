@@ -0,0 +1,16 @@
+package com.lox.interpreter;
+
+import java.util.List;
+
+import com.lox.parser.ast.Stmt;
+
+/**
+ * Executes parsed programs. Programs run by the same engine share their global
+ * scope, so that each statement entered in the REPL sees the ones before it.
+ *
+ * `LoxInterpreter` is both the front end that lexes and parses programs and the
+ * tree-walking engine; other engines (see `com.lox.vm` and `com.lox.closure`) only execute.
+ */
+public interface LoxEngine {
+    public void interpret (List<Stmt> program);
+}
@@ -1,32 +1,66 @@
 package com.lox.interpreter;
 
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.List;
 
 import com.lox.interpreter.exceptions.Return;
 import com.lox.interpreter.exceptions.RuntimeError;
 import com.lox.interpreter.helpers.ExprHelper;
+import com.lox.jit.Jit;
 import com.lox.lexer.LoxLexer;
 import com.lox.lexer.LoxToken;
+import com.lox.lexer.LoxTokenType;
+import com.lox.lexer.SymbolTable;
+import com.lox.lexer.TokenSource;
 import com.lox.parser.LoxGrammar;
 import com.lox.parser.LoxParser;
+import com.lox.parser.PrattGrammar;
 import com.lox.parser.ast.Expr;
 import com.lox.parser.ast.LoxCallable;
 import com.lox.parser.ast.LoxFunction;
 import com.lox.parser.ast.Stmt;
 import com.lox.parser.exceptions.SyntaxError;
 
-public class LoxInterpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
+public class LoxInterpreter implements LoxEngine, Expr.Visitor<Object>, Stmt.Visitor<Object> {
+    /** How a statement that ran `return nil;` completes. */
+    static final private Object NIL = new Object();
+    /**
+     * How a statement completes that ran a `return` of a call in tail position
+     * (see `Stmt.ReturnStmt.tailCall`): the call is left to the function, see
+     * `tailCallee()` and `tailArguments()`.
+     */
+    static final public Object TAIL_CALL = new Object();
+
     private LoxLexer lexer;
     private LoxParser parser;
+    final private LoxGrammar grammar = new PrattGrammar();
+    final private Resolver resolver = new Resolver();
+    final private Inliner inliner = new Inliner();
+    final private boolean useRegexLexer;
 
     // interpreter states
+    final private SymbolTable symbols = new SymbolTable();
+    final private ConstantFolder folder = new ConstantFolder(this.symbols);
     final private Environment globals = new Environment();
     private Environment environment;
+    // compiles hot functions (`null` unless enabled) and the function whose
+    // loop iterations it counts
+    private Jit jit;
+    private LoxFunction running;
+    // the call of the last `TAIL_CALL` completion
+    private LoxCallable tailCallee;
+    private List<Object> tailArguments;
 
     public LoxInterpreter () {
+        this(false);
+    }
+
+    public LoxInterpreter (boolean useRegexLexer) {
+        this.useRegexLexer = useRegexLexer;
+
         // define a 'clock' native function
-        this.globals.define("clock", new LoxCallable() {
+        this.globals.define(this.symbols.intern("clock"), new LoxCallable() {
             @Override
             public int arity() { return 0; }
 
@@ -43,29 +77,148 @@ public class LoxInterpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>
         this.environment = new Environment(globals);
     }
     
-    public void interpret (String source) {
-        this.lexer = new LoxLexer(source);
-        this.lexer.tokenize();
-        this.parser = new LoxParser(this.lexer.tokens, new LoxGrammar());
+    /**
+     * Names in the tokens handed to `interpret(TokenSource)` must be interned
+     * in this table.
+     */
+    public SymbolTable getSymbols () {
+        return this.symbols;
+    }
+
+    /**
+     * Lets `jit` compile the functions that run hot to JVM bytecode.
+     */
+    public void enableJit (Jit jit) {
+        this.jit = jit;
+    }
+
+    public Jit getJit () {
+        return this.jit;
+    }
+
+    public LoxCallable tailCallee () {
+        return this.tailCallee;
+    }
+
+    public List<Object> tailArguments () {
+        return this.tailArguments;
+    }
+
+    /**
+     * Makes `function` the one whose loop iterations are counted, until the
+     * returned caller is restored with `leave`.
+     */
+    public LoxFunction enter (LoxFunction function) {
+        LoxFunction caller = this.running;
+        this.running = function;
+        return caller;
+    }
+
+    public void leave (LoxFunction caller) {
+        this.running = caller;
+    }
+
+    public void interpret (CharSequence source) {
+        this.lexer = new LoxLexer(source, this.useRegexLexer, this.symbols);
+        this.interpret(this.lexer.tokenizeCompact());
+    }
+
+    /**
+     * Lexes and parses a whole program without executing it, and folds its
+     * constants (see `ConstantFolder`).
+     */
+    public List<Stmt> parse (CharSequence source) {
+        this.lexer = new LoxLexer(source, this.useRegexLexer, this.symbols);
+        this.parser = new LoxParser(this.lexer.tokenizeCompact(), this.grammar);
+        this.parser.parse();
+        return this.folder.fold(this.parser.program);
+    }
+
+    /**
+     * Parses a program that was already lexed without executing it.
+     */
+    public List<Stmt> parse (TokenSource tokens) {
+        this.parser = new LoxParser(tokens, this.grammar);
         this.parser.parse();
+        return this.folder.fold(this.parser.program);
+    }
+
+    /**
+     * Executes an already parsed program, e.g. one loaded from an `AstCache`.
+     */
+    @Override
+    public void interpret (List<Stmt> program) {
+        this.resolver.resolve(program);
+        if (this.jit == null) {
+            // inlined calls would never reach the `Jit`'s call counts
+            this.inliner.inline(program);
+        }
+        for (var statement : program) {
+            Object completion = this.execute(statement);
+            escape(completion);
+            if (completion != null) {
+                // a `return` outside of a function escapes
+                throw new Return(completion == NIL ? null : completion);
+            }
+        }
+    }
+
+    /**
+     * Parses and executes a program that was already lexed, e.g. the
+     * statements completed so far in the REPL.
+     */
+    public void interpret (TokenSource tokens) {
+        this.interpret(this.parse(tokens));
+    }
 
-        for (var statement : this.parser.program) {
-            this.execute(statement);
+    /**
+     * Lexes, parses and executes one declaration at a time while the source is
+     * being read, so the first statement runs before the rest of the input is
+     * lexed. Unlike `interpret(String)`, statements before a parse error will
+     * already have been executed.
+     */
+    public void interpret (Reader reader) {
+        this.interpret(reader, this);
+    }
+
+    /**
+     * Like `interpret(Reader)`, but executes each declaration with `engine`.
+     */
+    public void interpret (Reader reader, LoxEngine engine) {
+        this.lexer = new LoxLexer(reader, this.useRegexLexer, this.symbols);
+        // keep the last matched token plus the parser's lookahead
+        this.parser = new LoxParser(this.lexer.tokenizeLazily(LoxParser.MAX_LOOKAHEAD + 1), this.grammar);
+
+        Stmt statement;
+        while ((statement = this.parser.parseNext()) != null) {
+            // folded like the programs from `parse`, which may leave nothing
+            List<Stmt> folded = this.folder.fold(List.of(statement));
+            if (!folded.isEmpty()) {
+                engine.interpret(folded);
+            }
         }
     }
 
-    private Void execute (Stmt statement) {
-        statement.accept(this);
-        return null;
+    /**
+     * Executes a statement and returns how it completed: `null` normally, the
+     * keyword of the `break` or `continue` it ran outside of a loop of its
+     * own, or the value of the `return` it ran (`NIL` for `nil`), for the
+     * enclosing loop or function to act on without unwinding an exception.
+     */
+    private Object execute (Stmt statement) {
+        return statement.accept(this);
     }
 
-    public Void executeBlock (Stmt.BlockStmt block, Environment blockEnvironment) {
+    public Object executeBlock (Stmt.BlockStmt block, Environment blockEnvironment) {
         Environment outerScope = this.environment;
         this.environment = blockEnvironment;
 
         try {
             for (var declaration : block.declarations) {
-                this.execute(declaration);
+                Object completion = this.execute(declaration);
+                if (completion != null) {
+                    return completion;
+                }
             }
         } finally {
             this.environment = outerScope;
@@ -74,77 +227,114 @@ public class LoxInterpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>
         return null;
     }
 
-    private Object evaluate (Expr expression) {
+    /**
+     * The value a function body returns, given how it completed.
+     */
+    public static Object returned (Object completion) {
+        escape(completion);
+        return completion == NIL ? null : completion;
+    }
+
+    /**
+     * Throws the `SyntaxError` of a `break` or `continue` completion that
+     * leaves a function body or the program. A loop of a caller catches it,
+     * as if the keyword were in that loop.
+     */
+    public static void escape (Object completion) {
+        if (completion instanceof LoxToken keyword) {
+            throw new SyntaxError(keyword, "cannot use '" + keyword.lexeme + "' outside a loop");
+        }
+    }
+
+    public Object evaluate (Expr expression) {
         if (expression == null) {
             return null;
         }
         return expression.accept(this);
     }
 
+    /**
+     * Evaluates `expression` in `environment`, e.g. the expression an inlined
+     * function returns in its frame (see `Inliner`).
+     */
+    public Object evaluate (Expr expression, Environment environment) {
+        Environment outerScope = this.environment;
+        this.environment = environment;
+        try {
+            return expression.accept(this);
+        } finally {
+            this.environment = outerScope;
+        }
+    }
+
     // ===== STATEMENT VISITOR METHODS =====
 
     @Override
-    public Void visitVarDeclStmt (Stmt.VarDeclStmt varDeclStmt) {
+    public Object visitVarDeclStmt (Stmt.VarDeclStmt varDeclStmt) {
         Expr expression = varDeclStmt.expression;
-        if (expression == null) {
-            this.environment.define(varDeclStmt.identifier);
-        } else {
-            this.environment.define(varDeclStmt.identifier, this.evaluate(expression));
-        }
+        Object value = expression == null ? Environment.UNINITIALIZED : this.evaluate(expression);
+        this.environment.define(varDeclStmt.slot, (String)varDeclStmt.identifier.literal, value);
         return null;
     }
 
     @Override 
-    public Void visitFunDeclStmt (Stmt.FunDeclStmt funDeclStmt) {
+    public Object visitFunDeclStmt (Stmt.FunDeclStmt funDeclStmt) {
         LoxFunction loxFunction = new LoxFunction(funDeclStmt, environment);
-        this.environment.define(funDeclStmt.identifier.lexeme, loxFunction);
+        this.environment.define(funDeclStmt.slot, funDeclStmt.identifier.lexeme, loxFunction);
         return null;
     }
 
     @Override
-    public Void visitBlockStmt (Stmt.BlockStmt blockStmt) {
-        // create a inner scope
-        Environment blockScope = new Environment(this.environment);
-        Environment outerScope = this.environment;
-        this.environment = blockScope;
-
-        try {
-            // execute block declarations
+    public Object visitBlockStmt (Stmt.BlockStmt blockStmt) {
+        if (blockStmt.locals.length == 0) {
+            // the block declares nothing, so it has no scope of its own
             for (var declaration : blockStmt.declarations) {
-                this.execute(declaration);
+                Object completion = this.execute(declaration);
+                if (completion != null) {
+                    return completion;
+                }
             }
-        } finally {
-            // delete inner scope
-            this.environment = outerScope;
+            return null;
         }
 
-        return null;
+        // create a inner scope
+        return this.executeBlock(blockStmt, new Environment(this.environment, blockStmt.locals));
     }
     
     @Override
-    public Void visitExpressionStmt (Stmt.ExpressionStmt exprStmt) {
+    public Object visitExpressionStmt (Stmt.ExpressionStmt exprStmt) {
         this.evaluate(exprStmt.expression);
         return null;
     }
     
     @Override
-    public Void visitPrintStmt (Stmt.PrintStmt printStmt) {
+    public Object visitPrintStmt (Stmt.PrintStmt printStmt) {
         Object expressionValue = this.evaluate(printStmt.expression);
         System.out.println(expressionValue);
         return null;
     }
 
     @Override
-    public Void visitReturnStmt (Stmt.ReturnStmt returnStmt) {
+    public Object visitReturnStmt (Stmt.ReturnStmt returnStmt) {
+        if (returnStmt.tailCall && this.jit == null && ((Expr.Call)returnStmt.expression).inlined == null) {
+            // the function returning makes the call once its frame is released
+            Expr.Call call = (Expr.Call)returnStmt.expression;
+            Object callee = this.evaluate(call.callee);
+            List<Object> arguments = this.arguments(call);
+            this.tailCallee = this.callable(call, callee, arguments);
+            this.tailArguments = arguments;
+            return TAIL_CALL;
+        }
+
         Object value = null;
         if (returnStmt.expression != null) {
             value = evaluate(returnStmt.expression);
         }
-        throw new Return(value);
+        return value == null ? NIL : value;
     }
 
     @Override
-    public Void visitIfStmt (Stmt.IfStmt ifStmt) {
+    public Object visitIfStmt (Stmt.IfStmt ifStmt) {
         if (ExprHelper.isTruthy(this.evaluate(ifStmt.condition))) {
             return this.execute(ifStmt.statement);
         }
@@ -163,11 +353,16 @@ public class LoxInterpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>
     }
 
     @Override
-    public Void visitWhileStmt (Stmt.WhileStmt whileStmt) {
+    public Object visitWhileStmt (Stmt.WhileStmt whileStmt) {
         while (ExprHelper.isTruthy(this.evaluate(whileStmt.condition))) {
+            if (this.running != null) {
+                this.running.backEdge(this.jit);
+            }
+            Object completion;
             try {
-                this.execute(whileStmt.statement);
+                completion = this.execute(whileStmt.statement);
             } catch (SyntaxError err) {
+                // a `break` or `continue` of a function called in the loop
                 switch (err.token.type) {
                     case BREAK: 
                         return null;
@@ -177,18 +372,66 @@ public class LoxInterpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>
                         throw err;
                 }
             }
+            if (completion instanceof LoxToken keyword) {
+                if (keyword.type == LoxTokenType.BREAK) {
+                    return null;
+                }
+            } else if (completion != null) {
+                return completion;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Object visitForStmt (Stmt.ForStmt forStmt) {
+        // one scope for the whole loop, not one per iteration, and none if
+        // the loop declares nothing
+        Environment outerScope = this.environment;
+        if (forStmt.locals.length > 0) {
+            this.environment = new Environment(outerScope, forStmt.locals);
+        }
+
+        try {
+            if (forStmt.initializer != null) {
+                this.execute(forStmt.initializer);
+            }
+            while (ExprHelper.isTruthy(this.evaluate(forStmt.condition))) {
+                if (this.running != null) {
+                    this.running.backEdge(this.jit);
+                }
+                Object completion;
+                try {
+                    completion = this.execute(forStmt.statement);
+                } catch (SyntaxError err) {
+                    // a `break` or `continue` of a function called in the loop
+                    if (err.token.type != LoxTokenType.BREAK && err.token.type != LoxTokenType.CONTINUE) {
+                        throw err;
+                    }
+                    completion = err.token;
+                }
+                if (completion instanceof LoxToken keyword) {
+                    if (keyword.type == LoxTokenType.BREAK) {
+                        return null;
+                    }
+                } else if (completion != null) {
+                    return completion;
+                }
+                this.evaluate(forStmt.increment);
+            }
+        } finally {
+            this.environment = outerScope;
         }
         return null;
     }
 
     @Override 
-    public Void visitSingleKeywordStmt (Stmt.SingleKeywordStmt singleKeywordStmt) {
+    public Object visitSingleKeywordStmt (Stmt.SingleKeywordStmt singleKeywordStmt) {
         LoxToken keyword = singleKeywordStmt.keyword;
         switch (keyword.type) {
             case BREAK:
-                throw new SyntaxError(keyword, "cannot use 'break' outside a loop");
             case CONTINUE:
-                throw new SyntaxError(keyword, "cannot use 'continue' outside a loop");
+                return keyword;
             default:
                 return null;
         }
@@ -200,7 +443,7 @@ public class LoxInterpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>
     public Object visitAssignmentExpr (Expr.Assignment assignment) {
         Expr right = assignment.right;
         Object rightValue = this.evaluate(right);
-        this.environment.assign(assignment.variable, rightValue);
+        this.environment.assign(assignment.depth, assignment.slot, assignment.variable, rightValue);
 
         return rightValue;
     }
@@ -211,6 +454,8 @@ public class LoxInterpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>
             anonymousFunc.parameters,
             anonymousFunc.body
         );
+        anonymousFuncDecl.locals = anonymousFunc.locals;
+        anonymousFuncDecl.enclosesFunction = anonymousFunc.enclosesFunction;
         return new LoxFunction(anonymousFuncDecl, environment);
     }
     
@@ -280,14 +525,6 @@ public class LoxInterpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>
                 result = !ExprHelper.isEqual(left, right);
                 break;
             }
-            case AND: {
-                result = ExprHelper.isTruthy(left) && ExprHelper.isTruthy(right);
-                break;
-            }
-            case OR: {
-                result = ExprHelper.isTruthy(left) || ExprHelper.isTruthy(right);
-                break;
-            }
             default: {
                 throw new RuntimeError(operator, "invalid binary operator");
             }
@@ -296,6 +533,19 @@ public class LoxInterpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>
         return result;
     }
 
+    @Override
+    public Object visitLogicalExpr (Expr.Logical logical) {
+        Object left = this.evaluate(logical.left);
+        if (logical.operator.type == LoxTokenType.OR) {
+            if (ExprHelper.isTruthy(left)) {
+                return left;
+            }
+        } else if (!ExprHelper.isTruthy(left)) {
+            return left;
+        }
+        return this.evaluate(logical.right);
+    }
+
     @Override
     public Object visitUnaryExpr (Expr.Unary unary) {
         LoxToken operator = unary.operator;
@@ -320,22 +570,41 @@ public class LoxInterpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>
     @Override
     public Object visitCallExpr (Expr.Call expr) {
         Object callee = this.evaluate(expr.callee);
+        if (expr.inlined != null) {
+            if (callee instanceof LoxFunction function && function.isDeclaredBy(expr.inlined)) {
+                return function.inline(this, expr.arguments);
+            }
+            // the global was rebound, the call site calls whatever it holds
+            // from now on
+            expr.inlined = null;
+        }
+
+        List<Object> arguments = this.arguments(expr);
+        return this.callable(expr, callee, arguments).call(this, arguments);
+    }
 
+    private List<Object> arguments (Expr.Call call) {
         List<Object> arguments = new ArrayList<>();
-        for (Expr argument : expr.arguments) {
+        for (Expr argument : call.arguments) {
             arguments.add(this.evaluate(argument));
         }
+        return arguments;
+    }
 
+    /**
+     * `callee` as the callable `call` calls with `arguments`, or the error the
+     * call fails with.
+     */
+    private LoxCallable callable (Expr.Call call, Object callee, List<Object> arguments) {
         if (!(callee instanceof LoxCallable)) {
-            throw new RuntimeError(expr.paren, "can only call functions and classes");
+            throw new RuntimeError(call.paren, "can only call functions and classes");
         }
 
         LoxCallable callable = (LoxCallable)callee;
         if (arguments.size() != callable.arity()) {
-            throw new RuntimeError(expr.paren, "Expected " + callable.arity() + " arguments but got " + arguments.size());
+            throw new RuntimeError(call.paren, "Expected " + callable.arity() + " arguments but got " + arguments.size());
         }
-
-        return callable.call(this, arguments);
+        return callable;
     }
 
     @Override
@@ -345,6 +614,6 @@ public class LoxInterpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>
 
     @Override
     public Object visitVariableExpr (Expr.Variable variable) {
-        return this.environment.use(variable.token);
+        return this.environment.use(variable.depth, variable.slot, variable.token);
     }
 }
@@ -0,0 +1,359 @@
+package com.lox.interpreter;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.lox.lexer.LoxToken;
+import com.lox.parser.ast.Expr;
+import com.lox.parser.ast.Stmt;
+
+/**
+ * A static pass run between parsing and execution that gives every block and
+ * function a frame with one slot per variable it declares, and annotates every
+ * variable reference with the number of frames to hop (`depth`) and the slot
+ * to index (`slot`).
+ *
+ * A block or `for` loop that declares nothing gets no frame: its statements
+ * resolve as if they were in the enclosing scope, and the engines run them
+ * there, so blocks that only group statements cost nothing at runtime.
+ *
+ * Variables of the global and script scopes are not given slots: the REPL
+ * keeps adding to them, so they stay keyed by name. A reference that resolves
+ * to a slot whose declaration has not run yet (e.g. `{ print a; var a = 1; }`
+ * or a closure called before the variable it captures is declared) falls back
+ * to a lookup by name, so programs behave exactly as if every scope were looked
+ * up by name.
+ */
+public class Resolver implements Stmt.Visitor<Void>, Expr.Visitor<Void> {
+
+    /**
+     * The variables of a block or function frame, collected before resolving
+     * its statements so that closures can reference later declarations.
+     */
+    static private class Scope {
+        final List<String> locals = new ArrayList<>();
+        final Map<String, Integer> slots = new IdentityHashMap<>();
+        // whether a closure may capture the frame
+        boolean enclosesFunction;
+
+        int declare (String name) {
+            Integer slot = this.slots.get(name);
+            if (slot == null) {
+                slot = this.add(name);
+            }
+            return slot;
+        }
+
+        int add (String name) {
+            int slot = this.locals.size();
+            this.locals.add(name);
+            this.slots.put(name, slot);
+            return slot;
+        }
+
+        String[] locals () {
+            return this.locals.toArray(new String[0]);
+        }
+    }
+
+    // innermost scope last, empty at the top level
+    final private List<Scope> scopes = new ArrayList<>();
+    // whether a function body is being resolved, and the loops around the
+    // statement being resolved within it
+    private boolean inFunction;
+    private int loops;
+
+    public void resolve (List<Stmt> program) {
+        for (var statement : program) {
+            this.resolve(statement);
+        }
+    }
+
+    public void resolve (Stmt statement) {
+        if (statement != null) {
+            statement.accept(this);
+        }
+    }
+
+    private void resolve (Expr expression) {
+        if (expression != null) {
+            expression.accept(this);
+        }
+    }
+
+    // ===== SCOPES =====
+
+    private void beginScope (Scope scope, List<Stmt> declarations) {
+        for (var declaration : declarations) {
+            this.collect(scope, declaration);
+        }
+        this.scopes.add(scope);
+    }
+
+    private void endScope () {
+        this.scopes.remove(this.scopes.size() - 1);
+    }
+
+    /**
+     * Adds the variables `statement` declares in the current scope. Function
+     * declarations may also appear as the body of an `if` or a `while`, which
+     * declares them in the enclosing scope.
+     */
+    private void collect (Scope scope, Stmt statement) {
+        if (statement instanceof Stmt.VarDeclStmt varDecl) {
+            scope.declare((String)varDecl.identifier.literal);
+        } else if (statement instanceof Stmt.FunDeclStmt funDecl) {
+            scope.declare((String)funDecl.identifier.literal);
+        } else if (statement instanceof Stmt.IfStmt ifStmt) {
+            this.collect(scope, ifStmt.statement);
+            for (var elseIf : ifStmt.elseIfStatements) {
+                this.collect(scope, elseIf);
+            }
+            this.collect(scope, ifStmt.elseStatement);
+        } else if (statement instanceof Stmt.WhileStmt whileStmt) {
+            this.collect(scope, whileStmt.statement);
+        }
+    }
+
+    /**
+     * The slot of a declaration in the current scope, or `-1` at the top level.
+     */
+    private int slotOf (LoxToken identifier) {
+        if (this.scopes.isEmpty()) {
+            return -1;
+        }
+        return this.scopes.get(this.scopes.size() - 1).slots.get((String)identifier.literal);
+    }
+
+    /**
+     * Resolves a reference to the innermost frame declaring it anywhere, or to
+     * the script scope (`depth` past the last frame, no `slot`).
+     */
+    private int[] locate (LoxToken variable) {
+        String name = (String)variable.literal;
+        int depth = 0;
+        for (int i = this.scopes.size() - 1; i >= 0; i--, depth++) {
+            Integer slot = this.scopes.get(i).slots.get(name);
+            if (slot != null) {
+                return new int[] { depth, slot };
+            }
+        }
+        return new int[] { depth, -1 };
+    }
+
+    private Scope resolveFunction (List<LoxToken> parameters, Stmt.BlockStmt body) {
+        for (var enclosing : this.scopes) {
+            enclosing.enclosesFunction = true;
+        }
+
+        Scope scope = new Scope();
+        for (var parameter : parameters) {
+            // a repeated parameter is bound to the last argument
+            scope.add((String)parameter.literal);
+        }
+
+        // the body runs in the function's frame, not in a frame of its own
+        this.beginScope(scope, body.declarations);
+        boolean inFunction = this.inFunction;
+        int loops = this.loops;
+        this.inFunction = true;
+        this.loops = 0;
+        try {
+            for (var declaration : body.declarations) {
+                this.resolve(declaration);
+            }
+        } finally {
+            this.endScope();
+            this.inFunction = inFunction;
+            this.loops = loops;
+        }
+        return scope;
+    }
+
+    // ===== STATEMENT VISITOR METHODS =====
+
+    @Override
+    public Void visitVarDeclStmt (Stmt.VarDeclStmt varDeclStmt) {
+        this.resolve(varDeclStmt.expression);
+        varDeclStmt.slot = this.slotOf(varDeclStmt.identifier);
+        return null;
+    }
+
+    @Override
+    public Void visitFunDeclStmt (Stmt.FunDeclStmt funDeclStmt) {
+        funDeclStmt.slot = this.slotOf(funDeclStmt.identifier);
+        Scope scope = this.resolveFunction(funDeclStmt.parameters, funDeclStmt.body);
+        funDeclStmt.locals = scope.locals();
+        funDeclStmt.enclosesFunction = scope.enclosesFunction;
+        return null;
+    }
+
+    @Override
+    public Void visitBlockStmt (Stmt.BlockStmt blockStmt) {
+        Scope scope = new Scope();
+        for (var declaration : blockStmt.declarations) {
+            this.collect(scope, declaration);
+        }
+        this.resolveIn(scope, () -> {
+            for (var declaration : blockStmt.declarations) {
+                this.resolve(declaration);
+            }
+        });
+        blockStmt.locals = scope.locals();
+        blockStmt.enclosesFunction = scope.enclosesFunction;
+        return null;
+    }
+
+    /**
+     * Resolves `body` in the frame `scope`, whose variables were collected
+     * already, or in the enclosing scope if it has none.
+     */
+    private void resolveIn (Scope scope, Runnable body) {
+        if (scope.locals.isEmpty()) {
+            body.run();
+            return;
+        }
+
+        this.scopes.add(scope);
+        try {
+            body.run();
+        } finally {
+            this.endScope();
+        }
+    }
+
+    @Override
+    public Void visitExpressionStmt (Stmt.ExpressionStmt exprStmt) {
+        this.resolve(exprStmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt (Stmt.PrintStmt printStmt) {
+        this.resolve(printStmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt (Stmt.ReturnStmt returnStmt) {
+        this.resolve(returnStmt.expression);
+        // in a loop, a `break` or `continue` escaping the callee still has to
+        // reach the loop, so the call is made before returning
+        returnStmt.tailCall = this.inFunction && this.loops == 0 && returnStmt.expression instanceof Expr.Call;
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt (Stmt.IfStmt ifStmt) {
+        this.resolve(ifStmt.condition);
+        this.resolve(ifStmt.statement);
+        for (var elseIf : ifStmt.elseIfStatements) {
+            this.resolve(elseIf);
+        }
+        this.resolve(ifStmt.elseStatement);
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt (Stmt.WhileStmt whileStmt) {
+        this.resolve(whileStmt.condition);
+        this.loops++;
+        this.resolve(whileStmt.statement);
+        this.loops--;
+        return null;
+    }
+
+    @Override
+    public Void visitForStmt (Stmt.ForStmt forStmt) {
+        // the loop's frame holds the initializer's variable, and declarations
+        // that are the loop's body
+        Scope scope = new Scope();
+        this.collect(scope, forStmt.initializer);
+        this.collect(scope, forStmt.statement);
+        this.resolveIn(scope, () -> {
+            this.resolve(forStmt.initializer);
+            this.resolve(forStmt.condition);
+            this.resolve(forStmt.increment);
+            this.loops++;
+            this.resolve(forStmt.statement);
+            this.loops--;
+        });
+        forStmt.locals = scope.locals();
+        forStmt.enclosesFunction = scope.enclosesFunction;
+        return null;
+    }
+
+    @Override
+    public Void visitSingleKeywordStmt (Stmt.SingleKeywordStmt singleKeywordStmt) {
+        return null;
+    }
+
+    // ===== EXPRESSION VISITOR METHODS =====
+
+    @Override
+    public Void visitAssignmentExpr (Expr.Assignment assignment) {
+        this.resolve(assignment.right);
+        int[] location = this.locate(assignment.variable);
+        assignment.depth = location[0];
+        assignment.slot = location[1];
+        return null;
+    }
+
+    @Override
+    public Void visitAnonymousFuncExpr (Expr.AnonymousFunc anonymousFunc) {
+        Scope scope = this.resolveFunction(anonymousFunc.parameters, anonymousFunc.body);
+        anonymousFunc.locals = scope.locals();
+        anonymousFunc.enclosesFunction = scope.enclosesFunction;
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr (Expr.Grouping group) {
+        this.resolve(group.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr (Expr.Binary binary) {
+        this.resolve(binary.left);
+        this.resolve(binary.right);
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr (Expr.Logical logical) {
+        this.resolve(logical.left);
+        this.resolve(logical.right);
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr (Expr.Unary unary) {
+        this.resolve(unary.right);
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr (Expr.Call call) {
+        this.resolve(call.callee);
+        for (var argument : call.arguments) {
+            this.resolve(argument);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr (Expr.Literal literal) {
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr (Expr.Variable variable) {
+        int[] location = this.locate(variable.token);
+        variable.depth = location[0];
+        variable.slot = location[1];
+        return null;
+    }
+}
@@ -0,0 +1,186 @@
+package com.lox.jit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.stream.Stream;
+
+import com.lox.cache.AstCodec;
+import com.lox.interpreter.Resolver;
+import com.lox.parser.ast.Stmt;
+
+/**
+ * Compiles a program ahead of time into a runnable jar (`lox compile`).
+ *
+ * The jar's main class, `LoxProgram`, has one method per function declaration
+ * the `JavaGenerator` can compile, the program's AST encoded with `AstCodec`
+ * as a resource, and the runtime it needs: the interpreter's own classes
+ * minus the command line, the REPL and the other engines. At startup the AST
+ * is decoded instead of lexed and parsed, and `AotProgram` runs it with the
+ * compiled functions in place of their declarations.
+ *
+ * Nothing is known about the types a function will be called with, so unlike
+ * the `Jit` the compiled code does not speculate and never deoptimises.
+ */
+public class AotCompiler {
+    static final public String MAIN_CLASS = "com.lox.jit.LoxProgram";
+    static final private String PROGRAM_RESOURCE = "LoxProgram.loxc";
+
+    // runtime classes the compiled program never loads
+    static final private List<String> EXCLUDED = List.of(
+        "com/lox/App", "com/lox/CommandLine", "com/lox/ReplBuffer", "com/lox/Lox.class", "com/lox/Lox$",
+        "com/lox/vm/", "com/lox/closure/", "com/lox/cache/AstCache"
+    );
+
+    final private InMemoryCompiler javac = new InMemoryCompiler();
+
+    /**
+     * Writes a runnable jar of `program`, which must not have been run (nor
+     * resolved) yet, to `jar`. Returns one line per function declaration,
+     * telling whether it was compiled.
+     */
+    public List<String> compile (List<Stmt> program, Path jar) throws IOException {
+        if (!this.javac.isAvailable()) {
+            throw new IllegalStateException("there is no Java compiler");
+        }
+        new Resolver().resolve(program);
+
+        ByteArrayOutputStream ast = new ByteArrayOutputStream();
+        AstCodec.write(program, new DataOutputStream(ast));
+
+        JavaGenerator generator = new JavaGenerator(true);
+        StringBuilder methods = new StringBuilder();
+        List<Integer> compiled = new ArrayList<>();
+        List<String> report = new ArrayList<>();
+
+        List<Stmt.FunDeclStmt> functions = AotProgram.functions(program);
+        for (int i = 0; i < functions.size(); i++) {
+            Stmt.FunDeclStmt declaration = functions.get(i);
+            String name = "'" + declaration.identifier.lexeme + "'";
+            if (declaration.enclosesFunction) {
+                report.add("interpreting " + name + ": it declares a closure");
+                continue;
+            }
+            try {
+                methods.append('\n').append(generator.method(methodName(i, declaration), declaration, 0));
+                compiled.add(i);
+                report.add("compiled " + name);
+            } catch (JavaGenerator.Unsupported e) {
+                report.add("interpreting " + name + ": " + e.getMessage());
+            }
+        }
+
+        Map<String, byte[]> classes = this.javac.compile("LoxProgram", source(generator, methods, compiled, functions));
+        this.writeJar(jar, classes, ast.toByteArray());
+        return report;
+    }
+
+    private static String methodName (int index, Stmt.FunDeclStmt declaration) {
+        return "f" + index + "_" + declaration.identifier.lexeme;
+    }
+
+    private static String source (JavaGenerator generator, StringBuilder methods, List<Integer> compiled, List<Stmt.FunDeclStmt> functions) {
+        List<String> indices = new ArrayList<>();
+        List<String> code = new ArrayList<>();
+        for (int i : compiled) {
+            indices.add(Integer.toString(i));
+            code.add("program::" + methodName(i, functions.get(i)));
+        }
+
+        return "package com.lox.jit;\n\n" +
+            JavaGenerator.IMPORTS + "\n" +
+            "public final class LoxProgram {\n" +
+            generator.fields() + "\n" +
+            "    public LoxProgram (SymbolTable symbols) {\n" +
+            generator.initializers() +
+            "    }\n" +
+            methods + "\n" +
+            "    public static void main (String[] args) {\n" +
+            "        LoxInterpreter interpreter = new LoxInterpreter();\n" +
+            "        LoxProgram program = new LoxProgram(interpreter.getSymbols());\n" +
+            "        int status = AotProgram.run(\n" +
+            "            interpreter, LoxProgram.class.getResourceAsStream(\"" + PROGRAM_RESOURCE + "\"),\n" +
+            "            new int[] { " + String.join(", ", indices) + " },\n" +
+            "            new JitCode[] { " + String.join(", ", code) + " }\n" +
+            "        );\n" +
+            "        if (status != 0) {\n" +
+            "            System.exit(status);\n" +
+            "        }\n" +
+            "    }\n" +
+            "}\n";
+    }
+
+    // ===== JAR =====
+
+    private void writeJar (Path jar, Map<String, byte[]> classes, byte[] ast) throws IOException {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, MAIN_CLASS);
+
+        Map<String, byte[]> entries = runtime();
+        for (var entry : classes.entrySet()) {
+            entries.put(entry.getKey().replace('.', '/') + ".class", entry.getValue());
+        }
+        entries.put("com/lox/jit/" + PROGRAM_RESOURCE, ast);
+
+        try (OutputStream file = Files.newOutputStream(jar); JarOutputStream out = new JarOutputStream(file, manifest)) {
+            for (var entry : entries.entrySet()) {
+                out.putNextEntry(new JarEntry(entry.getKey()));
+                out.write(entry.getValue());
+                out.closeEntry();
+            }
+        }
+    }
+
+    /**
+     * The class files of the runtime by jar entry name, read from wherever the
+     * interpreter itself was loaded from.
+     */
+    private static Map<String, byte[]> runtime () throws IOException {
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        Path location = InMemoryCompiler.classPath();
+        if (Files.isDirectory(location)) {
+            try (Stream<Path> files = Files.walk(location)) {
+                for (Path file : (Iterable<Path>)files::iterator) {
+                    String name = location.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+                    if (isRuntime(name)) {
+                        classes.put(name, Files.readAllBytes(file));
+                    }
+                }
+            }
+        } else {
+            try (JarFile jar = new JarFile(location.toFile())) {
+                for (var entry : (Iterable<JarEntry>)jar.stream()::iterator) {
+                    if (isRuntime(entry.getName())) {
+                        classes.put(entry.getName(), jar.getInputStream(entry).readAllBytes());
+                    }
+                }
+            }
+        }
+        return classes;
+    }
+
+    private static boolean isRuntime (String name) {
+        if (!name.startsWith("com/lox/") || !name.endsWith(".class")) {
+            return false;
+        }
+        for (var excluded : EXCLUDED) {
+            if (name.startsWith(excluded)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
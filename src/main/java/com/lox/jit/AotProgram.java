@@ -0,0 +1,92 @@
+package com.lox.jit;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.lox.cache.AstCodec;
+import com.lox.interpreter.LoxInterpreter;
+import com.lox.interpreter.exceptions.RuntimeError;
+import com.lox.parser.ast.Stmt;
+import com.lox.parser.exceptions.SyntaxError;
+
+/**
+ * Runs a program compiled by the `AotCompiler`: the program's AST is decoded
+ * rather than lexed and parsed, its compiled functions are attached to their
+ * declarations, and the rest runs in the tree-walking interpreter.
+ */
+public final class AotProgram {
+    private AotProgram () {}
+
+    /**
+     * Runs the program encoded in `ast` with `interpreter`, where the function
+     * declaration `functions[i]` (see `functions(List<Stmt>)`) runs `code[i]`,
+     * and returns the exit status `lox run` would have exited with.
+     */
+    public static int run (LoxInterpreter interpreter, InputStream ast, int[] functions, JitCode[] code) {
+        List<Stmt> program;
+        try (ast) {
+            // `AstCodec` bounds what it reads by `available()`, which a stream
+            // of a jar entry does not report
+            program = AstCodec.read(new DataInputStream(new ByteArrayInputStream(ast.readAllBytes())), interpreter.getSymbols());
+        } catch (IOException e) {
+            System.err.println("cannot read the compiled program: " + e.getMessage());
+            return 66;
+        }
+
+        List<Stmt.FunDeclStmt> declarations = functions(program);
+        for (int i = 0; i < functions.length; i++) {
+            Stmt.FunDeclStmt declaration = declarations.get(functions[i]);
+            declaration.profile = new JitProfile(declaration, code[i]);
+        }
+
+        try {
+            interpreter.interpret(program);
+        } catch (RuntimeError e) {
+            System.err.println(e.token);
+            System.err.println(e);
+            return 70;
+        } catch (SyntaxError e) {
+            System.err.println(e.token);
+            System.err.println(e);
+            return 65;
+        }
+        return 0;
+    }
+
+    /**
+     * The function declarations of `program` that are statements, in the
+     * order they appear.
+     */
+    public static List<Stmt.FunDeclStmt> functions (List<Stmt> program) {
+        List<Stmt.FunDeclStmt> functions = new ArrayList<>();
+        for (var statement : program) {
+            collect(statement, functions);
+        }
+        return functions;
+    }
+
+    private static void collect (Stmt statement, List<Stmt.FunDeclStmt> functions) {
+        if (statement instanceof Stmt.FunDeclStmt funDecl) {
+            functions.add(funDecl);
+            collect(funDecl.body, functions);
+        } else if (statement instanceof Stmt.BlockStmt block) {
+            for (var declaration : block.declarations) {
+                collect(declaration, functions);
+            }
+        } else if (statement instanceof Stmt.IfStmt ifStmt) {
+            collect(ifStmt.statement, functions);
+            for (var elseIf : ifStmt.elseIfStatements) {
+                collect(elseIf, functions);
+            }
+            collect(ifStmt.elseStatement, functions);
+        } else if (statement instanceof Stmt.WhileStmt whileStmt) {
+            collect(whileStmt.statement, functions);
+        } else if (statement instanceof Stmt.ForStmt forStmt) {
+            collect(forStmt.statement, functions);
+        }
+    }
+}
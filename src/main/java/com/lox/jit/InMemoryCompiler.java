@@ -0,0 +1,100 @@
+package com.lox.jit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import com.lox.parser.ast.LoxFunction;
+
+/**
+ * Compiles generated Java source of package `com.lox.jit` with the JDK's
+ * `javac`, against the classes of this interpreter, without touching the
+ * file system.
+ */
+final class InMemoryCompiler {
+    final private JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+    final private StandardJavaFileManager files;
+    final private List<String> options;
+
+    InMemoryCompiler () {
+        this.files = this.javac == null ? null : this.javac.getStandardFileManager(null, null, null);
+        this.options = List.of("-classpath", classPath().toString(), "-proc:none", "-g:none", "-nowarn");
+    }
+
+    /** Whether the JVM comes with a Java compiler (i.e. is not a bare JRE). */
+    boolean isAvailable () {
+        return this.javac != null;
+    }
+
+    /**
+     * Where the classes of this interpreter were loaded from, a directory or
+     * a jar.
+     */
+    static Path classPath () {
+        try {
+            return Path.of(LoxFunction.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        } catch (Exception e) {
+            return Path.of(System.getProperty("java.class.path"));
+        }
+    }
+
+    /**
+     * The class files, by binary name, of compiling `source` as the class
+     * `className` of package `com.lox.jit`. Fails with an
+     * `IllegalStateException` carrying the first error and the source.
+     */
+    Map<String, byte[]> compile (String className, String source) {
+        JavaFileObject input = new SimpleJavaFileObject(URI.create("string:///com/lox/jit/" + className + ".java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent (boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+
+        Map<String, ByteArrayOutputStream> outputs = new LinkedHashMap<>();
+        JavaFileManager manager = new ForwardingJavaFileManager<StandardJavaFileManager>(this.files) {
+            @Override
+            public JavaFileObject getJavaFileForOutput (JavaFileManager.Location location, String name, JavaFileObject.Kind kind, FileObject sibling) {
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                outputs.put(name, output);
+                return new SimpleJavaFileObject(URI.create("bytes:///" + name.replace('.', '/') + kind.extension), kind) {
+                    @Override
+                    public OutputStream openOutputStream () {
+                        return output;
+                    }
+                };
+            }
+        };
+
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        if (!this.javac.getTask(null, manager, diagnostics, this.options, null, List.of(input)).call()) {
+            String message = "javac failed";
+            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                    message = diagnostic.getMessage(null) + " at line " + diagnostic.getLineNumber() + " of\n" + source;
+                    break;
+                }
+            }
+            throw new IllegalStateException(message);
+        }
+
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        outputs.forEach((name, output) -> classes.put(name, output.toByteArray()));
+        return classes;
+    }
+}
@@ -0,0 +1,655 @@
+package com.lox.jit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.lox.lexer.LoxToken;
+import com.lox.lexer.LoxTokenType;
+import com.lox.parser.ast.Expr;
+import com.lox.parser.ast.Stmt;
+
+/**
+ * Translates functions into the Java source of methods with the signature of
+ * `JitCode.call`, and their tokens and literals into final fields.
+ *
+ * Only functions that declare no closures are compiled, so no frame of theirs
+ * can outlive a call: the variables of the function and its blocks become
+ * Java locals (`v0`, `v1`, ...) holding `JitRuntime.UNDECLARED` until their
+ * declaration runs, and a variable read before its declaration falls back to
+ * the same name in enclosing blocks and then outside the function, as the
+ * `Resolver` describes. Variables outside the function are reached through the
+ * frames of its closure, as in the interpreter.
+ *
+ * Expressions are typed `double` or `boolean` wherever the operator guarantees
+ * it, so arithmetic on numbers the function only passes around locally is not
+ * boxed. Parameters speculated to be numbers are `double` locals from the
+ * start, behind a guard that deoptimises the call if one is not.
+ *
+ * Literals become final fields rather than Java constants, so that `javac`
+ * never folds a condition into an unreachable statement the interpreter would
+ * have run (or silently skipped).
+ */
+final class JavaGenerator implements Stmt.Visitor<Void>, Expr.Visitor<JavaGenerator.Code> {
+
+    static final int OBJECT = 0;
+    static final int NUMBER = 1;
+    static final int BOOLEAN = 2;
+
+    /** A Java expression and whether it is an `Object`, `double` or `boolean`. */
+    record Code (String source, int type) {}
+
+    /** The frame of the function or one of its blocks. */
+    static private class Scope {
+        final String[] locals;
+        // number of the Java local of slot 0
+        final int base;
+
+        Scope (String[] locals, int base) {
+            this.locals = locals;
+            this.base = base;
+        }
+
+        /** The slot a lookup of `name` by name finds, like `Environment.indexOf`. */
+        int indexOf (String name) {
+            for (int i = this.locals.length - 1; i >= 0; i--) {
+                if (this.locals[i].equals(name)) return i;
+            }
+            return -1;
+        }
+    }
+
+    /** A function the `Jit` cannot compile. */
+    static class Unsupported extends RuntimeException {
+        Unsupported (String reason) {
+            super(reason, null, false, false);
+        }
+    }
+
+    /**
+     * A parameter speculated to be a number is assigned or redeclared, the
+     * function must be generated again without speculating on `parameters`.
+     */
+    static class Reassigned extends RuntimeException {
+        final long parameters;
+
+        Reassigned (long parameters) {
+            super(null, null, false, false);
+            this.parameters = parameters;
+        }
+    }
+
+    /** Imports of a class with the generated methods. */
+    static final String IMPORTS =
+        "import com.lox.interpreter.Environment;\n" +
+        "import com.lox.interpreter.LoxInterpreter;\n" +
+        "import com.lox.interpreter.helpers.ExprHelper;\n" +
+        "import com.lox.lexer.LoxScanner;\n" +
+        "import com.lox.lexer.LoxToken;\n" +
+        "import com.lox.lexer.LoxTokenType;\n" +
+        "import com.lox.lexer.SymbolTable;\n" +
+        "import com.lox.parser.exceptions.SyntaxError;\n\n" +
+        "import static com.lox.jit.JitRuntime.*;\n";
+
+    // whether constants are rebuilt from a `SymbolTable symbols` rather than
+    // passed as `Object[] constants`
+    final private boolean rebuildConstants;
+    final private List<Object> constants = new ArrayList<>();
+    final private StringBuilder fields = new StringBuilder();
+    final private StringBuilder initializers = new StringBuilder();
+
+    // the method being generated
+    private Stmt.FunDeclStmt declaration;
+    // bit `i` is set if parameter `i` is speculated to be a number
+    private long numbers;
+    private StringBuilder body;
+    // innermost scope last, the function's frame first
+    final private List<Scope> scopes = new ArrayList<>();
+    // labels of the enclosing loops, innermost last
+    final private List<String> loops = new ArrayList<>();
+    private int locals;
+    private int temporaries;
+    private int labels;
+    private int indent;
+
+    /**
+     * With `rebuildConstants`, the constructor builds the tokens and literals
+     * of the generated code from a `SymbolTable symbols` (for code that is
+     * saved); otherwise it is passed them as `Object[] constants`.
+     */
+    JavaGenerator (boolean rebuildConstants) {
+        this.rebuildConstants = rebuildConstants;
+    }
+
+    /**
+     * The source of a method `name` of the class running the body of
+     * `declaration`, with the signature of `JitCode.call`.
+     */
+    String method (String name, Stmt.FunDeclStmt declaration, long numbers) {
+        this.declaration = declaration;
+        this.numbers = numbers;
+        this.body = new StringBuilder();
+        this.scopes.clear();
+        this.loops.clear();
+        this.temporaries = 0;
+        this.labels = 0;
+        this.indent = 2;
+
+        List<LoxToken> parameters = declaration.parameters;
+        String[] locals = declaration.locals;
+        if (locals == null) {
+            throw new Unsupported("it was not resolved");
+        }
+
+        for (int i = 0; i < parameters.size(); i++) {
+            if (this.isNumber(i)) {
+                this.line("if (!(arguments[" + i + "] instanceof Double)) return DEOPTIMIZE;");
+            }
+        }
+        for (int i = 0; i < locals.length; i++) {
+            if (i >= parameters.size()) {
+                this.line("Object v" + i + " = UNDECLARED;");
+            } else if (this.isNumber(i)) {
+                this.line("double v" + i + " = (Double)arguments[" + i + "];");
+            } else {
+                this.line("Object v" + i + " = arguments[" + i + "];");
+            }
+        }
+
+        this.scopes.add(new Scope(locals, 0));
+        this.locals = locals.length;
+        for (var statement : declaration.body.declarations) {
+            statement.accept(this);
+        }
+        this.line("return null;");
+
+        StringBuilder temporaries = new StringBuilder();
+        for (int i = 0; i < this.temporaries; i++) {
+            temporaries.append("        Object t").append(i).append(" = null;\n");
+        }
+        return "    public Object " + name + " (LoxInterpreter interpreter, Environment closure, Object[] arguments) {\n" +
+            temporaries +
+            this.body +
+            "    }\n";
+    }
+
+    /** The declarations of the fields holding the constants of the methods. */
+    String fields () {
+        return this.fields.toString();
+    }
+
+    /** The statements of the constructor that initialise the fields. */
+    String initializers () {
+        return this.initializers.toString();
+    }
+
+    Object[] constants () {
+        return this.constants.toArray();
+    }
+
+    // ===== HELPERS =====
+
+    private boolean isNumber (int parameter) {
+        return parameter < 64 && parameter < this.declaration.parameters.size() && (this.numbers & (1L << parameter)) != 0;
+    }
+
+    /** The parameters named `name` that are speculated to be numbers. */
+    private long numbersNamed (LoxToken name) {
+        long parameters = 0;
+        for (int i = 0; i < this.declaration.parameters.size(); i++) {
+            if (this.isNumber(i) && this.declaration.parameters.get(i).literal.equals(name.literal)) {
+                parameters |= 1L << i;
+            }
+        }
+        return parameters;
+    }
+
+    private void line (String line) {
+        this.body.append("    ".repeat(this.indent)).append(line).append('\n');
+    }
+
+    /** A final field holding `value`, of Java type `type`. */
+    private String constant (Object value, String type) {
+        int index = this.constants.size();
+        this.constants.add(value);
+        String name = "k" + index;
+        this.fields.append("    final private ").append(type).append(' ').append(name).append(";\n");
+        String initializer = this.rebuildConstants ? rebuild(value) : "(" + type + ")constants[" + index + "]";
+        this.initializers.append("        this.").append(name).append(" = ").append(initializer).append(";\n");
+        return name;
+    }
+
+    /**
+     * A Java expression rebuilding `value` from `symbols`, the way
+     * `AstCodec` rebuilds the tokens of a program.
+     */
+    private static String rebuild (Object value) {
+        if (value instanceof LoxToken token) {
+            return "LoxScanner.materialize(" + quote(token.lexeme) + ", symbols, LoxTokenType." + token.type.name() +
+                ", 0, " + token.lexeme.length() + ", " + token.line + ", " + token.col + ")";
+        } else if (value instanceof Double number) {
+            return "Double.longBitsToDouble(0x" + Long.toHexString(Double.doubleToRawLongBits(number)) + "L)";
+        } else if (value instanceof String string) {
+            return "symbols.intern(" + quote(string) + ")";
+        }
+        return "Boolean." + (Boolean.TRUE.equals(value) ? "TRUE" : "FALSE");
+    }
+
+    private static String quote (String string) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                // not a unicode escape, which javac would unescape before lexing the literal
+                quoted.append(String.format("\\%03o", (int)c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    private String token (LoxToken token) {
+        return this.constant(token, "LoxToken");
+    }
+
+    private String temporary () {
+        return "t" + this.temporaries++;
+    }
+
+    private static Code object (String source) {
+        return new Code(source, OBJECT);
+    }
+
+    private static Code number (String source) {
+        return new Code(source, NUMBER);
+    }
+
+    private static Code bool (String source) {
+        return new Code(source, BOOLEAN);
+    }
+
+    /** `code` as an `Object`, boxing it if needed. */
+    private static String box (Code code) {
+        switch (code.type) {
+            case NUMBER: return "Double.valueOf(" + code.source + ")";
+            case BOOLEAN: return "Boolean.valueOf(" + code.source + ")";
+            default: return code.source;
+        }
+    }
+
+    /** `code` as a Java condition, i.e. its truthiness. */
+    private static String truthy (Code code) {
+        return code.type == BOOLEAN ? code.source : "truthy(" + code.source + ")";
+    }
+
+    private Code compile (Expr expression) {
+        if (expression == null) {
+            return object("(Object)null");
+        }
+        return expression.accept(this);
+    }
+
+    /**
+     * The Java local of a variable the `Resolver` placed `depth` frames up in
+     * `slot`, or `null` if the variable is outside the function.
+     */
+    private Scope scopeOf (int depth, int slot) {
+        if (depth < 0) {
+            throw new Unsupported("it was not resolved");
+        }
+        int index = this.scopes.size() - 1 - depth;
+        if (index < 0) {
+            return null;
+        } else if (slot < 0) {
+            throw new Unsupported("it was not resolved");
+        }
+        return this.scopes.get(index);
+    }
+
+    /**
+     * The Java locals of the variables named `name` in the scopes enclosing the
+     * one at `index`, innermost first.
+     */
+    private List<String> fallbacks (String name, int index) {
+        List<String> fallbacks = new ArrayList<>();
+        for (int i = index - 1; i >= 0; i--) {
+            Scope scope = this.scopes.get(i);
+            int slot = scope.indexOf(name);
+            if (slot >= 0) {
+                fallbacks.add("v" + (scope.base + slot));
+            }
+        }
+        return fallbacks;
+    }
+
+    private void statement (Stmt statement) {
+        this.line("{");
+        this.indent++;
+        statement.accept(this);
+        this.indent--;
+        this.line("}");
+    }
+
+    // ===== STATEMENT VISITOR METHODS =====
+
+    @Override
+    public Void visitVarDeclStmt (Stmt.VarDeclStmt varDeclStmt) {
+        if (this.numbersNamed(varDeclStmt.identifier) != 0) {
+            throw new Reassigned(this.numbersNamed(varDeclStmt.identifier));
+        }
+        Scope scope = this.scopes.get(this.scopes.size() - 1);
+        if (varDeclStmt.slot < 0) {
+            throw new Unsupported("it was not resolved");
+        }
+        String value = varDeclStmt.expression == null ? "Environment.UNINITIALIZED" : box(this.compile(varDeclStmt.expression));
+        this.line("v" + (scope.base + varDeclStmt.slot) + " = " + value + ";");
+        return null;
+    }
+
+    @Override
+    public Void visitFunDeclStmt (Stmt.FunDeclStmt funDeclStmt) {
+        throw new Unsupported("it declares a closure");
+    }
+
+    @Override
+    public Void visitBlockStmt (Stmt.BlockStmt blockStmt) {
+        this.scope(blockStmt.locals, () -> {
+            for (var declaration : blockStmt.declarations) {
+                declaration.accept(this);
+            }
+        });
+        return null;
+    }
+
+    /**
+     * Generates `body` in a Java block declaring the locals of a scope, or in
+     * the current one if it declares nothing (see `Resolver`).
+     */
+    private void scope (String[] locals, Runnable body) {
+        if (locals == null) {
+            throw new Unsupported("it was not resolved");
+        } else if (locals.length == 0) {
+            body.run();
+            return;
+        }
+
+        int base = this.locals;
+        this.line("{");
+        this.indent++;
+        for (int i = 0; i < locals.length; i++) {
+            this.line("Object v" + (base + i) + " = UNDECLARED;");
+        }
+        this.scopes.add(new Scope(locals, base));
+        this.locals += locals.length;
+
+        body.run();
+
+        // sibling blocks reuse the numbers of this block's locals
+        this.locals = base;
+        this.scopes.remove(this.scopes.size() - 1);
+        this.indent--;
+        this.line("}");
+    }
+
+    @Override
+    public Void visitExpressionStmt (Stmt.ExpressionStmt exprStmt) {
+        this.line("ignore(" + this.compile(exprStmt.expression).source + ");");
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt (Stmt.PrintStmt printStmt) {
+        this.line("System.out.println(" + box(this.compile(printStmt.expression)) + ");");
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt (Stmt.ReturnStmt returnStmt) {
+        // `if (true)` keeps the statements after a return reachable for javac
+        this.line("if (true) return " + box(this.compile(returnStmt.expression)) + ";");
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt (Stmt.IfStmt ifStmt) {
+        this.line("if (" + truthy(this.compile(ifStmt.condition)) + ")");
+        this.statement(ifStmt.statement);
+        for (var elseIf : ifStmt.elseIfStatements) {
+            this.line("else if (" + truthy(this.compile(elseIf.condition)) + ")");
+            this.statement(elseIf.statement);
+        }
+        if (ifStmt.elseStatement != null) {
+            this.line("else");
+            this.statement(ifStmt.elseStatement);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt (Stmt.WhileStmt whileStmt) {
+        this.loop("while (" + truthy(this.compile(whileStmt.condition)) + ")", whileStmt.statement);
+        return null;
+    }
+
+    @Override
+    public Void visitForStmt (Stmt.ForStmt forStmt) {
+        this.scope(forStmt.locals, () -> {
+            if (forStmt.initializer != null) {
+                forStmt.initializer.accept(this);
+            }
+            String increment = forStmt.increment == null ? "" : "ignore(" + this.compile(forStmt.increment).source + ")";
+            this.loop("for (; " + truthy(this.compile(forStmt.condition)) + "; " + increment + ")", forStmt.statement);
+        });
+        return null;
+    }
+
+    /**
+     * Generates a labelled Java loop, `header` followed by `body`.
+     */
+    private void loop (String header, Stmt body) {
+        String label = "loop" + this.labels++;
+        this.line(label + ": " + header + " {");
+        this.indent++;
+        this.line("try");
+
+        this.loops.add(label);
+        this.statement(body);
+        this.loops.remove(this.loops.size() - 1);
+
+        // a `break` or `continue` of a function called in the loop
+        this.line("catch (SyntaxError e) {");
+        this.line("    if (e.token.type == LoxTokenType.BREAK) break " + label + ";");
+        this.line("    if (e.token.type == LoxTokenType.CONTINUE) continue " + label + ";");
+        this.line("    throw e;");
+        this.line("}");
+        this.indent--;
+        this.line("}");
+    }
+
+    @Override
+    public Void visitSingleKeywordStmt (Stmt.SingleKeywordStmt singleKeywordStmt) {
+        LoxToken keyword = singleKeywordStmt.keyword;
+        switch (keyword.type) {
+            case BREAK:
+            case CONTINUE:
+                if (this.loops.isEmpty()) {
+                    this.line("signal(" + this.token(keyword) + ");");
+                } else {
+                    String jump = keyword.type == LoxTokenType.BREAK ? "break " : "continue ";
+                    this.line("if (true) " + jump + this.loops.get(this.loops.size() - 1) + ";");
+                }
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    // ===== EXPRESSION VISITOR METHODS =====
+
+    @Override
+    public Code visitAssignmentExpr (Expr.Assignment assignment) {
+        if (this.numbersNamed(assignment.variable) != 0) {
+            throw new Reassigned(this.numbersNamed(assignment.variable));
+        }
+        String value = box(this.compile(assignment.right));
+        String variable = this.token(assignment.variable);
+
+        Scope scope = this.scopeOf(assignment.depth, assignment.slot);
+        if (scope == null) {
+            int depth = assignment.depth - this.scopes.size();
+            return object("assign(closure, " + depth + ", " + assignment.slot + ", " + variable + ", " + value + ")");
+        }
+
+        // the value is evaluated into a temporary before the declared variable
+        // of the name is picked
+        String temporary = this.temporary();
+        StringBuilder target = new StringBuilder();
+        List<String> candidates = new ArrayList<>();
+        candidates.add("v" + (scope.base + assignment.slot));
+        candidates.addAll(this.fallbacks((String)assignment.variable.literal, this.scopes.indexOf(scope)));
+        for (var candidate : candidates) {
+            target.append(candidate).append(" != UNDECLARED ? (").append(candidate).append(" = ").append(temporary).append(") : ");
+        }
+        target.append("assign(closure, ").append(variable).append(", ").append(temporary).append(")");
+        return object("assigned(" + temporary + " = " + value + ", " + target + ")");
+    }
+
+    @Override
+    public Code visitAnonymousFuncExpr (Expr.AnonymousFunc anonymousFunc) {
+        throw new Unsupported("it declares a closure");
+    }
+
+    @Override
+    public Code visitGroupingExpr (Expr.Grouping group) {
+        return this.compile(group.expression);
+    }
+
+    @Override
+    public Code visitBinaryExpr (Expr.Binary binary) {
+        Code left = this.compile(binary.left);
+        Code right = this.compile(binary.right);
+        boolean numbers = left.type == NUMBER && right.type == NUMBER;
+        String operands = box(left) + ", " + box(right) + ", ";
+
+        switch (binary.operator.type) {
+            case PLUS:
+                return numbers
+                    ? number("(" + left.source + " + " + right.source + ")")
+                    : object("add(" + operands + this.token(binary.operator) + ")");
+            case MINUS:
+                return numbers
+                    ? number("(" + left.source + " - " + right.source + ")")
+                    : number("subtract(" + operands + this.token(binary.operator) + ")");
+            case STAR:
+                return numbers
+                    ? number("(" + left.source + " * " + right.source + ")")
+                    : number("multiply(" + operands + this.token(binary.operator) + ")");
+            case SLASH:
+                return numbers
+                    ? number("(" + left.source + " / " + right.source + ")")
+                    : number("divide(" + operands + this.token(binary.operator) + ")");
+            case LESS:
+                return numbers
+                    ? bool("(" + left.source + " < " + right.source + ")")
+                    : bool("less(" + operands + this.token(binary.operator) + ")");
+            case LESS_EQUAL:
+                return numbers
+                    ? bool("(" + left.source + " <= " + right.source + ")")
+                    : bool("lessEqual(" + operands + this.token(binary.operator) + ")");
+            case GREATER:
+                return numbers
+                    ? bool("(" + left.source + " > " + right.source + ")")
+                    : bool("greater(" + operands + this.token(binary.operator) + ")");
+            case GREATER_EQUAL:
+                return numbers
+                    ? bool("(" + left.source + " >= " + right.source + ")")
+                    : bool("greaterEqual(" + operands + this.token(binary.operator) + ")");
+            case EQUAL_EQUAL:
+                return numbers
+                    ? bool("same(" + left.source + ", " + right.source + ")")
+                    : bool("ExprHelper.isEqual(" + box(left) + ", " + box(right) + ")");
+            case BANG_EQUAL:
+                return numbers
+                    ? bool("!same(" + left.source + ", " + right.source + ")")
+                    : bool("!ExprHelper.isEqual(" + box(left) + ", " + box(right) + ")");
+            default:
+                return object("invalidBinary(" + operands + this.token(binary.operator) + ")");
+        }
+    }
+
+    @Override
+    public Code visitLogicalExpr (Expr.Logical logical) {
+        Code left = this.compile(logical.left);
+        Code right = this.compile(logical.right);
+        String operator = logical.operator.type == LoxTokenType.OR ? " || " : " && ";
+        if (left.type == BOOLEAN && right.type == BOOLEAN) {
+            return bool("(" + left.source + operator + right.source + ")");
+        }
+
+        // the left operand is kept in a temporary in case it is the result
+        String temporary = this.temporary();
+        String test = "truthy(" + temporary + " = " + box(left) + ")";
+        return logical.operator.type == LoxTokenType.OR
+            ? object("(" + test + " ? " + temporary + " : " + box(right) + ")")
+            : object("(" + test + " ? " + box(right) + " : " + temporary + ")");
+    }
+
+    @Override
+    public Code visitUnaryExpr (Expr.Unary unary) {
+        Code right = this.compile(unary.right);
+        switch (unary.operator.type) {
+            case MINUS:
+                return right.type == NUMBER
+                    ? number("(-" + right.source + ")")
+                    : number("negate(" + box(right) + ", " + this.token(unary.operator) + ")");
+            case BANG:
+                return bool("!" + truthy(right));
+            default:
+                return object("invalidUnary(" + box(right) + ", " + this.token(unary.operator) + ")");
+        }
+    }
+
+    @Override
+    public Code visitCallExpr (Expr.Call call) {
+        StringBuilder source = new StringBuilder("invoke(interpreter, ");
+        source.append(box(this.compile(call.callee))).append(", ").append(this.token(call.paren));
+        for (var argument : call.arguments) {
+            source.append(", ").append(box(this.compile(argument)));
+        }
+        return object(source.append(")").toString());
+    }
+
+    @Override
+    public Code visitLiteralExpr (Expr.Literal literal) {
+        Object value = literal.token.literal;
+        if (value == null) {
+            return object("(Object)null");
+        } else if (value instanceof Double) {
+            return number(this.constant(value, "double"));
+        }
+        return object(this.constant(value, "Object"));
+    }
+
+    @Override
+    public Code visitVariableExpr (Expr.Variable variable) {
+        Scope scope = this.scopeOf(variable.depth, variable.slot);
+        if (scope == null) {
+            int depth = variable.depth - this.scopes.size();
+            return object("closure.use(" + depth + ", " + variable.slot + ", " + this.token(variable.token) + ")");
+        }
+
+        String local = "v" + (scope.base + variable.slot);
+        if (scope == this.scopes.get(0) && this.isNumber(variable.slot)) {
+            return number(local);
+        }
+
+        StringBuilder slowPath = new StringBuilder("use(").append(local).append(", ").append(this.token(variable.token)).append(", closure");
+        for (var fallback : this.fallbacks((String)variable.token.literal, this.scopes.indexOf(scope))) {
+            slowPath.append(", ").append(fallback);
+        }
+        slowPath.append(")");
+        return object("(" + local + " != UNDECLARED && " + local + " != Environment.UNINITIALIZED ? " + local + " : " + slowPath + ")");
+    }
+}
@@ -0,0 +1,167 @@
+package com.lox.jit;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.lox.parser.ast.Stmt;
+
+/**
+ * Compiles hot functions of the tree-walking interpreter to JVM bytecode.
+ *
+ * A `LoxFunction` counts its calls and the loop iterations it runs, and once
+ * they reach `threshold` asks the `Jit` to compile it: its declaration is
+ * translated to Java source (see `JavaGenerator`), compiled in memory with
+ * the JDK's `javac` and loaded with `MethodHandles.Lookup.defineHiddenClass`,
+ * so HotSpot optimises the Lox function as any other Java method. A loop that
+ * is already running keeps running in the interpreter; the next call runs the
+ * compiled code.
+ *
+ * Parameters that were only ever passed numbers are compiled as `double`s. A
+ * call that passes something else deoptimises before any of the function
+ * runs: the compiled code is dropped (and its class unloaded), the call is
+ * interpreted, and the function is compiled again without that speculation
+ * once it is hot again.
+ *
+ * Functions that declare closures stay in the interpreter, and so does
+ * everything when the JVM comes without a Java compiler.
+ */
+public class Jit {
+    static final public int DEFAULT_THRESHOLD = 10_000;
+
+    /** Calls plus loop iterations after which a function is compiled. */
+    final public int threshold;
+
+    final private InMemoryCompiler javac = new InMemoryCompiler();
+
+    // what happened to which function, in order
+    final private List<String> events = new ArrayList<>();
+    private int compiled;
+    private int deoptimized;
+    private int rejected;
+    private int failed;
+
+    public Jit () {
+        this(DEFAULT_THRESHOLD);
+    }
+
+    public Jit (int threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * The compiled body of `declaration`, speculating that the parameters
+     * whose bit is not set in `nonNumbers` are numbers, or `null` if it cannot
+     * be compiled.
+     */
+    public JitCode compile (Stmt.FunDeclStmt declaration, long nonNumbers) {
+        String name = name(declaration);
+        if (!this.javac.isAvailable()) {
+            return this.reject(name, "there is no Java compiler");
+        } else if (declaration.enclosesFunction) {
+            return this.reject(name, "it declares a closure");
+        }
+
+        long numbers = ~nonNumbers;
+        while (true) {
+            String className = "Lox_" + (declaration.identifier == null ? "anonymous" : declaration.identifier.lexeme) + "_" + (this.compiled + this.failed);
+            JavaGenerator generator = new JavaGenerator(false);
+            String source;
+            try {
+                String method = generator.method("call", declaration, numbers);
+                source = "package com.lox.jit;\n\n" +
+                    JavaGenerator.IMPORTS + "\n" +
+                    "public final class " + className + " implements JitCode {\n" +
+                    generator.fields() + "\n" +
+                    "    public " + className + " (Object[] constants) {\n" +
+                    generator.initializers() +
+                    "    }\n\n" +
+                    "    @Override\n" +
+                    method +
+                    "}\n";
+            } catch (JavaGenerator.Reassigned e) {
+                numbers &= ~e.parameters;
+                continue;
+            } catch (JavaGenerator.Unsupported e) {
+                return this.reject(name, e.getMessage());
+            }
+
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(this.javac.compile(className, source).get("com.lox.jit." + className), true);
+                JitCode code = (JitCode)lookup.lookupClass().getConstructor(Object[].class).newInstance((Object)generator.constants());
+                this.compiled++;
+                this.events.add("compiled " + name + speculation(declaration, numbers));
+                return code;
+            } catch (ReflectiveOperationException | IllegalStateException e) {
+                this.failed++;
+                this.events.add("failed to compile " + name + ": " + e.getMessage());
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Records that the compiled code of `declaration` was dropped because a
+     * call passed `arguments`.
+     */
+    public void deoptimized (Stmt.FunDeclStmt declaration, Object[] arguments) {
+        List<String> parameters = new ArrayList<>();
+        for (int i = 0; i < arguments.length; i++) {
+            if (!(arguments[i] instanceof Double)) {
+                parameters.add(declaration.parameters.get(i).lexeme);
+            }
+        }
+        this.deoptimized++;
+        this.events.add("deoptimized " + name(declaration) + ": " + String.join(", ", parameters) + " not a number");
+    }
+
+    public int compiled () {
+        return this.compiled;
+    }
+
+    public int deoptimized () {
+        return this.deoptimized;
+    }
+
+    /** Functions `javac` rejected the generated source of, i.e. bugs. */
+    public int failed () {
+        return this.failed;
+    }
+
+    /**
+     * A summary of the counters followed by what happened to which function.
+     */
+    public String stats () {
+        StringBuilder stats = new StringBuilder()
+            .append("jit: ").append(this.compiled).append(" compiled, ")
+            .append(this.deoptimized).append(" deoptimized, ")
+            .append(this.rejected).append(" not compilable, ")
+            .append(this.failed).append(" failed\n");
+        for (var event : this.events) {
+            stats.append("jit: ").append(event).append('\n');
+        }
+        return stats.toString();
+    }
+
+    // ===== HELPERS =====
+
+    private JitCode reject (String name, String reason) {
+        this.rejected++;
+        this.events.add("not compiling " + name + ": " + reason);
+        return null;
+    }
+
+    private static String name (Stmt.FunDeclStmt declaration) {
+        return declaration.identifier == null ? "anonymous function" : "'" + declaration.identifier.lexeme + "'";
+    }
+
+    private static String speculation (Stmt.FunDeclStmt declaration, long numbers) {
+        List<String> parameters = new ArrayList<>();
+        for (int i = 0; i < declaration.parameters.size() && i < 64; i++) {
+            if ((numbers & (1L << i)) != 0) {
+                parameters.add(declaration.parameters.get(i).lexeme);
+            }
+        }
+        return parameters.isEmpty() ? "" : " (numbers: " + String.join(", ", parameters) + ")";
+    }
+}
@@ -0,0 +1,21 @@
+package com.lox.jit;
+
+import com.lox.interpreter.Environment;
+import com.lox.interpreter.LoxInterpreter;
+
+/**
+ * The body of a `LoxFunction` compiled by the `Jit`.
+ */
+public interface JitCode {
+    /**
+     * Returned by `call` instead of running the function when the arguments
+     * break an assumption the code was compiled under.
+     */
+    static final Object DEOPTIMIZE = new Object();
+
+    /**
+     * Runs the function with `arguments` (already checked against its arity)
+     * in a frame enclosed by `closure`, and returns its return value.
+     */
+    Object call (LoxInterpreter interpreter, Environment closure, Object[] arguments);
+}
@@ -0,0 +1,83 @@
+package com.lox.jit;
+
+import com.lox.parser.ast.Stmt;
+
+/**
+ * The calls and loop iterations of a function declaration counted towards
+ * compiling it, the argument types it has seen and its compiled code. The
+ * code does not depend on the closure, so every closure of the declaration
+ * shares the profile.
+ */
+public final class JitProfile {
+    final private Stmt.FunDeclStmt declaration;
+
+    // calls and loop iterations since the function was last compiled
+    private int hotness;
+    // bit `i` is set once parameter `i` was passed something other than a number
+    private long nonNumbers;
+    private boolean compilable = true;
+    private JitCode code;
+
+    public JitProfile (Stmt.FunDeclStmt declaration) {
+        this.declaration = declaration;
+    }
+
+    /**
+     * The profile of a function compiled ahead of time to `code`, which is
+     * never recompiled.
+     */
+    public JitProfile (Stmt.FunDeclStmt declaration, JitCode code) {
+        this.declaration = declaration;
+        this.code = code;
+        this.compilable = false;
+    }
+
+    /** The compiled code, or `null` while the function is interpreted. */
+    public JitCode code () {
+        return this.code;
+    }
+
+    /**
+     * Counts an interpreted call with `arguments`, compiling the function if
+     * it became hot.
+     */
+    public void call (Jit jit, Object[] arguments) {
+        this.profile(arguments);
+        this.count(jit);
+    }
+
+    /**
+     * Counts an iteration of a loop of the function while it is interpreted.
+     */
+    public void backEdge (Jit jit) {
+        if (this.code == null) {
+            this.count(jit);
+        }
+    }
+
+    /**
+     * Drops the compiled code, whose assumptions `arguments` broke.
+     */
+    public void deoptimize (Jit jit, Object[] arguments) {
+        this.code = null;
+        this.hotness = 0;
+        this.profile(arguments);
+        jit.deoptimized(this.declaration, arguments);
+    }
+
+    private void count (Jit jit) {
+        if (++this.hotness >= jit.threshold && this.compilable) {
+            this.hotness = 0;
+            this.code = jit.compile(this.declaration, this.nonNumbers);
+            this.compilable = this.code != null;
+        }
+    }
+
+    private void profile (Object[] arguments) {
+        for (int i = 0; i < arguments.length && i < 64; i++) {
+            if (!(arguments[i] instanceof Double)) {
+                this.nonNumbers |= 1L << i;
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.lox.jit;
+
+import java.util.Arrays;
+
+import com.lox.interpreter.Environment;
+import com.lox.interpreter.LoxInterpreter;
+import com.lox.interpreter.exceptions.RuntimeError;
+import com.lox.interpreter.helpers.ExprHelper;
+import com.lox.lexer.LoxToken;
+import com.lox.parser.ast.LoxCallable;
+import com.lox.parser.ast.LoxFunction;
+import com.lox.parser.exceptions.SyntaxError;
+
+/**
+ * The operations of compiled code that are too large to generate inline.
+ * Each one behaves exactly like its counterpart in `LoxInterpreter`, errors
+ * included.
+ */
+final class JitRuntime {
+    private JitRuntime () {}
+
+    /** Value of a compiled variable whose declaration was not executed yet. */
+    static final Object UNDECLARED = new Object();
+
+    // ===== VARIABLES =====
+
+    /**
+     * Slow path of reading a compiled variable that is uninitialized or not
+     * declared yet: the first declared of the `fallbacks` (the variables of
+     * the same name in enclosing blocks), or else the variable named `variable`
+     * outside the function.
+     */
+    static Object use (Object value, LoxToken variable, Environment closure, Object... fallbacks) {
+        if (value == UNDECLARED) {
+            for (var fallback : fallbacks) {
+                if (fallback != UNDECLARED) {
+                    value = fallback;
+                    break;
+                }
+            }
+        }
+        if (value == Environment.UNINITIALIZED) {
+            throw new RuntimeError(variable, "variable is uninitialized before use");
+        } else if (value == UNDECLARED) {
+            return closure.use(variable);
+        }
+        return value;
+    }
+
+    /** Assigns the variable named `variable` outside the function. */
+    static Object assign (Environment closure, LoxToken variable, Object value) {
+        closure.assign(variable, value);
+        return value;
+    }
+
+    /** Assigns a variable `depth` frames up from the function's closure. */
+    static Object assign (Environment closure, int depth, int slot, LoxToken variable, Object value) {
+        closure.assign(depth, slot, variable, value);
+        return value;
+    }
+
+    /**
+     * The `result` of an assignment, once `value` has been evaluated into a
+     * temporary it assigns.
+     */
+    static Object assigned (Object value, Object result) {
+        return result;
+    }
+
+    // ===== OPERATORS =====
+
+    static boolean truthy (Object value) {
+        return ExprHelper.isTruthy(value);
+    }
+
+    static boolean truthy (double value) {
+        return true;
+    }
+
+    /** `==` of two numbers, which is `Double.equals` rather than `==` on `double`s. */
+    static boolean same (double left, double right) {
+        return Double.doubleToLongBits(left) == Double.doubleToLongBits(right);
+    }
+
+    static Object add (Object left, Object right, LoxToken operator) {
+        if (left instanceof String l && right instanceof String r) {
+            return l + r;
+        } else if (left instanceof Double l && right instanceof Double r) {
+            return l + r;
+        }
+        throw new RuntimeError(operator, "operands must be of type: 'String' or 'Number'");
+    }
+
+    static double subtract (Object left, Object right, LoxToken operator) {
+        if (left instanceof Double l && right instanceof Double r) {
+            return l - r;
+        }
+        throw numbersExpected(operator);
+    }
+
+    static double multiply (Object left, Object right, LoxToken operator) {
+        if (left instanceof Double l && right instanceof Double r) {
+            return l * r;
+        }
+        throw numbersExpected(operator);
+    }
+
+    static double divide (Object left, Object right, LoxToken operator) {
+        if (left instanceof Double l && right instanceof Double r) {
+            return l / r;
+        }
+        throw numbersExpected(operator);
+    }
+
+    static boolean less (Object left, Object right, LoxToken operator) {
+        if (left instanceof Double l && right instanceof Double r) {
+            return l < r;
+        }
+        throw numbersExpected(operator);
+    }
+
+    static boolean lessEqual (Object left, Object right, LoxToken operator) {
+        if (left instanceof Double l && right instanceof Double r) {
+            return l <= r;
+        }
+        throw numbersExpected(operator);
+    }
+
+    static boolean greater (Object left, Object right, LoxToken operator) {
+        if (left instanceof Double l && right instanceof Double r) {
+            return l > r;
+        }
+        throw numbersExpected(operator);
+    }
+
+    static boolean greaterEqual (Object left, Object right, LoxToken operator) {
+        if (left instanceof Double l && right instanceof Double r) {
+            return l >= r;
+        }
+        throw numbersExpected(operator);
+    }
+
+    static double negate (Object right, LoxToken operator) {
+        if (right instanceof Double r) {
+            return -r;
+        }
+        throw new RuntimeError(operator, "operand must be of type: 'Number'");
+    }
+
+    static Object invalidBinary (Object left, Object right, LoxToken operator) {
+        throw new RuntimeError(operator, "invalid binary operator");
+    }
+
+    static Object invalidUnary (Object right, LoxToken operator) {
+        throw new RuntimeError(operator, "invalid unary operator");
+    }
+
+    private static RuntimeError numbersExpected (LoxToken operator) {
+        return new RuntimeError(operator, "operands must be of type: 'Number'");
+    }
+
+    // ===== STATEMENTS =====
+
+    static Object invoke (LoxInterpreter interpreter, Object callee, LoxToken paren, Object... arguments) {
+        if (callee instanceof LoxFunction function && arguments.length == function.arity()) {
+            return function.invoke(interpreter, arguments);
+        } else if (!(callee instanceof LoxCallable)) {
+            throw new RuntimeError(paren, "can only call functions and classes");
+        }
+
+        LoxCallable callable = (LoxCallable)callee;
+        if (arguments.length != callable.arity()) {
+            throw new RuntimeError(paren, "Expected " + callable.arity() + " arguments but got " + arguments.length);
+        }
+        return callable.call(interpreter, Arrays.asList(arguments));
+    }
+
+    /** A `break` or `continue` outside of a loop of the function. */
+    static void signal (LoxToken keyword) {
+        switch (keyword.type) {
+            case BREAK:
+                throw new SyntaxError(keyword, "cannot use 'break' outside a loop");
+            default:
+                throw new SyntaxError(keyword, "cannot use 'continue' outside a loop");
+        }
+    }
+
+    /** Evaluates an expression statement. */
+    static void ignore (Object value) {}
+
+    static void ignore (double value) {}
+
+    static void ignore (boolean value) {}
+}
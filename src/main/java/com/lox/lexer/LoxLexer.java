@@ -1,13 +1,21 @@
 package com.lox.lexer;
 
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
 import java.util.regex.Pattern;
 
 import com.lox.lexer.exceptions.InvalidTokenException;
 
 public class LoxLexer {
-    final private String source;
+    /** Sources of at least this many characters are lexed by the `ParallelLexer`. */
+    static final public int PARALLEL_THRESHOLD = 1 << 20;
+    static final private int PARALLEL_CHUNK_SIZE = 1 << 18;
+
+    final private CharSequence source;
+    final private boolean useRegexPatterns;
+    final private SymbolTable symbols;
     private int line = 1;
     private int col = 0;
     private int current = 0;
@@ -72,7 +80,29 @@ public class LoxLexer {
     };
     
     public LoxLexer (String source) {
+        this(source, false);
+    }
+
+    public LoxLexer (CharSequence source, boolean useRegexPatterns) {
+        this(source, useRegexPatterns, new SymbolTable());
+    }
+
+    /**
+     * @param useRegexPatterns tokenize with the `LoxTokenPattern` regex cascade
+     * instead of the `LoxScanner`. Kept around to compare the two.
+     * @param symbols table that identifiers and string literals are interned in
+     */
+    public LoxLexer (CharSequence source, boolean useRegexPatterns, SymbolTable symbols) {
         this.source = source;
+        this.useRegexPatterns = useRegexPatterns;
+        this.symbols = symbols;
+    }
+
+    /**
+     * Lexes a source that is read on demand, see `tokenizeLazily()`.
+     */
+    public LoxLexer (Reader reader, boolean useRegexPatterns, SymbolTable symbols) {
+        this(new ReaderCharSequence(reader), useRegexPatterns, symbols);
     }
 
     private LoxToken scanToken (String currSource) throws InvalidTokenException {
@@ -86,6 +116,21 @@ public class LoxLexer {
         throw new InvalidTokenException(currSource);
     }
 
+    /**
+     * Swaps the names of identifiers and string literals matched by the regex
+     * patterns for their interned instances.
+     */
+    private LoxToken intern (LoxToken token) {
+        if (token.type == LoxTokenType.IDENTIFIER) {
+            String name = this.symbols.intern(token.lexeme);
+            return new LoxToken(token.type, name, name, token.line, token.col);
+        } else if (token.type == LoxTokenType.STRING) {
+            String literal = this.symbols.intern((String)token.literal);
+            return new LoxToken(token.type, token.lexeme, literal, token.line, token.col);
+        }
+        return token;
+    }
+
     private boolean handleWhitespace (String currSource) {
         boolean isNewline = this.newlinePattern.matcher(currSource).find();
         boolean isWhitespace = this.whitespacePattern.matcher(currSource).find();
@@ -105,8 +150,103 @@ public class LoxLexer {
     }
 
     public void tokenize () {
-        while (this.current < this.source.length()) {
-            String currSource = this.source.substring(this.current);
+        if (this.useRegexPatterns) {
+            this.tokenizeWithPatterns();
+        } else {
+            this.tokenizeWithScanner();
+        }
+    }
+
+    /**
+     * Tokenizes the source into a compact `TokenBuffer` instead of `tokens`, so
+     * that no `LoxToken` is allocated per token. Stops without an EOF token on
+     * the first invalid token, like `tokenize()`.
+     */
+    public TokenBuffer tokenizeCompact () {
+        if (this.useRegexPatterns) {
+            this.tokenize();
+            return TokenBuffer.of(this.tokens);
+        }
+
+        if (this.isParallel()) {
+            return this.tokenizeInParallel();
+        }
+
+        LoxScanner scanner = new LoxScanner(this.source);
+        // roughly one token per 4 characters of source
+        TokenBuffer buffer = new TokenBuffer(this.source, this.symbols, Math.max(this.source.length() / 4, 64));
+
+        try {
+            LoxTokenType type;
+            while ((type = scanner.scanToken()) != null) {
+                buffer.add(type, scanner.getStart(), scanner.getLength(), scanner.getLine(), scanner.getCol());
+            }
+        } catch (InvalidTokenException e) {
+            System.err.println(e.getMessage());
+            return buffer;
+        }
+
+        buffer.addEOF();
+        return buffer;
+    }
+
+    /**
+     * Returns a `TokenSource` that scans tokens only as they are requested, keeping
+     * at most `windowSize` of them in memory. With the regex patterns, the whole
+     * source is tokenized upfront.
+     */
+    public TokenSource tokenizeLazily (int windowSize) {
+        if (this.useRegexPatterns) {
+            return this.tokenizeCompact();
+        }
+        return new StreamingTokenSource(this.source, this.symbols, windowSize);
+    }
+
+    private boolean isParallel () {
+        return !(this.source instanceof ReaderCharSequence)
+            && this.source.length() >= PARALLEL_THRESHOLD
+            && ForkJoinPool.getCommonPoolParallelism() > 1;
+    }
+
+    private TokenBuffer tokenizeInParallel () {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int chunks = Math.min(this.source.length() / PARALLEL_CHUNK_SIZE, pool.getParallelism() * 4);
+        return new ParallelLexer(this.source, this.symbols, pool).tokenize(Math.max(chunks, 1));
+    }
+
+    private void tokenizeWithScanner () {
+        if (this.isParallel()) {
+            TokenBuffer buffer = this.tokenizeInParallel();
+            for (int i = 0; i < buffer.size(); i++) {
+                this.tokens.add(buffer.token(i));
+            }
+            return;
+        }
+
+        LoxScanner scanner = new LoxScanner(this.source);
+
+        try {
+            LoxTokenType type;
+            while ((type = scanner.scanToken()) != null) {
+                this.tokens.add(scanner.token(type, this.symbols));
+            }
+        } catch (InvalidTokenException e) {
+            System.err.println(e.getMessage());
+            return;
+        }
+
+        // add EOF token to end of input
+        tokens.add(new LoxToken(
+            LoxTokenType.EOF, 
+            "$", 
+            "$"
+        ));
+    }
+
+    private void tokenizeWithPatterns () {
+        String source = this.source.toString();
+        while (this.current < source.length()) {
+            String currSource = source.substring(this.current);
             if (this.handleWhitespace(currSource)) {
                 continue;
             } 
@@ -117,7 +257,7 @@ public class LoxLexer {
                 this.current += token.lexeme.length();
                 token.setLine(line);
                 token.setCol(col);
-                this.tokens.add(token);
+                this.tokens.add(this.intern(token));
             } catch (InvalidTokenException e) {
                 System.err.println(e.getMessage());
                 return;
@@ -0,0 +1,353 @@
+package com.lox.lexer;
+
+import com.lox.lexer.exceptions.InvalidTokenException;
+
+/**
+ * Hand-written scanner that walks the source by offset and dispatches on the
+ * current character, instead of trying every `LoxTokenPattern` against a fresh
+ * substring. Scanning a token does not allocate: the caller reads the type and
+ * extent of the last scanned token and decides whether to materialize it.
+ *
+ * The produced token stream (including `line`/`col` bookkeeping) is identical
+ * to the one produced by the `LoxTokenPattern` cascade.
+ */
+public class LoxScanner {
+    final private CharSequence source;
+    private int length;
+
+    // set when scanning a source that is still being read (see `hasChar`)
+    final private ReaderCharSequence stream;
+    private int current = 0;
+    private int line = 1;
+    private int col = 0;
+
+    // start offset of the last scanned token
+    private int start = 0;
+
+    public LoxScanner (CharSequence source) {
+        this.source = source;
+        this.length = source.length();
+        this.stream = source instanceof ReaderCharSequence ? (ReaderCharSequence)source : null;
+    }
+
+    /**
+     * Scans only the characters in `[start, end)` of `source`, starting at the
+     * given `line` and `col`.
+     */
+    public LoxScanner (CharSequence source, int start, int end, int line, int col) {
+        this.source = source;
+        this.length = end;
+        this.stream = null;
+        this.current = start;
+        this.start = start;
+        this.line = line;
+        this.col = col;
+    }
+
+    public CharSequence getSource () {
+        return this.source;
+    }
+
+    /** Start offset of the last scanned token. */
+    public int getStart () {
+        return this.start;
+    }
+
+    /** Length of the last scanned token. */
+    public int getLength () {
+        return this.current - this.start;
+    }
+
+    /** Line of the last scanned token. */
+    public int getLine () {
+        return this.line;
+    }
+
+    /** Column of the last scanned token (the column right after its last character). */
+    public int getCol () {
+        return this.col;
+    }
+
+    /**
+     * Scans the next token and returns its type, or `null` once the end of the
+     * source is reached. Throws an `InvalidTokenException` if no token can be
+     * recognized at the current position.
+     */
+    public LoxTokenType scanToken () throws InvalidTokenException {
+        while (this.hasChar(this.current)) {
+            char c = this.source.charAt(this.current);
+
+            if (c == '\n' || c == '\r') {
+                this.line++;
+                this.col = 0;
+                this.current++;
+                continue;
+            } else if (c == ' ' || c == '\t' || c == '\u000B' || c == '\f') {
+                this.col++;
+                this.current++;
+                continue;
+            }
+
+            this.start = this.current;
+            LoxTokenType type = this.scanLexeme(c);
+            this.col += this.current - this.start;
+            return type;
+        }
+
+        this.start = this.current;
+        return null;
+    }
+
+    /**
+     * Materializes the last scanned token as a `LoxToken`.
+     */
+    public LoxToken token (LoxTokenType type, SymbolTable symbols) {
+        return materialize(this.source, symbols, type, this.start, this.current - this.start, this.line, this.col);
+    }
+
+    /**
+     * Builds the `LoxToken` for a token of the given type spanning `length`
+     * characters from `start`. Identifiers, keywords and string literals are
+     * interned in `symbols`; numbers are the only lexemes allocated every time.
+     */
+    public static LoxToken materialize (
+        CharSequence source, SymbolTable symbols, LoxTokenType type, int start, int length, int line, int col
+    ) {
+        switch (type) {
+            case NUMBER: {
+                String lexeme = source.subSequence(start, start + length).toString();
+                return new LoxToken(type, lexeme, Double.parseDouble(lexeme), line, col);
+            }
+            case STRING: {
+                String lexeme = source.subSequence(start, start + length).toString();
+                String literal = symbols.intern(source, start + 1, start + length - 1);
+                return new LoxToken(type, lexeme, literal, line, col);
+            }
+            case TRUE:
+                return new LoxToken(type, symbols.intern(source, start, start + length), true, line, col);
+            case FALSE:
+                return new LoxToken(type, symbols.intern(source, start, start + length), false, line, col);
+            case NIL:
+                return new LoxToken(type, symbols.intern(source, start, start + length), null, line, col);
+            case EOF:
+                return new LoxToken(type, "$", "$", line, col);
+            default: {
+                // identifiers, keywords and operators: the literal is the lexeme itself
+                String lexeme = symbols.intern(source, start, start + length);
+                return new LoxToken(type, lexeme, lexeme, line, col);
+            }
+        }
+    }
+
+    // ===== DISPATCH =====
+
+    private LoxTokenType scanLexeme (char c) {
+        switch (c) {
+            // single character tokens
+            case '(': return this.single(LoxTokenType.LEFT_PAREN);
+            case ')': return this.single(LoxTokenType.RIGHT_PAREN);
+            case '{': return this.single(LoxTokenType.LEFT_BRACE);
+            case '}': return this.single(LoxTokenType.RIGHT_BRACE);
+            case ',': return this.single(LoxTokenType.COMMA);
+            case '.': return this.single(LoxTokenType.DOT);
+            case '-': return this.single(LoxTokenType.MINUS);
+            case '+': return this.single(LoxTokenType.PLUS);
+            case ';': return this.single(LoxTokenType.SEMICOLON);
+            case '/': return this.single(LoxTokenType.SLASH);
+            case '*': return this.single(LoxTokenType.STAR);
+
+            // one/two character tokens
+            case '!': return this.oneOrTwo(LoxTokenType.BANG, LoxTokenType.BANG_EQUAL);
+            case '=': return this.oneOrTwo(LoxTokenType.EQUAL, LoxTokenType.EQUAL_EQUAL);
+            case '>': return this.oneOrTwo(LoxTokenType.GREATER, LoxTokenType.GREATER_EQUAL);
+            case '<': return this.oneOrTwo(LoxTokenType.LESS, LoxTokenType.LESS_EQUAL);
+
+            case '"': return this.string();
+
+            default: {
+                if (isDigit(c)) {
+                    return this.number();
+                } else if (isIdentifierStart(c)) {
+                    return this.identifier();
+                }
+                throw this.invalidToken();
+            }
+        }
+    }
+
+    private LoxTokenType single (LoxTokenType type) {
+        this.current++;
+        return type;
+    }
+
+    private LoxTokenType oneOrTwo (LoxTokenType oneChar, LoxTokenType twoChar) {
+        this.current++;
+        if (this.hasChar(this.current) && this.source.charAt(this.current) == '=') {
+            this.current++;
+            return twoChar;
+        }
+        return oneChar;
+    }
+
+    // ===== LITERALS =====
+
+    private LoxTokenType string () {
+        int pos = this.start + 1;
+        while (this.hasChar(pos)) {
+            char c = this.source.charAt(pos);
+            if (c == '"') {
+                this.current = pos + 1;
+                return LoxTokenType.STRING;
+            } else if (c == '\\') {
+                // an escape consumes any following character except a line terminator
+                if (!this.hasChar(pos + 1) || isLineTerminator(this.source.charAt(pos + 1))) {
+                    break;
+                }
+                pos += 2;
+            } else {
+                pos++;
+            }
+        }
+
+        throw this.invalidToken();
+    }
+
+    private LoxTokenType number () {
+        int pos = this.current;
+        while (this.hasChar(pos) && isDigit(this.source.charAt(pos))) {
+            pos++;
+        }
+
+        // a fractional part needs at least one digit after the '.'
+        if (this.hasChar(pos + 1) && this.source.charAt(pos) == '.' && isDigit(this.source.charAt(pos + 1))) {
+            pos += 2;
+            while (this.hasChar(pos) && isDigit(this.source.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        this.current = pos;
+        return LoxTokenType.NUMBER;
+    }
+
+    private LoxTokenType identifier () {
+        int pos = this.current + 1;
+        while (this.hasChar(pos) && isIdentifierPart(this.source.charAt(pos))) {
+            pos++;
+        }
+        this.current = pos;
+
+        // keywords only match on a word boundary (`\b` in the keyword patterns)
+        if (this.isWordCharAt(pos)) {
+            return LoxTokenType.IDENTIFIER;
+        }
+
+        LoxTokenType keyword = this.keyword(this.start, pos - this.start);
+        return keyword != null ? keyword : LoxTokenType.IDENTIFIER;
+    }
+
+    // ===== KEYWORDS =====
+
+    private LoxTokenType keyword (int offset, int len) {
+        switch (this.source.charAt(offset)) {
+            case 'a': return this.keyword(offset, len, "and", LoxTokenType.AND);
+            case 'b': return this.keyword(offset, len, "break", LoxTokenType.BREAK);
+            case 'c': {
+                LoxTokenType type = this.keyword(offset, len, "class", LoxTokenType.CLASS);
+                return type != null ? type : this.keyword(offset, len, "continue", LoxTokenType.CONTINUE);
+            }
+            case 'e': return this.keyword(offset, len, "else", LoxTokenType.ELSE);
+            case 'f': {
+                LoxTokenType type = this.keyword(offset, len, "fun", LoxTokenType.FUN);
+                if (type == null) type = this.keyword(offset, len, "for", LoxTokenType.FOR);
+                return type != null ? type : this.keyword(offset, len, "false", LoxTokenType.FALSE);
+            }
+            case 'i': return this.keyword(offset, len, "if", LoxTokenType.IF);
+            case 'n': return this.keyword(offset, len, "nil", LoxTokenType.NIL);
+            case 'o': return this.keyword(offset, len, "or", LoxTokenType.OR);
+            case 'p': return this.keyword(offset, len, "print", LoxTokenType.PRINT);
+            case 'r': return this.keyword(offset, len, "return", LoxTokenType.RETURN);
+            case 's': return this.keyword(offset, len, "super", LoxTokenType.SUPER);
+            case 't': {
+                LoxTokenType type = this.keyword(offset, len, "this", LoxTokenType.THIS);
+                return type != null ? type : this.keyword(offset, len, "true", LoxTokenType.TRUE);
+            }
+            case 'v': return this.keyword(offset, len, "var", LoxTokenType.VAR);
+            case 'w': return this.keyword(offset, len, "while", LoxTokenType.WHILE);
+            default: return null;
+        }
+    }
+
+    private LoxTokenType keyword (int offset, int len, String keyword, LoxTokenType type) {
+        if (len != keyword.length()) {
+            return null;
+        }
+        for (int i = 1; i < len; i++) {
+            if (this.source.charAt(offset + i) != keyword.charAt(i)) {
+                return null;
+            }
+        }
+        return type;
+    }
+
+    // ===== CHARACTER CLASSES =====
+
+    private static boolean isDigit (char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isIdentifierStart (char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+    }
+
+    private static boolean isIdentifierPart (char c) {
+        return isIdentifierStart(c) || isDigit(c);
+    }
+
+    /** Line terminators that `.` refuses to match in a `java.util.regex.Pattern`. */
+    private static boolean isLineTerminator (char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    /**
+     * Mirrors the word-character test used by `\b` in `java.util.regex.Pattern`:
+     * ASCII word characters, or a non-spacing mark (which attaches to the
+     * preceding identifier character).
+     */
+    private boolean isWordCharAt (int pos) {
+        if (!this.hasChar(pos)) {
+            return false;
+        }
+        if (Character.isHighSurrogate(this.source.charAt(pos))) {
+            // make sure the low surrogate is loaded as well
+            this.hasChar(pos + 1);
+        }
+        int codePoint = Character.codePointAt(this.source, pos);
+        return codePoint < 128
+            ? isIdentifierPart((char)codePoint)
+            : Character.getType(codePoint) == Character.NON_SPACING_MARK;
+    }
+
+    /**
+     * Whether the character at `pos` exists. Sources that are still being read
+     * are pulled forward on demand.
+     */
+    private boolean hasChar (int pos) {
+        if (pos < this.length) {
+            return true;
+        } else if (this.stream != null && this.stream.fill(pos)) {
+            this.length = this.stream.length();
+            return true;
+        }
+        return false;
+    }
+
+    private InvalidTokenException invalidToken () {
+        if (this.stream != null) {
+            // the error message reports the rest of the source
+            this.stream.fill(Integer.MAX_VALUE - 1);
+            this.length = this.stream.length();
+        }
+        return new InvalidTokenException(this.source.subSequence(this.current, this.length).toString());
+    }
+}
@@ -0,0 +1,80 @@
+package com.lox.lexer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A zero-copy `CharSequence` view over a memory-mapped source file. Each byte
+ * is exposed as one character, which is exact for the ASCII tokens of Lox;
+ * slices are decoded as UTF-8 when turned into a `String`, so string literals
+ * keep their non-ASCII content (their `col` counts bytes rather than chars).
+ */
+public class MappedCharSequence implements CharSequence {
+    final private ByteBuffer bytes;
+    final private int offset;
+    final private int length;
+
+    public MappedCharSequence (ByteBuffer bytes) {
+        this(bytes, 0, bytes.limit());
+    }
+
+    private MappedCharSequence (ByteBuffer bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * Maps `path` read-only. The mapping stays valid after the channel is closed.
+     */
+    public static MappedCharSequence map (Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("source file is too large to map: " + path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return new MappedCharSequence(buffer);
+        }
+    }
+
+    /**
+     * The raw bytes of this sequence, e.g. to hash the source file.
+     */
+    public ByteBuffer bytes () {
+        return this.bytes.slice(this.offset, this.length).asReadOnlyBuffer();
+    }
+
+    @Override
+    public int length () {
+        return this.length;
+    }
+
+    @Override
+    public char charAt (int index) {
+        if (index < 0 || index >= this.length) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return (char)(this.bytes.get(this.offset + index) & 0xFF);
+    }
+
+    @Override
+    public CharSequence subSequence (int start, int end) {
+        if (start < 0 || end > this.length || start > end) {
+            throw new IndexOutOfBoundsException("[" + start + ", " + end + ")");
+        }
+        return new MappedCharSequence(this.bytes, this.offset + start, end - start);
+    }
+
+    @Override
+    public String toString () {
+        byte[] slice = new byte[this.length];
+        this.bytes.get(this.offset, slice);
+        return new String(slice, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,182 @@
+package com.lox.lexer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import com.lox.lexer.exceptions.InvalidTokenException;
+
+/**
+ * Lexes a large source on a `ForkJoinPool` by splitting it into chunks that
+ * start right after a newline. Each chunk is scanned as if it started outside
+ * of any token on line 1, and the results are stitched together in order with
+ * their lines shifted by the lines of the preceding chunks.
+ *
+ * A chunk boundary is only trusted if the chunk before it was scanned to its
+ * end without error: a string literal running across the boundary would have
+ * left that chunk with an unterminated string. When a chunk fails, the source
+ * is rescanned sequentially from the failing token, which either reports the
+ * same invalid token as `LoxLexer.tokenize()` or continues the string literal
+ * until a later boundary is crossed in between two tokens, where the chunk
+ * results are picked up again.
+ */
+public class ParallelLexer {
+
+    /** Result of scanning one chunk. */
+    static private class Chunk {
+        final TokenBuffer tokens;
+        // lines the chunk advances the scanner by
+        int lines;
+        // start offset, line and col of the first token that could not be scanned
+        int failedAt = -1;
+        int failedLine;
+        int failedCol;
+
+        Chunk (TokenBuffer tokens) {
+            this.tokens = tokens;
+        }
+    }
+
+    final private CharSequence source;
+    final private SymbolTable symbols;
+    final private ForkJoinPool pool;
+
+    public ParallelLexer (CharSequence source, SymbolTable symbols, ForkJoinPool pool) {
+        this.source = source;
+        this.symbols = symbols;
+        this.pool = pool;
+    }
+
+    /**
+     * Scans the source in (up to) `chunkCount` chunks. Like
+     * `LoxLexer.tokenizeCompact()`, the buffer ends with an EOF token unless an
+     * invalid token was found, which is reported on stderr.
+     */
+    public TokenBuffer tokenize (int chunkCount) {
+        List<Integer> boundaries = this.split(chunkCount);
+
+        List<ForkJoinTask<Chunk>> tasks = new ArrayList<>();
+        for (int i = 0; i < boundaries.size() - 1; i++) {
+            int start = boundaries.get(i);
+            int end = boundaries.get(i + 1);
+            tasks.add(this.pool.submit(() -> this.scanChunk(start, end)));
+        }
+
+        TokenBuffer buffer = new TokenBuffer(this.source, this.symbols, Math.max(this.source.length() / 4, 64));
+        try {
+            int lineOffset = 0;
+            int i = 0;
+            while (i < tasks.size()) {
+                Chunk chunk = tasks.get(i).join();
+                buffer.addAll(chunk.tokens, lineOffset);
+
+                if (chunk.failedAt < 0) {
+                    lineOffset += chunk.lines;
+                    i++;
+                    continue;
+                }
+
+                // rescan sequentially from the failing token until a later chunk
+                // boundary is crossed in between two tokens
+                LoxScanner scanner = new LoxScanner(
+                    this.source,
+                    chunk.failedAt,
+                    this.source.length(),
+                    chunk.failedLine + lineOffset,
+                    chunk.failedCol
+                );
+                int next = i + 1;
+                int resumed = -1;
+
+                try {
+                    LoxTokenType type;
+                    while ((type = scanner.scanToken()) != null) {
+                        int start = scanner.getStart();
+                        if (next < tasks.size() && start >= boundaries.get(next)) {
+                            int boundary = boundaries.get(next);
+                            lineOffset = scanner.getLine() - this.countNewlines(boundary, start) - 1;
+                            resumed = next;
+                            break;
+                        }
+
+                        buffer.add(type, start, scanner.getLength(), scanner.getLine(), scanner.getCol());
+                        // skip boundaries that fall inside the token (e.g. a multi-line string)
+                        while (next < tasks.size() && boundaries.get(next) < start + scanner.getLength()) {
+                            next++;
+                        }
+                    }
+                } catch (InvalidTokenException e) {
+                    System.err.println(e.getMessage());
+                    return buffer;
+                }
+
+                if (resumed < 0) {
+                    buffer.addEOF();
+                    return buffer;
+                }
+                i = resumed;
+            }
+
+            buffer.addEOF();
+            return buffer;
+        } finally {
+            for (ForkJoinTask<Chunk> task : tasks) {
+                task.cancel(false);
+            }
+        }
+    }
+
+    private int countNewlines (int start, int end) {
+        int newlines = 0;
+        for (int i = start; i < end; i++) {
+            char c = this.source.charAt(i);
+            if (c == '\n' || c == '\r') newlines++;
+        }
+        return newlines;
+    }
+
+    /**
+     * Picks chunk boundaries right after a newline, close to evenly spaced
+     * offsets. Returns the start offsets of all chunks followed by the length
+     * of the source.
+     */
+    private List<Integer> split (int chunkCount) {
+        int length = this.source.length();
+        List<Integer> boundaries = new ArrayList<>();
+        boundaries.add(0);
+
+        for (int i = 1; i < chunkCount; i++) {
+            int pos = Math.max((int)((long)length * i / chunkCount), boundaries.get(boundaries.size() - 1));
+            while (pos < length) {
+                char c = this.source.charAt(pos++);
+                if (c == '\n' || c == '\r') break;
+            }
+            if (pos < length && pos > boundaries.get(boundaries.size() - 1)) {
+                boundaries.add(pos);
+            }
+        }
+
+        boundaries.add(length);
+        return boundaries;
+    }
+
+    private Chunk scanChunk (int start, int end) {
+        LoxScanner scanner = new LoxScanner(this.source, start, end, 1, 0);
+        Chunk chunk = new Chunk(new TokenBuffer(this.source, this.symbols, Math.max((end - start) / 4, 64)));
+
+        try {
+            LoxTokenType type;
+            while ((type = scanner.scanToken()) != null) {
+                chunk.tokens.add(type, scanner.getStart(), scanner.getLength(), scanner.getLine(), scanner.getCol());
+            }
+        } catch (InvalidTokenException e) {
+            chunk.failedAt = scanner.getStart();
+            chunk.failedLine = scanner.getLine();
+            chunk.failedCol = scanner.getCol();
+        }
+
+        chunk.lines = scanner.getLine() - 1;
+        return chunk;
+    }
+}
@@ -0,0 +1,110 @@
+package com.lox.lexer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * A `CharSequence` over a `Reader` that is pulled forward on demand. Only a
+ * window of the input is kept in memory: `length()` reports the number of
+ * characters read so far, and characters before the offset passed to
+ * `discardBefore` may be dropped when the buffer is refilled.
+ */
+public class ReaderCharSequence implements CharSequence {
+    static final private int CHUNK_SIZE = 8192;
+
+    final private Reader reader;
+    private char[] buffer = new char[CHUNK_SIZE];
+
+    // absolute offset of `buffer[0]`
+    private int base = 0;
+    // number of valid characters in `buffer`
+    private int count = 0;
+    // absolute offset before which characters are no longer needed
+    private int discardable = 0;
+    private boolean exhausted = false;
+
+    public ReaderCharSequence (Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Reads until the character at absolute offset `index` is available.
+     * Returns `false` if the input ends before it.
+     */
+    public boolean fill (int index) {
+        while (index >= this.base + this.count) {
+            if (this.exhausted) {
+                return false;
+            }
+            this.readChunk();
+        }
+        return true;
+    }
+
+    /**
+     * Characters before absolute offset `offset` will not be requested again.
+     */
+    public void discardBefore (int offset) {
+        this.discardable = Math.max(this.discardable, offset);
+    }
+
+    private void readChunk () {
+        // drop discardable characters before growing the buffer
+        int drop = this.discardable - this.base;
+        if (drop > 0) {
+            System.arraycopy(this.buffer, drop, this.buffer, 0, this.count - drop);
+            this.base += drop;
+            this.count -= drop;
+        }
+        if (this.buffer.length - this.count < CHUNK_SIZE) {
+            this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length * 2, this.count + CHUNK_SIZE));
+        }
+
+        try {
+            int read = this.reader.read(this.buffer, this.count, this.buffer.length - this.count);
+            if (read < 0) {
+                this.exhausted = true;
+            } else {
+                this.count += read;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public int length () {
+        return this.base + this.count;
+    }
+
+    @Override
+    public char charAt (int index) {
+        if (index < this.base) {
+            throw new IndexOutOfBoundsException("character " + index + " was already discarded");
+        }
+        return this.buffer[index - this.base];
+    }
+
+    @Override
+    public CharSequence subSequence (int start, int end) {
+        if (start < this.base) {
+            throw new IndexOutOfBoundsException("character " + start + " was already discarded");
+        }
+        return new String(this.buffer, start - this.base, end - start);
+    }
+
+    /**
+     * Reads the whole input and returns it. Only valid while nothing has been
+     * discarded.
+     */
+    @Override
+    public String toString () {
+        this.fill(Integer.MAX_VALUE - 1);
+        if (this.base > 0) {
+            throw new IllegalStateException("the start of the input was already discarded");
+        }
+        return new String(this.buffer, 0, this.count);
+    }
+}
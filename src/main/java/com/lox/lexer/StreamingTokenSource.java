@@ -0,0 +1,85 @@
+package com.lox.lexer;
+
+import com.lox.lexer.exceptions.InvalidTokenException;
+
+/**
+ * A pull-based `TokenSource` that scans tokens only when the parser asks for
+ * them. It keeps a fixed window of the most recent tokens (the previously
+ * matched token plus the parser's lookahead), so memory use does not grow with
+ * the size of the source, and the parser can start before lexing finishes.
+ */
+public class StreamingTokenSource implements TokenSource {
+    final private LoxScanner scanner;
+    final private SymbolTable symbols;
+    final private ReaderCharSequence stream;
+    final private LoxToken[] window;
+
+    // number of tokens produced so far
+    private int produced = 0;
+    private boolean exhausted = false;
+
+    /**
+     * @param windowSize number of most recent tokens kept available, which must
+     * cover the previously matched token and the parser's maximum lookahead.
+     */
+    public StreamingTokenSource (CharSequence source, SymbolTable symbols, int windowSize) {
+        this.scanner = new LoxScanner(source);
+        this.symbols = symbols;
+        this.stream = source instanceof ReaderCharSequence ? (ReaderCharSequence)source : null;
+        this.window = new LoxToken[windowSize];
+    }
+
+    @Override
+    public boolean has (int index) {
+        while (index >= this.produced) {
+            if (this.exhausted) {
+                return false;
+            }
+            this.produce();
+        }
+
+        if (index < this.produced - this.window.length) {
+            throw new IllegalStateException("token " + index + " already left the lookahead window");
+        }
+        return true;
+    }
+
+    @Override
+    public LoxTokenType type (int index) {
+        return this.token(index).type;
+    }
+
+    @Override
+    public LoxToken token (int index) {
+        if (!this.has(index)) {
+            throw new IndexOutOfBoundsException("no token at " + index);
+        }
+        return this.window[index % this.window.length];
+    }
+
+    private void produce () {
+        LoxToken token;
+        try {
+            LoxTokenType type = this.scanner.scanToken();
+            if (type == null) {
+                // add EOF token to end of input
+                token = new LoxToken(LoxTokenType.EOF, "$", "$");
+                this.exhausted = true;
+            } else {
+                token = this.scanner.token(type, this.symbols);
+            }
+        } catch (InvalidTokenException e) {
+            System.err.println(e.getMessage());
+            this.exhausted = true;
+            return;
+        }
+
+        this.window[this.produced % this.window.length] = token;
+        this.produced++;
+
+        if (this.stream != null) {
+            // the lexeme now lives in the token, the source characters can go
+            this.stream.discardBefore(this.scanner.getStart() + this.scanner.getLength());
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.lox.lexer;
+
+/**
+ * Interns identifiers and string literals so that every occurrence of a name
+ * maps to one canonical `String`. Lookups hash the characters in place, so a
+ * name that was seen before is resolved without allocating.
+ *
+ * The `Environment` relies on this to compare variable names by identity: all
+ * names it is given must come from the interpreter's `SymbolTable`.
+ */
+public class SymbolTable {
+    static final private int INITIAL_CAPACITY = 256;
+
+    // open addressing, `hashes[i]` caches `entries[i].hashCode()`
+    private String[] entries = new String[INITIAL_CAPACITY];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private int size = 0;
+
+    public String intern (String name) {
+        return this.intern(name, 0, name.length());
+    }
+
+    /**
+     * Returns the canonical `String` for the characters in `[start, end)` of
+     * `chars`.
+     */
+    public String intern (CharSequence chars, int start, int end) {
+        int hash = 0;
+        boolean ascii = true;
+        for (int i = start; i < end; i++) {
+            char c = chars.charAt(i);
+            hash = 31 * hash + c;
+            ascii &= c < 0x80;
+        }
+
+        if (!ascii && !(chars instanceof String)) {
+            // let the source decode its characters (e.g. UTF-8 bytes of a mapped file)
+            String decoded = chars.subSequence(start, end).toString();
+            return this.intern(decoded, 0, decoded.length(), decoded.hashCode(), decoded);
+        }
+        return this.intern(chars, start, end, hash, null);
+    }
+
+    public int size () {
+        return this.size;
+    }
+
+    private String intern (CharSequence chars, int start, int end, int hash, String string) {
+        int mask = this.entries.length - 1;
+        int index = spread(hash) & mask;
+
+        String entry;
+        while ((entry = this.entries[index]) != null) {
+            if (this.hashes[index] == hash && regionEquals(entry, chars, start, end)) {
+                return entry;
+            }
+            index = (index + 1) & mask;
+        }
+
+        if (string == null) {
+            string = chars.subSequence(start, end).toString();
+        }
+        this.entries[index] = string;
+        this.hashes[index] = hash;
+
+        if (++this.size * 2 > this.entries.length) {
+            this.rehash();
+        }
+        return string;
+    }
+
+    private void rehash () {
+        String[] entries = this.entries;
+        int[] hashes = this.hashes;
+        this.entries = new String[entries.length * 2];
+        this.hashes = new int[entries.length * 2];
+
+        int mask = this.entries.length - 1;
+        for (int i = 0; i < entries.length; i++) {
+            if (entries[i] == null) continue;
+            int index = spread(hashes[i]) & mask;
+            while (this.entries[index] != null) {
+                index = (index + 1) & mask;
+            }
+            this.entries[index] = entries[i];
+            this.hashes[index] = hashes[i];
+        }
+    }
+
+    private static int spread (int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean regionEquals (String entry, CharSequence chars, int start, int end) {
+        if (entry.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < entry.length(); i++) {
+            if (entry.charAt(i) != chars.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,186 @@
+package com.lox.lexer;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A compact token stream that stores each token's type ordinal, start offset,
+ * length, line and col in parallel primitive arrays instead of one `LoxToken`
+ * object per token. Lexemes and literals are sliced from the source only when a
+ * token is materialized with `token(int)`.
+ */
+public class TokenBuffer implements TokenSource {
+    static final private LoxTokenType[] TYPES = LoxTokenType.values();
+    static final private int INITIAL_CAPACITY = 64;
+
+    final private CharSequence source;
+    final private SymbolTable symbols;
+
+    // tokens adopted from an existing `LoxToken` list (see `TokenBuffer.of`)
+    final private LoxToken[] adopted;
+
+    private byte[] types;
+    private int[] starts;
+    private int[] lengths;
+    private int[] lines;
+    private int[] cols;
+    private int size = 0;
+
+    public TokenBuffer (CharSequence source, SymbolTable symbols) {
+        this(source, symbols, INITIAL_CAPACITY);
+    }
+
+    public TokenBuffer (CharSequence source, SymbolTable symbols, int capacity) {
+        this.source = source;
+        this.symbols = symbols;
+        this.adopted = null;
+        capacity = Math.max(capacity, 1);
+        this.types = new byte[capacity];
+        this.starts = new int[capacity];
+        this.lengths = new int[capacity];
+        this.lines = new int[capacity];
+        this.cols = new int[capacity];
+    }
+
+    private TokenBuffer (LoxToken[] tokens) {
+        this.source = null;
+        this.symbols = null;
+        this.adopted = tokens;
+        this.size = tokens.length;
+    }
+
+    /**
+     * Wraps already materialized tokens, e.g. from the regex `LoxLexer`.
+     */
+    public static TokenBuffer of (List<LoxToken> tokens) {
+        return new TokenBuffer(tokens.toArray(new LoxToken[0]));
+    }
+
+    public void add (LoxTokenType type, int start, int length, int line, int col) {
+        if (this.size == this.types.length) {
+            this.grow();
+        }
+        int i = this.size++;
+        this.types[i] = (byte)type.ordinal();
+        this.starts[i] = start;
+        this.lengths[i] = length;
+        this.lines[i] = line;
+        this.cols[i] = col;
+    }
+
+    /**
+     * Appends the tokens of `other` (scanned from the same source), shifting
+     * their lines by `lineOffset`.
+     */
+    public void addAll (TokenBuffer other, int lineOffset) {
+        while (this.size + other.size > this.types.length) {
+            this.grow();
+        }
+        System.arraycopy(other.types, 0, this.types, this.size, other.size);
+        System.arraycopy(other.starts, 0, this.starts, this.size, other.size);
+        System.arraycopy(other.lengths, 0, this.lengths, this.size, other.size);
+        System.arraycopy(other.cols, 0, this.cols, this.size, other.size);
+        for (int i = 0; i < other.size; i++) {
+            this.lines[this.size + i] = other.lines[i] + lineOffset;
+        }
+        this.size += other.size;
+    }
+
+    /**
+     * A view of the tokens in `[start, end)` followed by an EOF token, so that
+     * part of the buffer can be parsed as a program of its own.
+     */
+    public TokenSource slice (int start, int end) {
+        TokenBuffer buffer = this;
+        return new TokenSource() {
+            @Override
+            public boolean has (int index) {
+                return index <= end - start;
+            }
+
+            @Override
+            public LoxTokenType type (int index) {
+                return index == end - start ? LoxTokenType.EOF : buffer.type(start + index);
+            }
+
+            @Override
+            public LoxToken token (int index) {
+                return index == end - start ? new LoxToken(LoxTokenType.EOF, "$", "$", 0, 0) : buffer.token(start + index);
+            }
+
+            @Override
+            public boolean endsWithEOF () {
+                return true;
+            }
+        };
+    }
+
+    public void addEOF () {
+        this.add(LoxTokenType.EOF, 0, 0, 0, 0);
+    }
+
+    private void grow () {
+        int capacity = this.types.length * 2;
+        this.types = Arrays.copyOf(this.types, capacity);
+        this.starts = Arrays.copyOf(this.starts, capacity);
+        this.lengths = Arrays.copyOf(this.lengths, capacity);
+        this.lines = Arrays.copyOf(this.lines, capacity);
+        this.cols = Arrays.copyOf(this.cols, capacity);
+    }
+
+    public int size () {
+        return this.size;
+    }
+
+    @Override
+    public boolean has (int index) {
+        return index < this.size;
+    }
+
+    @Override
+    public boolean endsWithEOF () {
+        return this.size > 0 && this.type(this.size - 1) == LoxTokenType.EOF;
+    }
+
+    @Override
+    public LoxTokenType type (int index) {
+        if (this.adopted != null) return this.adopted[index].type;
+        return TYPES[this.types[index]];
+    }
+
+    public int line (int index) {
+        if (this.adopted != null) return this.adopted[index].line;
+        return this.lines[index];
+    }
+
+    public int col (int index) {
+        if (this.adopted != null) return this.adopted[index].col;
+        return this.cols[index];
+    }
+
+    public String lexeme (int index) {
+        if (this.adopted != null) return this.adopted[index].lexeme;
+        if (this.types[index] == LoxTokenType.EOF.ordinal()) return "$";
+
+        int start = this.starts[index];
+        return this.source.subSequence(start, start + this.lengths[index]).toString();
+    }
+
+    /**
+     * Materializes the token at `index` as a `LoxToken`.
+     */
+    @Override
+    public LoxToken token (int index) {
+        if (this.adopted != null) return this.adopted[index];
+
+        return LoxScanner.materialize(
+            this.source,
+            this.symbols,
+            this.type(index),
+            this.starts[index],
+            this.lengths[index],
+            this.lines[index],
+            this.cols[index]
+        );
+    }
+}
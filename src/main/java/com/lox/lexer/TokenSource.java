@@ -0,0 +1,33 @@
+package com.lox.lexer;
+
+/**
+ * A token stream the `LoxParser` can consume. Tokens are addressed by their
+ * absolute position in the stream; implementations may produce them lazily and
+ * only keep a bounded window of them around.
+ */
+public interface TokenSource {
+
+    /**
+     * Whether a token exists at `index`, producing tokens up to it if needed.
+     * Returns `false` past the end of the stream.
+     */
+    boolean has (int index);
+
+    /**
+     * Type of the token at `index`, without materializing it.
+     */
+    LoxTokenType type (int index);
+
+    /**
+     * The token at `index` as a `LoxToken`.
+     */
+    LoxToken token (int index);
+
+    /**
+     * Whether the stream is fully produced and ends with an EOF token, so that
+     * every position up to it can be read without calling `has` first.
+     */
+    default boolean endsWithEOF () {
+        return false;
+    }
+}
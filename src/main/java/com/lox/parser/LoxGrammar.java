@@ -10,6 +10,26 @@ import com.lox.parser.ast.Stmt;
 
 public class LoxGrammar {
 
+    // ===== TOKEN SETS =====
+
+    static final private TokenSet EQUALITY_OPERATORS = TokenSet.of(LoxTokenType.BANG_EQUAL, LoxTokenType.EQUAL_EQUAL);
+    static final private TokenSet COMPARISON_OPERATORS = TokenSet.of(
+        LoxTokenType.LESS,
+        LoxTokenType.GREATER,
+        LoxTokenType.LESS_EQUAL,
+        LoxTokenType.GREATER_EQUAL
+    );
+    static final private TokenSet TERM_OPERATORS = TokenSet.of(LoxTokenType.MINUS, LoxTokenType.PLUS);
+    static final private TokenSet FACTOR_OPERATORS = TokenSet.of(LoxTokenType.STAR, LoxTokenType.SLASH);
+    static final private TokenSet UNARY_OPERATORS = TokenSet.of(LoxTokenType.MINUS, LoxTokenType.BANG);
+    static final private TokenSet LITERALS = TokenSet.of(
+        LoxTokenType.NUMBER,
+        LoxTokenType.STRING,
+        LoxTokenType.TRUE,
+        LoxTokenType.FALSE,
+        LoxTokenType.NIL
+    );
+
     // ===== HELPER METHODS =====
     
     private void expectSemicolon (LoxParser.Context ctx) {
@@ -27,7 +47,7 @@ public class LoxGrammar {
         return statements;
     }
 
-    private Stmt declaration (LoxParser.Context ctx) {
+    public Stmt declaration (LoxParser.Context ctx) {
         Stmt stmt = null;
         if (ctx.lookahead(LoxTokenType.VAR)) {
             stmt = this.varDeclStatement(ctx);
@@ -133,21 +153,7 @@ public class LoxGrammar {
         // match statement
         Stmt forStatement = statement(ctx);
 
-        // desugar
-        List<Stmt> loopBody = new ArrayList<>();
-        loopBody.add(forStatement);
-        if (increment != null) {
-            loopBody.add(new Stmt.ExpressionStmt(increment));
-        }
-
-        List<Stmt> loopStatements = new ArrayList<>();
-        if (initializer != null) {
-            loopStatements.add(initializer);
-        }
-        loopStatements.add(new Stmt.WhileStmt(condition, new Stmt.BlockStmt(loopBody)));
-
-        Stmt desugaredForLoopBlock = new Stmt.BlockStmt(loopStatements);
-        return desugaredForLoopBlock;
+        return new Stmt.ForStmt(initializer, condition, increment, forStatement);
     }
 
     private Stmt forInitializer (LoxParser.Context ctx) {
@@ -183,7 +189,9 @@ public class LoxGrammar {
 
     private Stmt funDeclStatement (LoxParser.Context ctx, String kind) {
         ctx.match(LoxTokenType.FUN);
-        ctx.matchOrThrow(LoxTokenType.IDENTIFIER, "expected " + kind + " name");
+        if (!ctx.match(LoxTokenType.IDENTIFIER)) {
+            throw ctx.error(ctx.getLastMatchedToken(), "expected " + kind + " name");
+        }
         LoxToken functionName = ctx.getLastMatchedToken();
         List<LoxToken> functionParameters = parameters(ctx);
         Stmt.BlockStmt functionBody = blockStatement(ctx);
@@ -269,7 +277,7 @@ public class LoxGrammar {
 
     // ===== EXPRESSIONS =====
 
-    private Expr expression (LoxParser.Context ctx) {
+    protected Expr expression (LoxParser.Context ctx) {
         if (ctx.lookahead(LoxTokenType.FUN)) {
             return anonymousFunc(ctx);
         } else {
@@ -290,7 +298,7 @@ public class LoxGrammar {
         }
     }
 
-    private Expr anonymousFunc (LoxParser.Context ctx) {
+    protected Expr anonymousFunc (LoxParser.Context ctx) {
         ctx.match(LoxTokenType.FUN);
         List<LoxToken> parameters = parameters(ctx);
         Stmt.BlockStmt body = blockStatement(ctx);
@@ -303,7 +311,7 @@ public class LoxGrammar {
         while (ctx.match(LoxTokenType.AND)) {
             LoxToken operator = ctx.getLastMatchedToken();
             Expr right = logicAnd(ctx);
-            expr = new Expr.Binary(expr, operator, right);
+            expr = new Expr.Logical(expr, operator, right);
         }
 
         return expr;
@@ -314,7 +322,7 @@ public class LoxGrammar {
         while (ctx.match(LoxTokenType.OR)) {
             LoxToken operator = ctx.getLastMatchedToken();
             Expr right = equality(ctx);
-            expr = new Expr.Binary(expr, operator, right);
+            expr = new Expr.Logical(expr, operator, right);
         }
 
         return expr;
@@ -322,7 +330,7 @@ public class LoxGrammar {
     
     private Expr equality (LoxParser.Context ctx) {
         Expr expr = comparison(ctx);
-        while (ctx.match(LoxTokenType.BANG_EQUAL, LoxTokenType.EQUAL_EQUAL)) {
+        while (ctx.match(EQUALITY_OPERATORS)) {
             var operator = ctx.getLastMatchedToken();
             Expr right = comparison(ctx);
             expr = new Expr.Binary(expr, operator, right);
@@ -333,12 +341,7 @@ public class LoxGrammar {
 
     private Expr comparison (LoxParser.Context ctx) {
         Expr expr = term(ctx);
-        while (ctx.match(
-            LoxTokenType.LESS, 
-            LoxTokenType.GREATER, 
-            LoxTokenType.LESS_EQUAL, 
-            LoxTokenType.GREATER_EQUAL
-        )) {
+        while (ctx.match(COMPARISON_OPERATORS)) {
             var operator = ctx.getLastMatchedToken();
             Expr right = term(ctx);
             expr = new Expr.Binary(expr, operator, right);
@@ -349,7 +352,7 @@ public class LoxGrammar {
 
     private Expr term (LoxParser.Context ctx) {
         Expr expr = factor(ctx);
-        while (ctx.match(LoxTokenType.MINUS, LoxTokenType.PLUS)) {
+        while (ctx.match(TERM_OPERATORS)) {
             var operator = ctx.getLastMatchedToken();
             Expr right = factor(ctx);
             expr = new Expr.Binary(expr, operator, right);
@@ -360,7 +363,7 @@ public class LoxGrammar {
 
     private Expr factor (LoxParser.Context ctx) {
         Expr expr = unary(ctx);
-        while (ctx.match(LoxTokenType.STAR, LoxTokenType.SLASH)) {
+        while (ctx.match(FACTOR_OPERATORS)) {
             var operator = ctx.getLastMatchedToken();
             Expr right = unary(ctx);
             expr = new Expr.Binary(expr, operator, right);
@@ -369,8 +372,8 @@ public class LoxGrammar {
         return expr;
     }
 
-    private Expr unary (LoxParser.Context ctx) {
-        if (ctx.match(LoxTokenType.MINUS, LoxTokenType.BANG)) {
+    protected Expr unary (LoxParser.Context ctx) {
+        if (ctx.match(UNARY_OPERATORS)) {
             var operator = ctx.getLastMatchedToken();
             Expr right = unary(ctx);
             return new Expr.Unary(operator, right);
@@ -405,13 +408,7 @@ public class LoxGrammar {
     }
 
     private Expr primary (LoxParser.Context ctx) {
-        if (ctx.match(
-            LoxTokenType.NUMBER,
-            LoxTokenType.STRING,
-            LoxTokenType.TRUE,
-            LoxTokenType.FALSE,
-            LoxTokenType.NIL
-        )) {
+        if (ctx.match(LITERALS)) {
             return new Expr.Literal(ctx.getLastMatchedToken()); 
         } else if (ctx.match(LoxTokenType.IDENTIFIER)) {
             return new Expr.Variable(ctx.getLastMatchedToken());
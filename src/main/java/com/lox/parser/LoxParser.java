@@ -6,18 +6,40 @@ import java.util.List;
 import com.lox.Lox;
 import com.lox.lexer.LoxToken;
 import com.lox.lexer.LoxTokenType;
+import com.lox.lexer.TokenBuffer;
+import com.lox.lexer.TokenSource;
 import com.lox.parser.ast.Stmt;
 import com.lox.parser.exceptions.ParseError;
 
 public class LoxParser {
 
-    final private ArrayList<LoxToken> tokenStream;
+    /**
+     * The most tokens `Context.kLookahead` may look at. Windowed `TokenSource`s
+     * must keep this many tokens plus the last matched one available.
+     */
+    static final public int MAX_LOOKAHEAD = 2;
+
+    final private TokenSource tokenStream;
+    // whether `tokenStream` is known to end with EOF, so positions up to it
+    // need not be checked with `has` (the parser never advances past EOF)
+    final private boolean sentinel;
     final private LoxGrammar grammar;
+    final private Context ctx = new Context();
     public List<Stmt> program = new ArrayList<>();
     private int curr = 0;
 
     public LoxParser(ArrayList<LoxToken> tokenStream, LoxGrammar grammar) {
+        this(TokenBuffer.of(tokenStream), grammar);
+    }
+
+    /**
+     * Parses directly off a `TokenSource`, e.g. a compact `TokenBuffer`. Only
+     * tokens handed to the `Grammar` (e.g. through `getLastMatchedToken()`) are
+     * materialized.
+     */
+    public LoxParser(TokenSource tokenStream, LoxGrammar grammar) {
         this.tokenStream = tokenStream;
+        this.sentinel = tokenStream.endsWithEOF();
         this.grammar = grammar;
     }
 
@@ -27,6 +49,30 @@ public class LoxParser {
      */
     public class Context {
 
+        /**
+         * Matches a token in the current position against a single `tokenType`.
+         * If matched, returns `true` and advances the parser by one token.
+         */
+        public boolean match (LoxTokenType tokenType) {
+            if (check(tokenType)) {
+                advance();
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Matches a token in the current position against a `TokenSet`. If
+         * matched, returns `true` and advances the parser by one token.
+         */
+        public boolean match (TokenSet tokenTypes) {
+            if (tokenTypes.contains(peekType())) {
+                advance();
+                return true;
+            }
+            return false;
+        }
+
         /**
          * Matches a token in the current position against a collection of valid
          * `tokenTypes`. If matched, returns `true` and advances the parser by one
@@ -55,6 +101,22 @@ public class LoxParser {
             }
         }
 
+        /**
+         * Matches a token in the current position against a single `tokenType`
+         * without advancing the parser.
+         */
+        public boolean lookahead (LoxTokenType tokenType) {
+            return check(tokenType);
+        }
+
+        /**
+         * Matches a token in the current position against a `TokenSet` without
+         * advancing the parser.
+         */
+        public boolean lookahead (TokenSet tokenTypes) {
+            return tokenTypes.contains(peekType());
+        }
+
         /**
          * Matches a token in the current position against a collection of valid
          * `tokenTypes` without advancing the parser.
@@ -69,19 +131,31 @@ public class LoxParser {
         }
 
         /**
-         * Matches all k-lookahead tokens.
+         * Matches all k-lookahead tokens, with k up to `MAX_LOOKAHEAD`.
          */
         public boolean kLookahead (LoxTokenType... tokenTypes) {
+            if (tokenTypes.length > MAX_LOOKAHEAD) {
+                throw new IllegalArgumentException("cannot look ahead more than " + MAX_LOOKAHEAD + " tokens");
+            }
             for (int i = 0; i < tokenTypes.length; i++) {
                 var tokenType = tokenTypes[i];
-                var lookahead = tokenStream.get(curr + i);
-                if (tokenType != lookahead.type) {
+                if (!tokenStream.has(curr + i) || tokenType != tokenStream.type(curr + i)) {
                     return false;
                 }
             }
             return true;
         }
 
+        /**
+         * Matches the token in the current position and the one after it.
+         */
+        public boolean kLookahead (LoxTokenType first, LoxTokenType second) {
+            return check(first)
+                && first != LoxTokenType.EOF
+                && (sentinel || tokenStream.has(curr + 1))
+                && tokenStream.type(curr + 1) == second;
+        }
+
         /**
          * Get the token that was last matched by the parser.
          */
@@ -89,7 +163,7 @@ public class LoxParser {
             if (curr == 0) {
                 return null;
             } else {
-                return tokenStream.get(curr - 1);
+                return tokenStream.token(curr - 1);
             }
         }
 
@@ -99,6 +173,14 @@ public class LoxParser {
         public LoxToken getCurrToken () {
             return peek();
         }
+
+        /**
+         * Returns the type of the token at the current position without
+         * materializing it.
+         */
+        public LoxTokenType getCurrType () {
+            return peekType();
+        }
         
         public boolean isAtEnd () {
             return isEOF();
@@ -111,9 +193,8 @@ public class LoxParser {
     }
 
     public void parse() {
-        Context ctx = new Context();
-        List<Stmt> program = grammar.start(ctx);
-        if (this.peek().type != LoxTokenType.EOF) {
+        List<Stmt> program = grammar.start(this.ctx);
+        if (this.peekType() != LoxTokenType.EOF) {
             Lox.error(this.peek(), "incomplete parse");
             throw new ParseError();
         } else {
@@ -121,9 +202,20 @@ public class LoxParser {
         }
     }
 
+    /**
+     * Parses the next declaration only, so that it can be executed before the
+     * rest of the token stream is produced. Returns `null` at the end of input.
+     */
+    public Stmt parseNext() {
+        if (this.ctx.isAtEnd()) {
+            return null;
+        }
+        return grammar.declaration(this.ctx);
+    }
+
     private boolean isEOF () {
-        if (this.curr <= this.tokenStream.size() - 1) {
-            return this.tokenStream.get(this.curr).type == LoxTokenType.EOF;
+        if (this.sentinel || this.tokenStream.has(this.curr)) {
+            return this.tokenStream.type(this.curr) == LoxTokenType.EOF;
         }
         Lox.report("unterminated program: statements likely missing a trailing ';'");
         throw new ParseError();
@@ -134,21 +226,27 @@ public class LoxParser {
     }
 
     private boolean check (LoxTokenType tokenType) {
-        var currToken = this.peek();
-        return currToken.type == tokenType;
+        return this.peekType() == tokenType;
     }
 
     private LoxToken peek () {
-        if (this.isEOF()) return this.tokenStream.getLast();
-        else {
-            return this.tokenStream.get(this.curr);
-        }
+        // `isEOF` makes sure the current token exists (EOF is never advanced past)
+        if (!this.sentinel) this.isEOF();
+        return this.tokenStream.token(this.curr);
+    }
+
+    /**
+     * Type of the token at the current position, without materializing it.
+     */
+    private LoxTokenType peekType () {
+        if (!this.sentinel) this.isEOF();
+        return this.tokenStream.type(this.curr);
     }
 
     private LoxToken peekPrevious () {
         if (this.curr == 0) return null;
         else {
-            return this.tokenStream.get(this.curr - 1);
+            return this.tokenStream.token(this.curr - 1);
         }
     }
 
@@ -160,7 +258,7 @@ public class LoxParser {
             // discard tokens until the next statement boundary (demarcated by SEMICOLON)
             if (this.peekPrevious().type == LoxTokenType.SEMICOLON) return;
 
-            switch (this.peek().type) {
+            switch (this.peekType()) {
                 case CLASS:
                 case FUN:
                 case FOR:
@@ -0,0 +1,82 @@
+package com.lox.parser;
+
+import com.lox.lexer.LoxToken;
+import com.lox.lexer.LoxTokenType;
+import com.lox.parser.ast.Expr;
+
+/**
+ * A `LoxGrammar` that parses binary expressions by precedence climbing instead
+ * of descending through one rule per precedence level. The operator after an
+ * operand is looked up in a table indexed by token type, so each operator is
+ * resolved in one step however low its precedence.
+ *
+ * The produced ASTs are identical to those of `LoxGrammar`, including its
+ * binding of `or` tighter than `and`.
+ */
+public class PrattGrammar extends LoxGrammar {
+
+    // binding power of each binary operator, 0 for tokens that are not one
+    static final private int[] PRECEDENCE = new int[LoxTokenType.values().length];
+
+    static {
+        PRECEDENCE[LoxTokenType.AND.ordinal()] = 1;
+        PRECEDENCE[LoxTokenType.OR.ordinal()] = 2;
+        PRECEDENCE[LoxTokenType.BANG_EQUAL.ordinal()] = 3;
+        PRECEDENCE[LoxTokenType.EQUAL_EQUAL.ordinal()] = 3;
+        PRECEDENCE[LoxTokenType.LESS.ordinal()] = 4;
+        PRECEDENCE[LoxTokenType.GREATER.ordinal()] = 4;
+        PRECEDENCE[LoxTokenType.LESS_EQUAL.ordinal()] = 4;
+        PRECEDENCE[LoxTokenType.GREATER_EQUAL.ordinal()] = 4;
+        PRECEDENCE[LoxTokenType.MINUS.ordinal()] = 5;
+        PRECEDENCE[LoxTokenType.PLUS.ordinal()] = 5;
+        PRECEDENCE[LoxTokenType.STAR.ordinal()] = 6;
+        PRECEDENCE[LoxTokenType.SLASH.ordinal()] = 6;
+    }
+
+    // ===== EXPRESSIONS =====
+
+    @Override
+    protected Expr expression (LoxParser.Context ctx) {
+        if (ctx.lookahead(LoxTokenType.FUN)) {
+            return this.anonymousFunc(ctx);
+        } else {
+            return this.assignment(ctx);
+        }
+    }
+
+    private Expr assignment (LoxParser.Context ctx) {
+        if (ctx.kLookahead(LoxTokenType.IDENTIFIER, LoxTokenType.EQUAL)) {
+            ctx.match(LoxTokenType.IDENTIFIER);
+            LoxToken identifier = ctx.getLastMatchedToken();
+            ctx.match(LoxTokenType.EQUAL);
+            return new Expr.Assignment(identifier, this.assignment(ctx));
+        } else {
+            return this.binary(ctx, 1);
+        }
+    }
+
+    /**
+     * Parses a chain of left-associative binary operators binding at least as
+     * tightly as `minPrecedence`.
+     */
+    private Expr binary (LoxParser.Context ctx, int minPrecedence) {
+        Expr expr = this.unary(ctx);
+
+        while (true) {
+            LoxTokenType type = ctx.getCurrType();
+            int precedence = PRECEDENCE[type.ordinal()];
+            if (precedence == 0 || precedence < minPrecedence) {
+                return expr;
+            }
+
+            ctx.match(type);
+            LoxToken operator = ctx.getLastMatchedToken();
+            Expr right = this.binary(ctx, precedence + 1);
+            if (type == LoxTokenType.AND || type == LoxTokenType.OR) {
+                expr = new Expr.Logical(expr, operator, right);
+            } else {
+                expr = new Expr.Binary(expr, operator, right);
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.lox.parser;
+
+import com.lox.lexer.LoxTokenType;
+
+/**
+ * An immutable set of `LoxTokenType`s kept as a bitmask over their ordinals.
+ * Grammar rules declare the token types they accept as constants, so matching
+ * the current token against them neither allocates nor scans.
+ */
+final public class TokenSet {
+    static {
+        if (LoxTokenType.values().length > Long.SIZE) {
+            throw new AssertionError("a TokenSet can only hold " + Long.SIZE + " token types");
+        }
+    }
+
+    final private long mask;
+
+    private TokenSet (long mask) {
+        this.mask = mask;
+    }
+
+    public static TokenSet of (LoxTokenType... tokenTypes) {
+        long mask = 0;
+        for (var tokenType : tokenTypes) {
+            mask |= 1L << tokenType.ordinal();
+        }
+        return new TokenSet(mask);
+    }
+
+    public boolean contains (LoxTokenType tokenType) {
+        return (this.mask & (1L << tokenType.ordinal())) != 0;
+    }
+}
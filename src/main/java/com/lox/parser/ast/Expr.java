@@ -10,6 +10,7 @@ public abstract class Expr {
         public R visitAnonymousFuncExpr(Expr.AnonymousFunc expr);
         public R visitGroupingExpr(Expr.Grouping expr);
         public R visitBinaryExpr(Expr.Binary expr);
+        public R visitLogicalExpr(Expr.Logical expr);
         public R visitUnaryExpr(Expr.Unary expr);
         public R visitLiteralExpr(Expr.Literal expr);
         public R visitVariableExpr(Expr.Variable expr);
@@ -21,6 +22,9 @@ public abstract class Expr {
     public static class Assignment extends Expr {
         final public LoxToken variable;
         final public Expr right;
+        // set by the `Resolver`, see `Environment.assign(int, int, LoxToken, Object)`
+        public int depth = -1;
+        public int slot = -1;
 
         public Assignment(LoxToken variable, Expr right) {
             this.variable = variable;
@@ -41,6 +45,10 @@ public abstract class Expr {
     public static class AnonymousFunc extends Expr {
         final public List<LoxToken> parameters;
         final public Stmt.BlockStmt body;
+        // names of the slots of the function's frame and whether a function is
+        // declared in its body, set by the `Resolver`
+        public String[] locals;
+        public boolean enclosesFunction;
 
         public AnonymousFunc(List<LoxToken> parameters, Stmt.BlockStmt body) {
             this.parameters = parameters;
@@ -93,6 +101,32 @@ public abstract class Expr {
         }
     }
 
+    /**
+     * `and` or `or`, which only evaluates `right` if `left` does not decide the
+     * result, and evaluates to the operand that decided it.
+     */
+    public static class Logical extends Expr {
+        final public Expr left;
+        final public Expr right;
+        final public LoxToken operator;
+
+        public Logical(Expr left, LoxToken operator, Expr right) {
+            this.left = left;
+            this.right = right;
+            this.operator = operator;
+        }
+
+        @Override
+        public <R> R accept (Expr.Visitor<R> visitor) {
+            return visitor.visitLogicalExpr(this);
+        }
+
+        @Override
+        public String toString () {
+            return ("{ left: " + this.left + ", operator: " + this.operator.literal + ", right: " + this.right + " }");
+        }
+    }
+
     public static class Unary extends Expr {
         final public LoxToken operator;
         final public Expr right;
@@ -133,6 +167,9 @@ public abstract class Expr {
 
     public static class Variable extends Expr {
         final public LoxToken token;
+        // set by the `Resolver`, see `Environment.use(int, int, LoxToken)`
+        public int depth = -1;
+        public int slot = -1;
 
         public Variable(LoxToken token) {
             this.token = token;
@@ -153,6 +190,9 @@ public abstract class Expr {
         final public Expr callee;
         final public LoxToken paren;
         final public List<Expr> arguments;
+        // the global function the `Inliner` inlined into the call, as long as
+        // the callee still is one of its closures
+        public Stmt.FunDeclStmt inlined;
 
         public Call(Expr callee, LoxToken paren, List<Expr> arguments) {
             this.callee = callee;
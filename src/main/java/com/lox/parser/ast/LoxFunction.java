@@ -1,40 +1,169 @@
 package com.lox.parser.ast;
 
+import java.util.Arrays;
 import java.util.List;
 
 import com.lox.interpreter.Environment;
 import com.lox.interpreter.LoxInterpreter;
-import com.lox.interpreter.exceptions.Return;
+import com.lox.jit.Jit;
+import com.lox.jit.JitCode;
+import com.lox.jit.JitProfile;
 
 public class LoxFunction implements LoxCallable {
+    static final private int MAX_POOLED_FRAMES = 16;
+
     private final Stmt.FunDeclStmt declaration;
     private final Environment closure;
+    // frames of finished calls, reused by the next ones if no closure can
+    // capture them (i.e. the function declares none)
+    private Environment[] frames;
+    private int pooledFrames;
 
     public LoxFunction(Stmt.FunDeclStmt declaration, Environment environment) {
         this.declaration = declaration;
         this.closure = environment;
     }
 
-    @Override 
+    @Override
     public int arity () {
         return this.declaration.parameters.size();
-    } 
+    }
 
     @Override
     public Object call (LoxInterpreter interpreter, List<Object> arguments) {
-        Environment funEnvironment = new Environment(closure);
+        if (interpreter.getJit() != null || this.declaration.profile != null) {
+            return this.invoke(interpreter, arguments.toArray());
+        }
+        return this.interpret(interpreter, arguments);
+    }
+
+    /**
+     * Calls the function with as many arguments as it has parameters, running
+     * its compiled code once the interpreter's `Jit` has compiled it (or if it
+     * was compiled ahead of time).
+     */
+    public Object invoke (LoxInterpreter interpreter, Object[] arguments) {
+        Jit jit = interpreter.getJit();
+        JitProfile profile = this.profile(jit);
+        if (profile != null) {
+            JitCode code = profile.code();
+            if (code == null && jit != null) {
+                profile.call(jit, arguments);
+                code = profile.code();
+            }
+            if (code != null) {
+                Object result = code.call(interpreter, this.closure, arguments);
+                if (result != JitCode.DEOPTIMIZE) {
+                    return result;
+                }
+                profile.deoptimize(jit, arguments);
+            }
+        }
+
+        if (jit == null) {
+            return this.interpret(interpreter, Arrays.asList(arguments));
+        }
+        LoxFunction caller = interpreter.enter(this);
+        try {
+            return this.interpret(interpreter, Arrays.asList(arguments));
+        } finally {
+            interpreter.leave(caller);
+        }
+    }
+
+    /**
+     * Counts an iteration of a loop of the function's body.
+     */
+    public void backEdge (Jit jit) {
+        this.profile(jit).backEdge(jit);
+    }
 
-        for (int i = 0; i < declaration.parameters.size(); i++) {
-            // define parameter values (arguments) in function scope environment
-            funEnvironment.define(declaration.parameters.get(i), arguments.get(i));
+    private JitProfile profile (Jit jit) {
+        if (jit == null) {
+            return this.declaration.profile;
+        } else if (this.declaration.profile == null) {
+            this.declaration.profile = new JitProfile(this.declaration);
         }
+        return this.declaration.profile;
+    }
+
+    public boolean isDeclaredBy (Stmt.FunDeclStmt declaration) {
+        return this.declaration == declaration;
+    }
 
+    /**
+     * Calls the function at a call site it was inlined into (see `Inliner`):
+     * the `arguments` are evaluated straight into a frame, and the expression
+     * the body returns is evaluated in it without running the body.
+     */
+    public Object inline (LoxInterpreter interpreter, List<Expr> arguments) {
+        Environment frame = this.frame();
         try {
-            interpreter.executeBlock(this.declaration.body, funEnvironment);
-        } catch (Return ret) {
-            return ret.value;
+            for (int i = 0; i < arguments.size(); i++) {
+                frame.define(i, (String)this.declaration.parameters.get(i).literal, interpreter.evaluate(arguments.get(i)));
+            }
+            return interpreter.evaluate(((Stmt.ReturnStmt)this.declaration.body.declarations.get(0)).expression, frame);
+        } finally {
+            this.release(frame);
+        }
+    }
+
+    private Environment frame () {
+        return this.pooledFrames > 0
+            ? this.frames[--this.pooledFrames]
+            : new Environment(this.closure, this.declaration.locals);
+    }
+
+    /**
+     * Runs the body in a frame of the function. A call the body returns in
+     * tail position is made here once the frame is released, rather than
+     * from within the body, so that tail calls run in constant stack and a
+     * tail-recursive function reuses its one pooled frame.
+     */
+    private Object interpret (LoxInterpreter interpreter, List<Object> arguments) {
+        LoxFunction function = this;
+        while (true) {
+            Environment funEnvironment = function.frame();
+            for (int i = 0; i < function.declaration.parameters.size(); i++) {
+                // define parameter values (arguments) in function scope environment,
+                // parameters take the first slots of a resolved function's frame
+                funEnvironment.define(i, (String)function.declaration.parameters.get(i).literal, arguments.get(i));
+            }
+
+            Object completion;
+            try {
+                completion = interpreter.executeBlock(function.declaration.body, funEnvironment);
+            } finally {
+                function.release(funEnvironment);
+            }
+            if (completion != LoxInterpreter.TAIL_CALL) {
+                return LoxInterpreter.returned(completion);
+            }
+
+            LoxCallable callee = interpreter.tailCallee();
+            arguments = interpreter.tailArguments();
+            if (!(callee instanceof LoxFunction next) || next.declaration.profile != null) {
+                // natives and functions compiled ahead of time
+                return callee.call(interpreter, arguments);
+            }
+            function = next;
+        }
+    }
+
+    /**
+     * Keeps the frame of a finished call for the next call, unless a closure
+     * may have captured it.
+     */
+    private void release (Environment frame) {
+        if (this.declaration.enclosesFunction || this.declaration.locals == null) {
+            return;
+        } else if (this.frames == null) {
+            this.frames = new Environment[MAX_POOLED_FRAMES];
+        }
+        if (this.pooledFrames < MAX_POOLED_FRAMES) {
+            frame.clear();
+            this.frames[this.pooledFrames++] = frame;
         }
-        return null;
     }
 
     @Override
@@ -3,6 +3,7 @@ package com.lox.parser.ast;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.lox.jit.JitProfile;
 import com.lox.lexer.LoxToken;
 
 public abstract class Stmt {
@@ -15,6 +16,7 @@ public abstract class Stmt {
         public R visitBlockStmt (Stmt.BlockStmt stmt);
         public R visitIfStmt (Stmt.IfStmt stmt);
         public R visitWhileStmt (Stmt.WhileStmt stmt);
+        public R visitForStmt (Stmt.ForStmt stmt);
         public R visitSingleKeywordStmt (Stmt.SingleKeywordStmt stmt);
     }
 
@@ -23,6 +25,8 @@ public abstract class Stmt {
     public static class VarDeclStmt extends Stmt {
         final public LoxToken identifier;
         final public Expr expression;
+        // slot of the variable in its frame, set by the `Resolver`
+        public int slot = -1;
 
         public VarDeclStmt(LoxToken identifier) {
             this.identifier = identifier;
@@ -53,6 +57,14 @@ public abstract class Stmt {
         final public LoxToken identifier;
         final public List<LoxToken> parameters;
         final public Stmt.BlockStmt body;
+        // slot of the function's name, names of the slots of its frame and
+        // whether a function is declared in its body, set by the `Resolver`
+        public int slot = -1;
+        public String[] locals;
+        public boolean enclosesFunction;
+        // calls counted and code compiled by a `Jit`, shared by the closures
+        // of the declaration
+        public JitProfile profile;
 
         /** named function declaration */
         public FunDeclStmt(LoxToken identifier, List<LoxToken> parameters, Stmt.BlockStmt body) {
@@ -101,8 +113,45 @@ public abstract class Stmt {
         }
     }
 
+    /**
+     * A `for` loop. The initializer runs once in a scope of the loop's own,
+     * which every iteration shares; a `continue` still runs the increment.
+     */
+    public static class ForStmt extends Stmt {
+        // each of the clauses may be missing (`null`)
+        final public Stmt initializer;
+        final public Expr condition;
+        final public Expr increment;
+        final public Stmt statement;
+        // names of the slots of the loop's frame and whether a function is
+        // declared in it, set by the `Resolver`
+        public String[] locals;
+        public boolean enclosesFunction;
+
+        public ForStmt(Stmt initializer, Expr condition, Expr increment, Stmt statement) {
+            this.initializer = initializer;
+            this.condition = condition;
+            this.increment = increment;
+            this.statement = statement;
+        }
+
+        @Override
+        public <R> R accept (Stmt.Visitor<R> visitor) {
+            return visitor.visitForStmt(this);
+        }
+
+        @Override
+        public String toString () {
+            return "(\n\tFOR " + this.initializer + "; " + this.condition + "; " + this.increment + "\n\tTHEN " + this.statement.toString() + "\n)";
+        }
+    }
+
     public static class BlockStmt extends Stmt {
         final public List<Stmt> declarations;
+        // names of the slots of the block's frame and whether a function is
+        // declared in it, set by the `Resolver`
+        public String[] locals;
+        public boolean enclosesFunction;
 
         public BlockStmt (List<Stmt> declarations) {
             this.declarations = declarations;
@@ -157,6 +206,9 @@ public abstract class Stmt {
 
     public static class ReturnStmt extends Stmt {
         final public Expr expression;
+        // whether the statement returns a call from a function's body outside
+        // of any loop, set by the `Resolver`
+        public boolean tailCall;
 
         public ReturnStmt(Expr expression) {
             this.expression = expression;
@@ -0,0 +1,22 @@
+package com.lox.vm;
+
+import com.lox.interpreter.Environment;
+
+/**
+ * A Lox function value in the `LoxVM`: a compiled function and the scope it
+ * was declared in.
+ */
+final class Closure {
+    final CompiledFunction function;
+    final Environment closure;
+
+    Closure (CompiledFunction function, Environment closure) {
+        this.function = function;
+        this.closure = closure;
+    }
+
+    @Override
+    public String toString () {
+        return "<fn " + this.function.identifier.lexeme + ">";
+    }
+}
@@ -0,0 +1,61 @@
+package com.lox.vm;
+
+import com.lox.lexer.LoxToken;
+
+/**
+ * The bytecode of a function body (or of a whole program, see
+ * `Compiler.compile(List)`), with the constants it references.
+ */
+final class CompiledFunction {
+    // `null` for anonymous functions and programs
+    final LoxToken identifier;
+    final int arity;
+    // names of the slots of the function's frame (see `Resolver`), and
+    // whether they are registers rather than an `Environment`
+    final String[] locals;
+    final boolean registers;
+    final int[] code;
+    final Object[] constants;
+    // the constants as values (see `Value`), `OBJECT` for any but a number,
+    // a boolean or `nil`
+    final long[] values;
+    // stack slots used by the body, registers included, excluding the
+    // functions it calls
+    final int maxStack;
+
+    /**
+     * The loops of the body, innermost first, as `LOOP_SIZE` entries: the
+     * range of the loop's body, where a `continue` and a `break` continue, and
+     * the number of scopes and of registers in use at the loop.
+     */
+    final int[] loops;
+    static final int LOOP_SIZE = 6;
+
+    CompiledFunction (LoxToken identifier, int arity, String[] locals, boolean registers, int[] code, Object[] constants, int maxStack, int[] loops) {
+        this.identifier = identifier;
+        this.arity = arity;
+        this.locals = locals;
+        this.registers = registers;
+        this.code = code;
+        this.constants = constants;
+        this.values = new long[constants.length];
+        for (int i = 0; i < constants.length; i++) {
+            this.values[i] = Value.of(constants[i]);
+        }
+        this.maxStack = maxStack;
+        this.loops = loops;
+    }
+
+    /**
+     * The offset in `loops` of the innermost loop whose body contains `pc`, or
+     * `-1`.
+     */
+    int loopAt (int pc) {
+        for (int i = 0; i < this.loops.length; i += LOOP_SIZE) {
+            if (this.loops[i] <= pc && pc < this.loops[i + 1]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
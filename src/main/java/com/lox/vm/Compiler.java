@@ -0,0 +1,641 @@
+package com.lox.vm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.lox.interpreter.Environment;
+import com.lox.interpreter.exceptions.RuntimeError;
+import com.lox.lexer.LoxToken;
+import com.lox.lexer.LoxTokenType;
+import com.lox.parser.ast.Expr;
+import com.lox.parser.ast.Stmt;
+
+/**
+ * Compiles a resolved program (see `Resolver`) into bytecode for the `LoxVM`,
+ * one `CompiledFunction` per function body. The bytecode does what the
+ * `LoxInterpreter` does for the same nodes, in the same order, so that both
+ * engines print the same output and fail with the same errors.
+ *
+ * No closure can capture the variables of a function or block that does not
+ * declare a function, so those are kept in registers on the VM's stack rather
+ * than in an `Environment`. A register whose declaration has not run yet falls
+ * back to the registers of the enclosing scopes that declare the same name,
+ * then to a lookup by name, like an `Environment` slot does.
+ */
+class Compiler implements Stmt.Visitor<Void>, Expr.Visitor<Void> {
+
+    /** A loop being compiled, the target of its `break`s and `continue`s. */
+    static private class Loop {
+        final int continueTarget;
+        final int scopes;
+        final int registers;
+        final List<Integer> breakJumps = new ArrayList<>();
+
+        Loop (int continueTarget, int scopes, int registers) {
+            this.continueTarget = continueTarget;
+            this.scopes = scopes;
+            this.registers = registers;
+        }
+    }
+
+    /** A scope whose variables are in registers `base` to `base + locals.length`. */
+    static private class RegisterScope {
+        final String[] locals;
+        final int base;
+
+        RegisterScope (String[] locals, int base) {
+            this.locals = locals;
+            this.base = base;
+        }
+    }
+
+    static final private int[] NO_FALLBACKS = new int[0];
+
+    private int[] code = new int[64];
+    private int size;
+    final private List<Object> constants = new ArrayList<>();
+    final private Map<Object, Integer> constantIndices = new IdentityHashMap<>();
+
+    // operand stack slots in use at the current instruction, and their maximum
+    private int stack;
+    private int maxStack;
+
+    // scopes opened by blocks of the current function
+    private int scopes;
+
+    // whether the current scope is in registers, the register scopes enclosing
+    // it (innermost last) and the number of registers they use
+    private boolean registers;
+    final private List<RegisterScope> registerScopes = new ArrayList<>();
+    private int registerCount;
+    final private List<Loop> loops = new ArrayList<>();
+    final private List<int[]> loopTable = new ArrayList<>();
+
+    /**
+     * Compiles a program into a function of no arguments that runs in the
+     * global scope.
+     */
+    static CompiledFunction compile (List<Stmt> program) {
+        Compiler compiler = new Compiler();
+        for (var statement : program) {
+            compiler.compile(statement);
+        }
+        compiler.emit(OpCode.NIL);
+        compiler.emit(OpCode.RETURN);
+        return compiler.finish(null, 0, null);
+    }
+
+    private static CompiledFunction compile (LoxToken identifier, List<LoxToken> parameters, Stmt.BlockStmt body, String[] locals, boolean enclosesFunction) {
+        Compiler compiler = new Compiler();
+        if (!enclosesFunction) {
+            // the arguments are left on the stack as the first registers
+            compiler.registers = true;
+            compiler.registerScopes.add(new RegisterScope(locals, 0));
+            compiler.registerCount = locals.length;
+            compiler.stack = compiler.maxStack = locals.length;
+        }
+        // the body runs in the function's frame, not in a scope of its own
+        for (var declaration : body.declarations) {
+            compiler.compile(declaration);
+        }
+        compiler.emit(OpCode.NIL);
+        compiler.emit(OpCode.RETURN);
+        return compiler.finish(identifier, parameters.size(), locals);
+    }
+
+    private CompiledFunction finish (LoxToken identifier, int arity, String[] locals) {
+        int[] loops = new int[this.loopTable.size() * CompiledFunction.LOOP_SIZE];
+        for (int i = 0; i < this.loopTable.size(); i++) {
+            System.arraycopy(this.loopTable.get(i), 0, loops, i * CompiledFunction.LOOP_SIZE, CompiledFunction.LOOP_SIZE);
+        }
+        return new CompiledFunction(
+            identifier,
+            arity,
+            locals,
+            this.registers,
+            Arrays.copyOf(this.code, this.size),
+            this.constants.toArray(),
+            this.maxStack,
+            loops
+        );
+    }
+
+    private void compile (Stmt statement) {
+        statement.accept(this);
+    }
+
+    private void compile (Expr expression) {
+        if (expression == null) {
+            // the interpreter evaluates a missing expression to `nil`
+            this.emit(OpCode.NIL);
+        } else {
+            expression.accept(this);
+        }
+    }
+
+    // ===== EMITTING =====
+
+    private void emit (int opCode, int... operands) {
+        if (this.size + 1 + operands.length > this.code.length) {
+            this.code = Arrays.copyOf(this.code, Math.max(this.code.length * 2, this.size + 1 + operands.length));
+        }
+        this.code[this.size++] = opCode;
+        for (int operand : operands) {
+            this.code[this.size++] = operand;
+        }
+        this.stack += stackEffect(opCode, operands);
+        this.maxStack = Math.max(this.maxStack, this.stack);
+    }
+
+    private static int stackEffect (int opCode, int[] operands) {
+        switch (opCode) {
+            case OpCode.CONSTANT:
+            case OpCode.NIL:
+            case OpCode.GET:
+            case OpCode.GET_REGISTER:
+            case OpCode.CLOSURE:
+                return 1;
+            case OpCode.CALL:
+                return -operands[0];
+            case OpCode.PUSH_REGISTERS:
+                return operands[0];
+            case OpCode.POP_REGISTERS:
+                return -operands[0];
+            case OpCode.JUMP_IF_NOT_LESS:
+            case OpCode.JUMP_IF_NOT_LESS_EQUAL:
+            case OpCode.JUMP_IF_NOT_GREATER:
+            case OpCode.JUMP_IF_NOT_GREATER_EQUAL:
+                return -2;
+            case OpCode.SET:
+            case OpCode.SET_REGISTER:
+            case OpCode.ADD_CONSTANT:
+            case OpCode.SUBTRACT_CONSTANT:
+            case OpCode.NEGATE:
+            case OpCode.NOT:
+            case OpCode.INCREMENT:
+            case OpCode.DECREMENT:
+            case OpCode.JUMP:
+            case OpCode.SIGNAL:
+            case OpCode.PUSH_SCOPE:
+            case OpCode.POP_SCOPE:
+                return 0;
+            default:
+                // POP, PRINT, DEFINE, DEFINE_REGISTER, STORE, STORE_REGISTER,
+                // JUMP_IF_FALSE, RETURN and the binary operators, and the
+                // JUMP_IF_*_OR_POP instructions on the path that does not jump,
+                // where the right operand then takes the left one's place
+                return -1;
+        }
+    }
+
+    private int constant (Object value) {
+        Integer index = this.constantIndices.get(value);
+        if (index == null) {
+            index = this.constants.size();
+            this.constants.add(value);
+            this.constantIndices.put(value, index);
+        }
+        return index;
+    }
+
+    /**
+     * Emits an instruction on a variable resolved to `depth` and `slot`:
+     * `registerOpCode` if it is in a register, `opCode` otherwise.
+     */
+    private void emitVariable (int opCode, int registerOpCode, int depth, int slot, LoxToken variable) {
+        int count = this.registerScopes.size();
+        if (depth < 0 || depth >= count) {
+            // the register scopes are not in the `Environment` chain
+            this.emit(opCode, depth < 0 ? depth : depth - count, slot, this.constant(variable));
+            return;
+        }
+
+        RegisterScope scope = this.registerScopes.get(count - 1 - depth);
+        this.emit(registerOpCode, scope.base + slot, this.constant(variable), this.constant(this.fallbacks((String)variable.literal, count - 2 - depth)));
+    }
+
+    /**
+     * Emits `x = x + c` or `x = x - c` as a single instruction if `x` is in a
+     * register and `c` is a literal, and returns whether it did.
+     */
+    private boolean emitIncrement (Expr.Assignment assignment) {
+        if (!(assignment.right instanceof Expr.Binary binary)
+            || !(binary.left instanceof Expr.Variable variable)
+            || !(binary.right instanceof Expr.Literal literal)
+            || literal.token.literal == null) {
+            return false;
+        }
+
+        int opCode;
+        switch (binary.operator.type) {
+            case PLUS: opCode = OpCode.INCREMENT; break;
+            case MINUS: opCode = OpCode.DECREMENT; break;
+            default: return false;
+        }
+
+        int depth = assignment.depth;
+        int count = this.registerScopes.size();
+        if (depth < 0 || depth >= count || variable.depth != depth || variable.slot != assignment.slot) {
+            return false;
+        }
+
+        RegisterScope scope = this.registerScopes.get(count - 1 - depth);
+        this.emit(
+            opCode,
+            scope.base + assignment.slot,
+            this.constant(literal.token.literal),
+            this.constant(binary.operator),
+            this.constant(variable.token),
+            this.constant(assignment.variable),
+            this.constant(this.fallbacks((String)variable.token.literal, count - 2 - depth))
+        );
+        return true;
+    }
+
+    /**
+     * The registers declaring `name` in the register scopes enclosing the
+     * scope at `index`, innermost first.
+     */
+    private int[] fallbacks (String name, int index) {
+        int[] fallbacks = NO_FALLBACKS;
+        for (int i = index; i >= 0; i--) {
+            RegisterScope scope = this.registerScopes.get(i);
+            for (int slot = scope.locals.length - 1; slot >= 0; slot--) {
+                if (scope.locals[slot] == name) {
+                    fallbacks = Arrays.copyOf(fallbacks, fallbacks.length + 1);
+                    fallbacks[fallbacks.length - 1] = scope.base + slot;
+                    break;
+                }
+            }
+        }
+        return fallbacks;
+    }
+
+    /**
+     * Emits a jump whose target is set by `patch(int)`, and returns the offset
+     * of its target.
+     */
+    private int emitJump (int opCode) {
+        this.emit(opCode, -1);
+        return this.size - 1;
+    }
+
+    private void patch (int jump) {
+        this.code[jump] = this.size;
+    }
+
+    /**
+     * Emits a jump taken if `condition` is falsy, and returns the offset of its
+     * target. A comparison jumps on the numbers it compares.
+     */
+    private int emitJumpIfFalse (Expr condition) {
+        if (condition instanceof Expr.Binary binary) {
+            int opCode;
+            switch (binary.operator.type) {
+                case LESS: opCode = OpCode.JUMP_IF_NOT_LESS; break;
+                case LESS_EQUAL: opCode = OpCode.JUMP_IF_NOT_LESS_EQUAL; break;
+                case GREATER: opCode = OpCode.JUMP_IF_NOT_GREATER; break;
+                case GREATER_EQUAL: opCode = OpCode.JUMP_IF_NOT_GREATER_EQUAL; break;
+                default: opCode = -1;
+            }
+            if (opCode >= 0) {
+                this.compile(binary.left);
+                this.compile(binary.right);
+                this.emit(opCode, -1, this.constant(binary.operator));
+                return this.size - 2;
+            }
+        }
+
+        this.compile(condition);
+        return this.emitJump(OpCode.JUMP_IF_FALSE);
+    }
+
+    // ===== STATEMENT VISITOR METHODS =====
+
+    @Override
+    public Void visitVarDeclStmt (Stmt.VarDeclStmt varDeclStmt) {
+        if (varDeclStmt.expression == null) {
+            this.emit(OpCode.CONSTANT, this.constant(Environment.UNINITIALIZED));
+        } else {
+            this.compile(varDeclStmt.expression);
+        }
+        if (this.registers) {
+            RegisterScope scope = this.registerScopes.get(this.registerScopes.size() - 1);
+            this.emit(OpCode.DEFINE_REGISTER, scope.base + varDeclStmt.slot);
+        } else {
+            this.emit(OpCode.DEFINE, varDeclStmt.slot, this.constant(varDeclStmt.identifier.literal));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitFunDeclStmt (Stmt.FunDeclStmt funDeclStmt) {
+        // never in registers: the enclosing scope declares a function
+        CompiledFunction function = compile(funDeclStmt.identifier, funDeclStmt.parameters, funDeclStmt.body, funDeclStmt.locals, funDeclStmt.enclosesFunction);
+        this.emit(OpCode.CLOSURE, this.constant(function));
+        this.emit(OpCode.DEFINE, funDeclStmt.slot, this.constant(funDeclStmt.identifier.lexeme));
+        return null;
+    }
+
+    @Override
+    public Void visitBlockStmt (Stmt.BlockStmt blockStmt) {
+        this.scope(blockStmt.locals, blockStmt.enclosesFunction, () -> {
+            for (var declaration : blockStmt.declarations) {
+                this.compile(declaration);
+            }
+        });
+        return null;
+    }
+
+    /**
+     * Compiles `body` in a scope of its own, in registers unless a function
+     * declared in it could capture its variables, or in the current scope if
+     * it declares nothing (see `Resolver`).
+     */
+    private void scope (String[] locals, boolean enclosesFunction, Runnable body) {
+        if (locals.length == 0) {
+            body.run();
+            return;
+        }
+        if (this.registers || !enclosesFunction) {
+            boolean registers = this.registers;
+            int count = locals.length;
+            this.emit(OpCode.PUSH_REGISTERS, count);
+            this.registers = true;
+            this.registerScopes.add(new RegisterScope(locals, this.registerCount));
+            this.registerCount += count;
+            body.run();
+            this.registerCount -= count;
+            this.registerScopes.remove(this.registerScopes.size() - 1);
+            this.registers = registers;
+            this.emit(OpCode.POP_REGISTERS, count);
+            return;
+        }
+
+        this.emit(OpCode.PUSH_SCOPE, this.constant(locals));
+        this.scopes++;
+        body.run();
+        this.scopes--;
+        this.emit(OpCode.POP_SCOPE);
+    }
+
+    @Override
+    public Void visitExpressionStmt (Stmt.ExpressionStmt exprStmt) {
+        this.effect(exprStmt.expression);
+        return null;
+    }
+
+    /**
+     * Compiles an expression whose value is not used.
+     */
+    private void effect (Expr expression) {
+        if (expression instanceof Expr.Assignment assignment && this.emitIncrement(assignment)) {
+            return;
+        }
+        if (expression instanceof Expr.Assignment assignment) {
+            this.compile(assignment.right);
+            this.emitVariable(OpCode.STORE, OpCode.STORE_REGISTER, assignment.depth, assignment.slot, assignment.variable);
+            return;
+        }
+
+        this.compile(expression);
+        this.emit(OpCode.POP);
+    }
+
+    @Override
+    public Void visitPrintStmt (Stmt.PrintStmt printStmt) {
+        this.compile(printStmt.expression);
+        this.emit(OpCode.PRINT);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt (Stmt.ReturnStmt returnStmt) {
+        this.compile(returnStmt.expression);
+        this.emit(OpCode.RETURN);
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt (Stmt.IfStmt ifStmt) {
+        List<Integer> exits = new ArrayList<>();
+
+        int next = this.emitJumpIfFalse(ifStmt.condition);
+        this.compile(ifStmt.statement);
+        exits.add(this.emitJump(OpCode.JUMP));
+        this.patch(next);
+
+        for (var elseIf : ifStmt.elseIfStatements) {
+            next = this.emitJumpIfFalse(elseIf.condition);
+            this.compile(elseIf.statement);
+            exits.add(this.emitJump(OpCode.JUMP));
+            this.patch(next);
+        }
+
+        if (ifStmt.elseStatement != null) {
+            this.compile(ifStmt.elseStatement);
+        }
+        for (int exit : exits) {
+            this.patch(exit);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt (Stmt.WhileStmt whileStmt) {
+        int start = this.size;
+        int exit = this.emitJumpIfFalse(whileStmt.condition);
+
+        Loop loop = new Loop(start, this.scopes, this.registerCount);
+        this.loops.add(loop);
+        int bodyStart = this.size;
+        this.compile(whileStmt.statement);
+        int bodyEnd = this.size;
+        this.loops.remove(this.loops.size() - 1);
+
+        this.emit(OpCode.JUMP, start);
+        this.patch(exit);
+        for (int jump : loop.breakJumps) {
+            this.patch(jump);
+        }
+        this.loopTable.add(new int[] { bodyStart, bodyEnd, start, this.size, loop.scopes, loop.registers });
+        return null;
+    }
+
+    @Override
+    public Void visitForStmt (Stmt.ForStmt forStmt) {
+        this.scope(forStmt.locals, forStmt.enclosesFunction, () -> {
+            if (forStmt.initializer != null) {
+                this.compile(forStmt.initializer);
+            }
+
+            // the increment comes first, so that it is where a `continue`
+            // continues before the body is compiled
+            int continueTarget = this.size;
+            if (forStmt.increment != null) {
+                int entry = this.emitJump(OpCode.JUMP);
+                continueTarget = this.size;
+                this.effect(forStmt.increment);
+                this.patch(entry);
+            }
+            int exit = this.emitJumpIfFalse(forStmt.condition);
+
+            Loop loop = new Loop(continueTarget, this.scopes, this.registerCount);
+            this.loops.add(loop);
+            int bodyStart = this.size;
+            this.compile(forStmt.statement);
+            int bodyEnd = this.size;
+            this.loops.remove(this.loops.size() - 1);
+
+            this.emit(OpCode.JUMP, continueTarget);
+            this.patch(exit);
+            for (int jump : loop.breakJumps) {
+                this.patch(jump);
+            }
+            this.loopTable.add(new int[] { bodyStart, bodyEnd, continueTarget, this.size, loop.scopes, loop.registers });
+        });
+        return null;
+    }
+
+    @Override
+    public Void visitSingleKeywordStmt (Stmt.SingleKeywordStmt singleKeywordStmt) {
+        LoxToken keyword = singleKeywordStmt.keyword;
+        if (keyword.type != LoxTokenType.BREAK && keyword.type != LoxTokenType.CONTINUE) {
+            return null;
+        }
+
+        if (this.loops.isEmpty()) {
+            this.emit(OpCode.SIGNAL, this.constant(keyword));
+            return null;
+        }
+
+        Loop loop = this.loops.get(this.loops.size() - 1);
+        if (this.registerCount > loop.registers) {
+            this.emit(OpCode.POP_REGISTERS, this.registerCount - loop.registers);
+            // the jump leaves the registers of the scopes it exits
+            this.stack += this.registerCount - loop.registers;
+        }
+        for (int i = loop.scopes; i < this.scopes; i++) {
+            this.emit(OpCode.POP_SCOPE);
+        }
+        if (keyword.type == LoxTokenType.BREAK) {
+            loop.breakJumps.add(this.emitJump(OpCode.JUMP));
+        } else {
+            this.emit(OpCode.JUMP, loop.continueTarget);
+        }
+        return null;
+    }
+
+    // ===== EXPRESSION VISITOR METHODS =====
+
+    @Override
+    public Void visitAssignmentExpr (Expr.Assignment assignment) {
+        this.compile(assignment.right);
+        this.emitVariable(OpCode.SET, OpCode.SET_REGISTER, assignment.depth, assignment.slot, assignment.variable);
+        return null;
+    }
+
+    @Override
+    public Void visitAnonymousFuncExpr (Expr.AnonymousFunc anonymousFunc) {
+        CompiledFunction function = compile(null, anonymousFunc.parameters, anonymousFunc.body, anonymousFunc.locals, anonymousFunc.enclosesFunction);
+        this.emit(OpCode.CLOSURE, this.constant(function));
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr (Expr.Grouping group) {
+        this.compile(group.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr (Expr.Binary binary) {
+        LoxToken operator = binary.operator;
+        this.compile(binary.left);
+
+        if (binary.right instanceof Expr.Literal literal && literal.token.literal != null) {
+            if (operator.type == LoxTokenType.PLUS) {
+                this.emit(OpCode.ADD_CONSTANT, this.constant(literal.token.literal), this.constant(operator));
+                return null;
+            } else if (operator.type == LoxTokenType.MINUS) {
+                this.emit(OpCode.SUBTRACT_CONSTANT, this.constant(literal.token.literal), this.constant(operator));
+                return null;
+            }
+        }
+        this.compile(binary.right);
+
+        int opCode;
+        switch (operator.type) {
+            case PLUS: opCode = OpCode.ADD; break;
+            case MINUS: opCode = OpCode.SUBTRACT; break;
+            case STAR: opCode = OpCode.MULTIPLY; break;
+            case SLASH: opCode = OpCode.DIVIDE; break;
+            case LESS: opCode = OpCode.LESS; break;
+            case GREATER: opCode = OpCode.GREATER; break;
+            case LESS_EQUAL: opCode = OpCode.LESS_EQUAL; break;
+            case GREATER_EQUAL: opCode = OpCode.GREATER_EQUAL; break;
+            case EQUAL_EQUAL: opCode = OpCode.EQUAL; break;
+            case BANG_EQUAL: opCode = OpCode.NOT_EQUAL; break;
+            default:
+                throw new RuntimeError(operator, "invalid binary operator");
+        }
+        this.emit(opCode, this.constant(operator));
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr (Expr.Logical logical) {
+        this.compile(logical.left);
+        int jump = this.emitJump(logical.operator.type == LoxTokenType.OR ? OpCode.JUMP_IF_TRUE_OR_POP : OpCode.JUMP_IF_FALSE_OR_POP);
+        this.compile(logical.right);
+        this.patch(jump);
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr (Expr.Unary unary) {
+        this.compile(unary.right);
+
+        LoxToken operator = unary.operator;
+        switch (operator.type) {
+            case MINUS:
+                this.emit(OpCode.NEGATE, this.constant(operator));
+                break;
+            case BANG:
+                this.emit(OpCode.NOT);
+                break;
+            default:
+                throw new RuntimeError(operator, "invalid unary operator");
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr (Expr.Call call) {
+        this.compile(call.callee);
+        for (var argument : call.arguments) {
+            this.compile(argument);
+        }
+        this.emit(OpCode.CALL, call.arguments.size(), this.constant(call.paren));
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr (Expr.Literal literal) {
+        if (literal.token.literal == null) {
+            this.emit(OpCode.NIL);
+        } else {
+            this.emit(OpCode.CONSTANT, this.constant(literal.token.literal));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr (Expr.Variable variable) {
+        this.emitVariable(OpCode.GET, OpCode.GET_REGISTER, variable.depth, variable.slot, variable.token);
+        return null;
+    }
+}
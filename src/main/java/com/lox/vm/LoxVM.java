@@ -0,0 +1,594 @@
+package com.lox.vm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.lox.interpreter.Environment;
+import com.lox.interpreter.LoxEngine;
+import com.lox.interpreter.LoxInterpreter;
+import com.lox.interpreter.Resolver;
+import com.lox.interpreter.exceptions.Return;
+import com.lox.interpreter.exceptions.RuntimeError;
+import com.lox.lexer.LoxToken;
+import com.lox.lexer.LoxTokenType;
+import com.lox.lexer.SymbolTable;
+import com.lox.parser.ast.LoxCallable;
+import com.lox.parser.ast.Stmt;
+import com.lox.parser.exceptions.SyntaxError;
+
+/**
+ * An engine that compiles programs to bytecode (see `Compiler`) and runs them
+ * in a single dispatch loop with an operand stack and its own call frames,
+ * instead of walking the AST with one virtual call per node and a Java stack
+ * frame per Lox call.
+ *
+ * Variables of functions and blocks that no closure can capture live in
+ * registers at the bottom of their call's stack frame; the others live in the
+ * same `Environment`s as in the `LoxInterpreter`. Both use the slots the
+ * `Resolver` assigned, so the engines agree on scoping and on the errors they
+ * report. A `break` or `continue` in a function that is called from a loop
+ * exits that loop, as it does in the `LoxInterpreter`.
+ *
+ * The stack holds NaN-boxed values (see `Value`) with the objects among them
+ * in a parallel array, so arithmetic on registers and operands allocates
+ * nothing. Values are only boxed where they leave the stack: into an
+ * `Environment`, a native function or `print`.
+ */
+public class LoxVM implements LoxEngine {
+    static final private int MAX_FRAMES = 1 << 16;
+
+    /** The state of a call that is running or waiting for a callee. */
+    static final private class Frame {
+        CompiledFunction function;
+        int pc;
+        Environment environment;
+        // scopes opened by blocks since the call
+        int scopes;
+        // offset of the first argument (and register) on the stack, the
+        // callee is below it
+        int base;
+    }
+
+    final private Resolver resolver = new Resolver();
+    final private Environment globals = new Environment();
+    final private Environment script;
+
+    // slots above the top of the stack are not cleared, they are overwritten;
+    // `objects[i]` is the object of `stack[i]` if that is `Value.OBJECT`
+    private long[] stack = new long[256];
+    private Object[] objects = new Object[256];
+    private Frame[] frames = new Frame[16];
+
+    /**
+     * Names in the programs run by this VM must be interned in `symbols`.
+     */
+    public LoxVM (SymbolTable symbols) {
+        this.globals.define(symbols.intern("clock"), new LoxCallable() {
+            @Override
+            public int arity() { return 0; }
+
+            @Override
+            public Object call(LoxInterpreter interpreter, List<Object> arguments) {
+                return (double)System.currentTimeMillis() / 1000.0;
+            }
+
+            @Override
+            public String toString() { return "<native fn>"; }
+        });
+
+        this.script = new Environment(this.globals);
+        for (int i = 0; i < this.frames.length; i++) {
+            this.frames[i] = new Frame();
+        }
+    }
+
+    @Override
+    public void interpret (List<Stmt> program) {
+        this.resolver.resolve(program);
+        this.run(Compiler.compile(program));
+    }
+
+    // ===== DISPATCH LOOP =====
+
+    private void run (CompiledFunction main) {
+        long[] stack = this.stack;
+        Object[] objects = this.objects;
+        int sp = 0;
+        int frameCount = 1;
+
+        Frame frame = this.frames[0];
+        frame.function = main;
+        frame.pc = 0;
+        frame.environment = this.script;
+        frame.scopes = 0;
+        frame.base = 0;
+        if (main.maxStack > stack.length) {
+            stack = this.stack = Arrays.copyOf(stack, main.maxStack * 2);
+            objects = this.objects = Arrays.copyOf(objects, main.maxStack * 2);
+        }
+
+        int[] code = main.code;
+        Object[] constants = main.constants;
+        long[] values = main.values;
+        Environment environment = this.script;
+        int base = 0;
+        int pc = 0;
+
+        while (true) {
+            switch (code[pc++]) {
+                case OpCode.CONSTANT: {
+                    int constant = code[pc++];
+                    stack[sp] = values[constant];
+                    objects[sp++] = constants[constant];
+                    break;
+                }
+                case OpCode.NIL:
+                    stack[sp++] = Value.NIL;
+                    break;
+                case OpCode.POP:
+                    sp--;
+                    break;
+                case OpCode.PRINT:
+                    sp--;
+                    System.out.println(Value.box(stack[sp], objects[sp]));
+                    break;
+
+                // ===== VARIABLES =====
+
+                case OpCode.GET: {
+                    int depth = code[pc++];
+                    int slot = code[pc++];
+                    Object value = environment.use(depth, slot, (LoxToken)constants[code[pc++]]);
+                    stack[sp] = Value.of(value);
+                    objects[sp++] = value;
+                    break;
+                }
+                case OpCode.SET: {
+                    int depth = code[pc++];
+                    int slot = code[pc++];
+                    environment.assign(depth, slot, (LoxToken)constants[code[pc++]], Value.box(stack[sp - 1], objects[sp - 1]));
+                    break;
+                }
+                case OpCode.STORE: {
+                    int depth = code[pc++];
+                    int slot = code[pc++];
+                    sp--;
+                    environment.assign(depth, slot, (LoxToken)constants[code[pc++]], Value.box(stack[sp], objects[sp]));
+                    break;
+                }
+                case OpCode.DEFINE: {
+                    int slot = code[pc++];
+                    sp--;
+                    environment.define(slot, (String)constants[code[pc++]], Value.box(stack[sp], objects[sp]));
+                    break;
+                }
+                case OpCode.PUSH_SCOPE:
+                    environment = new Environment(environment, (String[])constants[code[pc++]]);
+                    frame.scopes++;
+                    break;
+                case OpCode.POP_SCOPE:
+                    environment = environment.getEnclosing();
+                    frame.scopes--;
+                    break;
+                case OpCode.GET_REGISTER: {
+                    int register = base + code[pc];
+                    long value = stack[register];
+                    if (value == Value.UNDECLARED || value == Value.UNINITIALIZED) {
+                        Object object = use(stack, objects, base, code[pc], (int[])constants[code[pc + 2]], (LoxToken)constants[code[pc + 1]], environment);
+                        stack[sp] = Value.of(object);
+                        objects[sp] = object;
+                    } else {
+                        stack[sp] = value;
+                        objects[sp] = objects[register];
+                    }
+                    sp++;
+                    pc += 3;
+                    break;
+                }
+                case OpCode.SET_REGISTER:
+                case OpCode.STORE_REGISTER: {
+                    int register = base + code[pc];
+                    if (stack[register] == Value.UNDECLARED) {
+                        assign(stack, objects, base, (int[])constants[code[pc + 2]], (LoxToken)constants[code[pc + 1]], environment, stack[sp - 1], objects[sp - 1]);
+                    } else {
+                        stack[register] = stack[sp - 1];
+                        objects[register] = objects[sp - 1];
+                    }
+                    if (code[pc - 1] == OpCode.STORE_REGISTER) {
+                        sp--;
+                    }
+                    pc += 3;
+                    break;
+                }
+                case OpCode.DEFINE_REGISTER: {
+                    int register = base + code[pc++];
+                    sp--;
+                    stack[register] = stack[sp];
+                    objects[register] = objects[sp];
+                    break;
+                }
+                case OpCode.PUSH_REGISTERS:
+                    for (int end = sp + code[pc++]; sp < end; sp++) {
+                        stack[sp] = Value.UNDECLARED;
+                    }
+                    break;
+                case OpCode.POP_REGISTERS:
+                    sp -= code[pc++];
+                    break;
+                case OpCode.INCREMENT:
+                case OpCode.DECREMENT: {
+                    int register = base + code[pc];
+                    long value = stack[register];
+                    long right = values[code[pc + 1]];
+                    if (Value.isNumber(value) && Value.isNumber(right)) {
+                        stack[register] = Value.number(code[pc - 1] == OpCode.INCREMENT
+                            ? Value.asNumber(value) + Value.asNumber(right)
+                            : Value.asNumber(value) - Value.asNumber(right));
+                    } else {
+                        increment(stack, objects, base, code, pc, constants, environment);
+                    }
+                    pc += 6;
+                    break;
+                }
+
+                // ===== OPERATORS =====
+
+                case OpCode.ADD: {
+                    sp--;
+                    long right = stack[sp];
+                    long left = stack[sp - 1];
+                    if (Value.isNumber(left) && Value.isNumber(right)) {
+                        stack[sp - 1] = Value.number(Value.asNumber(left) + Value.asNumber(right));
+                    } else if (left == Value.OBJECT && right == Value.OBJECT && objects[sp - 1] instanceof String l && objects[sp] instanceof String r) {
+                        objects[sp - 1] = l + r;
+                    } else {
+                        throw new RuntimeError((LoxToken)constants[code[pc]], "operands must be of type: 'String' or 'Number'");
+                    }
+                    pc++;
+                    break;
+                }
+                case OpCode.ADD_CONSTANT: {
+                    int constant = code[pc++];
+                    long right = values[constant];
+                    long left = stack[sp - 1];
+                    if (Value.isNumber(left) && Value.isNumber(right)) {
+                        stack[sp - 1] = Value.number(Value.asNumber(left) + Value.asNumber(right));
+                    } else if (left == Value.OBJECT && objects[sp - 1] instanceof String l && constants[constant] instanceof String r) {
+                        objects[sp - 1] = l + r;
+                    } else {
+                        throw new RuntimeError((LoxToken)constants[code[pc]], "operands must be of type: 'String' or 'Number'");
+                    }
+                    pc++;
+                    break;
+                }
+                case OpCode.SUBTRACT_CONSTANT: {
+                    double right = number(values[code[pc++]], constants[code[pc]]);
+                    stack[sp - 1] = Value.number(number(stack[sp - 1], constants[code[pc++]]) - right);
+                    break;
+                }
+                case OpCode.SUBTRACT: {
+                    double right = number(stack[--sp], constants[code[pc]]);
+                    stack[sp - 1] = Value.number(number(stack[sp - 1], constants[code[pc++]]) - right);
+                    break;
+                }
+                case OpCode.MULTIPLY: {
+                    double right = number(stack[--sp], constants[code[pc]]);
+                    stack[sp - 1] = Value.number(number(stack[sp - 1], constants[code[pc++]]) * right);
+                    break;
+                }
+                case OpCode.DIVIDE: {
+                    double right = number(stack[--sp], constants[code[pc]]);
+                    stack[sp - 1] = Value.number(number(stack[sp - 1], constants[code[pc++]]) / right);
+                    break;
+                }
+                case OpCode.LESS: {
+                    double right = number(stack[--sp], constants[code[pc]]);
+                    stack[sp - 1] = Value.bool(number(stack[sp - 1], constants[code[pc++]]) < right);
+                    break;
+                }
+                case OpCode.LESS_EQUAL: {
+                    double right = number(stack[--sp], constants[code[pc]]);
+                    stack[sp - 1] = Value.bool(number(stack[sp - 1], constants[code[pc++]]) <= right);
+                    break;
+                }
+                case OpCode.GREATER: {
+                    double right = number(stack[--sp], constants[code[pc]]);
+                    stack[sp - 1] = Value.bool(number(stack[sp - 1], constants[code[pc++]]) > right);
+                    break;
+                }
+                case OpCode.GREATER_EQUAL: {
+                    double right = number(stack[--sp], constants[code[pc]]);
+                    stack[sp - 1] = Value.bool(number(stack[sp - 1], constants[code[pc++]]) >= right);
+                    break;
+                }
+                case OpCode.EQUAL:
+                    sp--;
+                    stack[sp - 1] = Value.bool(Value.isEqual(stack[sp - 1], objects[sp - 1], stack[sp], objects[sp]));
+                    pc++;
+                    break;
+                case OpCode.NOT_EQUAL:
+                    sp--;
+                    stack[sp - 1] = Value.bool(!Value.isEqual(stack[sp - 1], objects[sp - 1], stack[sp], objects[sp]));
+                    pc++;
+                    break;
+                case OpCode.NEGATE: {
+                    long right = stack[sp - 1];
+                    if (!Value.isNumber(right)) {
+                        throw new RuntimeError((LoxToken)constants[code[pc]], "operand must be of type: 'Number'");
+                    }
+                    stack[sp - 1] = Value.number(-Value.asNumber(right));
+                    pc++;
+                    break;
+                }
+                case OpCode.NOT:
+                    stack[sp - 1] = Value.bool(!Value.isTruthy(stack[sp - 1]));
+                    break;
+
+                // ===== CONTROL FLOW =====
+
+                case OpCode.JUMP:
+                    pc = code[pc];
+                    break;
+                case OpCode.JUMP_IF_FALSE:
+                    if (Value.isTruthy(stack[--sp])) {
+                        pc++;
+                    } else {
+                        pc = code[pc];
+                    }
+                    break;
+                case OpCode.JUMP_IF_FALSE_OR_POP:
+                    if (Value.isTruthy(stack[sp - 1])) {
+                        sp--;
+                        pc++;
+                    } else {
+                        pc = code[pc];
+                    }
+                    break;
+                case OpCode.JUMP_IF_TRUE_OR_POP:
+                    if (Value.isTruthy(stack[sp - 1])) {
+                        pc = code[pc];
+                    } else {
+                        sp--;
+                        pc++;
+                    }
+                    break;
+                case OpCode.JUMP_IF_NOT_LESS: {
+                    double right = number(stack[--sp], constants[code[pc + 1]]);
+                    double left = number(stack[--sp], constants[code[pc + 1]]);
+                    pc = left < right ? pc + 2 : code[pc];
+                    break;
+                }
+                case OpCode.JUMP_IF_NOT_LESS_EQUAL: {
+                    double right = number(stack[--sp], constants[code[pc + 1]]);
+                    double left = number(stack[--sp], constants[code[pc + 1]]);
+                    pc = left <= right ? pc + 2 : code[pc];
+                    break;
+                }
+                case OpCode.JUMP_IF_NOT_GREATER: {
+                    double right = number(stack[--sp], constants[code[pc + 1]]);
+                    double left = number(stack[--sp], constants[code[pc + 1]]);
+                    pc = left > right ? pc + 2 : code[pc];
+                    break;
+                }
+                case OpCode.JUMP_IF_NOT_GREATER_EQUAL: {
+                    double right = number(stack[--sp], constants[code[pc + 1]]);
+                    double left = number(stack[--sp], constants[code[pc + 1]]);
+                    pc = left >= right ? pc + 2 : code[pc];
+                    break;
+                }
+                case OpCode.SIGNAL: {
+                    LoxToken keyword = (LoxToken)constants[code[pc++]];
+
+                    // unwind to the innermost loop around a call
+                    int loop = -1;
+                    while (loop < 0) {
+                        if (--frameCount == 0) {
+                            String name = keyword.type == LoxTokenType.BREAK ? "break" : "continue";
+                            throw new SyntaxError(keyword, "cannot use '" + name + "' outside a loop");
+                        }
+                        frame = this.frames[frameCount - 1];
+                        // the caller's `pc` is past its `CALL`
+                        loop = frame.function.loopAt(frame.pc - 1);
+                    }
+
+                    int[] loops = frame.function.loops;
+                    environment = frame.environment;
+                    for (; frame.scopes > loops[loop + 4]; frame.scopes--) {
+                        environment = environment.getEnclosing();
+                    }
+                    base = frame.base;
+                    sp = base + loops[loop + 5];
+                    code = frame.function.code;
+                    constants = frame.function.constants;
+                    values = frame.function.values;
+                    pc = keyword.type == LoxTokenType.BREAK ? loops[loop + 3] : loops[loop + 2];
+                    break;
+                }
+
+                // ===== FUNCTIONS =====
+
+                case OpCode.CLOSURE:
+                    stack[sp] = Value.OBJECT;
+                    objects[sp++] = new Closure((CompiledFunction)constants[code[pc++]], environment);
+                    break;
+                case OpCode.CALL: {
+                    int count = code[pc++];
+                    LoxToken paren = (LoxToken)constants[code[pc++]];
+                    Object callee = stack[sp - count - 1] == Value.OBJECT ? objects[sp - count - 1] : null;
+
+                    if (callee instanceof Closure closure) {
+                        CompiledFunction function = closure.function;
+                        if (count != function.arity) {
+                            throw new RuntimeError(paren, "Expected " + function.arity + " arguments but got " + count);
+                        }
+
+                        // save the caller
+                        frame.pc = pc;
+                        frame.environment = environment;
+                        if (frameCount == this.frames.length) {
+                            this.growFrames();
+                        }
+                        base = sp - count;
+                        if (base + function.maxStack > stack.length) {
+                            stack = this.stack = Arrays.copyOf(stack, (base + function.maxStack) * 2);
+                            objects = this.objects = Arrays.copyOf(objects, (base + function.maxStack) * 2);
+                        }
+
+                        if (function.registers) {
+                            environment = closure.closure;
+                            for (sp = base + count; sp < base + function.locals.length; sp++) {
+                                stack[sp] = Value.UNDECLARED;
+                            }
+                        } else {
+                            environment = new Environment(closure.closure, function.locals);
+                            for (int i = 0; i < count; i++) {
+                                environment.define(i, function.locals[i], Value.box(stack[base + i], objects[base + i]));
+                            }
+                            sp = base;
+                        }
+
+                        frame = this.frames[frameCount++];
+                        frame.function = function;
+                        frame.scopes = 0;
+                        frame.base = base;
+                        code = function.code;
+                        constants = function.constants;
+                        values = function.values;
+                        pc = 0;
+                    } else if (callee instanceof LoxCallable callable) {
+                        if (count != callable.arity()) {
+                            throw new RuntimeError(paren, "Expected " + callable.arity() + " arguments but got " + count);
+                        }
+
+                        List<Object> arguments = new ArrayList<>(count);
+                        for (int i = sp - count; i < sp; i++) {
+                            arguments.add(Value.box(stack[i], objects[i]));
+                        }
+                        sp -= count;
+                        Object result = callable.call(null, arguments);
+                        stack[sp - 1] = Value.of(result);
+                        objects[sp - 1] = result;
+                    } else {
+                        throw new RuntimeError(paren, "can only call functions and classes");
+                    }
+                    break;
+                }
+                case OpCode.RETURN: {
+                    sp--;
+                    long value = stack[sp];
+                    Object object = objects[sp];
+                    if (--frameCount == 0) {
+                        if (code == main.code && pc == code.length) {
+                            // the end of the program
+                            return;
+                        }
+                        // like the `LoxInterpreter`, a `return` outside of a function escapes
+                        throw new Return(Value.box(value, object));
+                    }
+
+                    // drop the callee's frame and the callee
+                    sp = base - 1;
+                    frame = this.frames[frameCount - 1];
+                    code = frame.function.code;
+                    constants = frame.function.constants;
+                    values = frame.function.values;
+                    environment = frame.environment;
+                    base = frame.base;
+                    pc = frame.pc;
+                    stack[sp] = value;
+                    objects[sp++] = object;
+                    break;
+                }
+                default:
+                    throw new IllegalStateException("invalid opcode " + code[pc - 1]);
+            }
+        }
+    }
+
+    /**
+     * Looks up a variable whose register is undeclared or uninitialized, the
+     * way `Environment.use(int, int, LoxToken)` does.
+     */
+    private static Object use (long[] stack, Object[] objects, int base, int register, int[] fallbacks, LoxToken variable, Environment environment) {
+        int slot = base + register;
+        for (int i = 0; stack[slot] == Value.UNDECLARED && i < fallbacks.length; i++) {
+            slot = base + fallbacks[i];
+        }
+        if (stack[slot] == Value.UNDECLARED) {
+            return environment.use(variable);
+        } else if (stack[slot] == Value.UNINITIALIZED) {
+            throw new RuntimeError(variable, "variable is uninitialized before use");
+        }
+        return Value.box(stack[slot], objects[slot]);
+    }
+
+    /**
+     * Assigns a variable whose register is undeclared, the way
+     * `Environment.assign(int, int, LoxToken, Object)` does.
+     */
+    private static void assign (long[] stack, Object[] objects, int base, int[] fallbacks, LoxToken variable, Environment environment, long value, Object object) {
+        for (int register : fallbacks) {
+            if (stack[base + register] != Value.UNDECLARED) {
+                stack[base + register] = value;
+                objects[base + register] = object;
+                return;
+            }
+        }
+        environment.assign(variable, Value.box(value, object));
+    }
+
+    /**
+     * Runs an `INCREMENT` or `DECREMENT` at `pc` whose variable or constant is
+     * not a number, as the instructions it replaces would.
+     */
+    private static void increment (long[] stack, Object[] objects, int base, int[] code, int pc, Object[] constants, Environment environment) {
+        int register = code[pc];
+        Object right = constants[code[pc + 1]];
+        LoxToken operator = (LoxToken)constants[code[pc + 2]];
+        int[] fallbacks = (int[])constants[code[pc + 5]];
+
+        long current = stack[base + register];
+        Object left = current == Value.UNDECLARED || current == Value.UNINITIALIZED
+            ? use(stack, objects, base, register, fallbacks, (LoxToken)constants[code[pc + 3]], environment)
+            : Value.box(current, objects[base + register]);
+
+        Object value;
+        if (code[pc - 1] == OpCode.DECREMENT) {
+            double subtrahend = number(Value.of(right), operator);
+            value = number(Value.of(left), operator) - subtrahend;
+        } else if (left instanceof Double && right instanceof Double) {
+            value = (Double)left + (Double)right;
+        } else if (left instanceof String && right instanceof String) {
+            value = (String)left + (String)right;
+        } else {
+            throw new RuntimeError(operator, "operands must be of type: 'String' or 'Number'");
+        }
+
+        if (stack[base + register] == Value.UNDECLARED) {
+            assign(stack, objects, base, fallbacks, (LoxToken)constants[code[pc + 4]], environment, Value.of(value), value);
+        } else {
+            stack[base + register] = Value.of(value);
+            objects[base + register] = value;
+        }
+    }
+
+    private static double number (long operand, Object operator) {
+        if (!Value.isNumber(operand)) {
+            throw new RuntimeError((LoxToken)operator, "operands must be of type: 'Number'");
+        }
+        return Value.asNumber(operand);
+    }
+
+    private void growFrames () {
+        if (this.frames.length == MAX_FRAMES) {
+            // where the `LoxInterpreter` would have run out of Java stack
+            throw new StackOverflowError();
+        }
+        int length = this.frames.length;
+        this.frames = Arrays.copyOf(this.frames, length * 2);
+        for (int i = length; i < this.frames.length; i++) {
+            this.frames[i] = new Frame();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.lox.vm;
+
+/**
+ * The instructions of the `LoxVM`. Each instruction is an opcode followed by
+ * its operands in the `code` array of a `CompiledFunction`; operands named
+ * `constant` index its constant pool, where `token` operands point at the
+ * token a runtime error is reported at.
+ *
+ * `STORE`, `INCREMENT`, `DECREMENT`, `ADD_CONSTANT`, `SUBTRACT_CONSTANT`
+ * and the `JUMP_IF_NOT_*` instructions each do the work of two or three
+ * others, for the assignments, counters and loop conditions that make up most
+ * hot loops.
+ */
+final class OpCode {
+    private OpCode () {}
+
+    // ===== VALUES =====
+
+    /** `constant` -> push the constant */
+    static final int CONSTANT = 0;
+    /** push `nil` */
+    static final int NIL = 1;
+    /** pop a value */
+    static final int POP = 2;
+    /** pop a value and print it */
+    static final int PRINT = 3;
+
+    // ===== VARIABLES =====
+
+    /** `depth slot token` -> push the variable (see `Environment.use(int, int, LoxToken)`) */
+    static final int GET = 4;
+    /** `depth slot token` -> assign the variable the value on top of the stack */
+    static final int SET = 5;
+    /** `depth slot token` -> pop a value and assign it to the variable */
+    static final int STORE = 29;
+    /** `slot name` -> pop a value and declare a variable in the current scope */
+    static final int DEFINE = 6;
+    /** `locals` -> enter a block's scope */
+    static final int PUSH_SCOPE = 7;
+    /** leave a block's scope */
+    static final int POP_SCOPE = 8;
+    /**
+     * `register token fallbacks` -> push the variable in the register, or in
+     * the first declared of the `fallbacks` registers, or by name
+     */
+    static final int GET_REGISTER = 36;
+    /** `register token fallbacks` -> assign the variable the value on top of the stack */
+    static final int SET_REGISTER = 37;
+    /** `register token fallbacks` -> pop a value and assign it to the variable */
+    static final int STORE_REGISTER = 38;
+    /** `register` -> pop a value and declare the variable in the register */
+    static final int DEFINE_REGISTER = 39;
+    /** `count` -> push `count` registers for a block's variables */
+    static final int PUSH_REGISTERS = 40;
+    /** `count` -> drop the registers of a block's variables */
+    static final int POP_REGISTERS = 41;
+    /**
+     * `register constant operator token variable fallbacks` -> add the constant
+     * to (or subtract it from) the variable in the register, i.e. `GET_REGISTER`,
+     * `ADD_CONSTANT` and `STORE_REGISTER`
+     */
+    static final int INCREMENT = 42;
+    static final int DECREMENT = 43;
+
+    // ===== OPERATORS =====
+
+    /** `token` -> pop two operands and push the result */
+    static final int ADD = 9;
+    static final int SUBTRACT = 10;
+    static final int MULTIPLY = 11;
+    static final int DIVIDE = 12;
+    static final int LESS = 13;
+    static final int LESS_EQUAL = 14;
+    static final int GREATER = 15;
+    static final int GREATER_EQUAL = 16;
+    static final int EQUAL = 17;
+    static final int NOT_EQUAL = 18;
+    /** `constant token` -> add or subtract a constant operand */
+    static final int ADD_CONSTANT = 30;
+    static final int SUBTRACT_CONSTANT = 31;
+    /** `token` -> negate the number on top of the stack */
+    static final int NEGATE = 21;
+    /** replace the value on top of the stack by its negated truthiness */
+    static final int NOT = 22;
+
+    // ===== CONTROL FLOW =====
+
+    /** `target` -> continue at `target` */
+    static final int JUMP = 23;
+    /** `target` -> pop a value and continue at `target` if it is falsy */
+    static final int JUMP_IF_FALSE = 24;
+    /**
+     * `target` -> continue at `target` if the value on top of the stack is
+     * falsy (truthy), and pop it otherwise: the left operand of `and` (`or`)
+     */
+    static final int JUMP_IF_FALSE_OR_POP = 19;
+    static final int JUMP_IF_TRUE_OR_POP = 20;
+    /**
+     * `target token` -> pop two numbers and continue at `target` unless the
+     * comparison holds
+     */
+    static final int JUMP_IF_NOT_LESS = 32;
+    static final int JUMP_IF_NOT_LESS_EQUAL = 33;
+    static final int JUMP_IF_NOT_GREATER = 34;
+    static final int JUMP_IF_NOT_GREATER_EQUAL = 35;
+    /**
+     * `token` -> a `break` or `continue` outside of a loop of the current
+     * function, which exits to the innermost loop of a caller (or fails)
+     */
+    static final int SIGNAL = 25;
+
+    // ===== FUNCTIONS =====
+
+    /** `function` -> push a closure of the function over the current scope */
+    static final int CLOSURE = 26;
+    /** `count token` -> call the callee below the top `count` arguments */
+    static final int CALL = 27;
+    /** pop the return value and return it to the caller */
+    static final int RETURN = 28;
+}
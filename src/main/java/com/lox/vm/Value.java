@@ -0,0 +1,92 @@
+package com.lox.vm;
+
+import com.lox.interpreter.Environment;
+
+/**
+ * The NaN-boxed values of the `LoxVM`: a value is a `long` that is either the
+ * bits of a number, or a quiet NaN whose low bits tag `nil`, the booleans and
+ * the VM's own sentinels. Any other value is an `OBJECT`, kept in the slot of
+ * an `Object[]` that parallels the `long[]` it is stored in.
+ *
+ * Numbers are stored with `Double.doubleToLongBits`, which folds every NaN an
+ * operation produces into one canonical NaN outside of the tagged ones, so
+ * two numbers are equal as values exactly when they are as `Double`s.
+ */
+final class Value {
+    private Value () {}
+
+    static final private long QUIET_NAN = 0x7ffc_0000_0000_0000L;
+    static final private long SIGN = 0x8000_0000_0000_0000L;
+
+    static final long NIL = QUIET_NAN | 1;
+    static final long FALSE = QUIET_NAN | 2;
+    static final long TRUE = QUIET_NAN | 3;
+    /** A register whose declaration has not run yet. */
+    static final long UNDECLARED = QUIET_NAN | 4;
+    /** `Environment.UNINITIALIZED`, a variable declared without a value. */
+    static final long UNINITIALIZED = QUIET_NAN | 5;
+    /** A string, function or other object, see the parallel `Object[]`. */
+    static final long OBJECT = SIGN | QUIET_NAN;
+
+    static boolean isNumber (long value) {
+        return (value & QUIET_NAN) != QUIET_NAN;
+    }
+
+    static long number (double number) {
+        return Double.doubleToLongBits(number);
+    }
+
+    static double asNumber (long value) {
+        return Double.longBitsToDouble(value);
+    }
+
+    static long bool (boolean bool) {
+        return bool ? TRUE : FALSE;
+    }
+
+    /** The truthiness of a value that is not an `OBJECT`, or `true`. */
+    static boolean isTruthy (long value) {
+        return value != NIL && value != FALSE;
+    }
+
+    /**
+     * The value of `object`, or `OBJECT` if it has to be kept as is.
+     */
+    static long of (Object object) {
+        if (object == null) {
+            return NIL;
+        } else if (object instanceof Double number) {
+            return number(number);
+        } else if (object instanceof Boolean bool) {
+            return bool(bool);
+        } else if (object == Environment.UNINITIALIZED) {
+            return UNINITIALIZED;
+        }
+        return OBJECT;
+    }
+
+    /**
+     * The object `value` stands for, where `object` is what the `Object[]`
+     * holds next to it. Numbers are boxed.
+     */
+    static Object box (long value, Object object) {
+        if (isNumber(value)) {
+            return asNumber(value);
+        } else if (value == OBJECT) {
+            return object;
+        } else if (value == NIL) {
+            return null;
+        } else if (value == UNINITIALIZED) {
+            return Environment.UNINITIALIZED;
+        }
+        return value == TRUE;
+    }
+
+    /** `ExprHelper.isEqual` of the values. */
+    static boolean isEqual (long left, Object leftObject, long right, Object rightObject) {
+        if (left == OBJECT && right == OBJECT) {
+            return leftObject.equals(rightObject);
+        }
+        return left == right && left != OBJECT;
+    }
+}
@@ -0,0 +1,238 @@
+package com.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+
+import com.lox.interpreter.LoxInterpreter;
+import com.lox.interpreter.LoxEngine;
+import com.lox.interpreter.exceptions.RuntimeError;
+import com.lox.jit.Jit;
+import com.lox.lexer.LoxToken;
+import com.lox.parser.exceptions.SyntaxError;
+
+import junit.framework.TestCase;
+
+/**
+ * Every engine of `Lox.ENGINES` must print what the `LoxInterpreter` prints
+ * for the same program and fail with the same error at the same token, quirks
+ * included. So must the interpreter when the `Jit` compiles every function it
+ * calls. Where a test gives the expected output, the `LoxInterpreter` must
+ * print it as well.
+ */
+public class EngineConformanceTest extends TestCase {
+
+    public void testExpressions () {
+        assertConforms("print 1 + 2 * 3 - 4 / 2; print -(1 + 2); print \"a\" + \"b\";");
+        assertConforms("print 1 < 2; print 2 <= 1; print 3 > 2; print 3 >= 4; print 1 == 1; print \"a\" != \"a\"; print nil == nil;");
+        assertConforms("print !nil; print !0; print !\"\"; print 1 and nil; print nil or false; print true and 1;");
+        assertConforms("var a = 1; var b; b = a = 2; print a + b; print b = 3;");
+        assertConforms("{ var n = 0 / 0; var z = -0; print n == n; print n; print z == 0; print z; print 1 == \"1\"; print nil == false; print \"a\" + \"b\" == \"ab\"; }");
+    }
+
+    public void testLogicalOperatorsShortCircuit () {
+        String source = "var calls = 0; fun f(x) { calls = calls + 1; return x; } " +
+            "print nil and f(1); print 0 and f(\"a\"); print \"s\" or f(2); print false or f(nil); print calls; " +
+            "fun g(a, b) { if (a != nil and a > b or b) return a or b; return a and b; } print g(1, 0); print g(nil, 2); print g(nil, false);";
+        assertConforms("null\na\ns\nnull\n2.0\n1.0\nnull\nnull\n", source);
+        assertConforms("2.0\n-1.0\nnull\n", "fun h(n) { var m = n > 1 and n - 1; return m or -n; } print h(3); print h(1); print h(0) and nil;");
+    }
+
+    public void testConstantFolding () {
+        assertConforms("print 60 * 60 * 24; print \"a\" + \"b\" + \"c\"; print -(2 - 3) / 0; print 0 / 0 == 0 / 0; print !(1 == 1) or -0; print 1 + 2 < 4 and \"x\";");
+        assertConforms("if (false) print 1; else if (nil) print 2; else if (true) print 3; else print 4; while (false) print 5; for (var i = 0; false;) print i; print 6;");
+        assertConforms("fun f(a) { if (a) return 1; else if (true) return 2; return 3; } print f(true); print f(false);");
+        // errors are raised when and where the operator runs
+        assertEquals("1.0\nRuntimeError: operands must be of type: 'Number' at '-' 1:25", run("tree", "print 1; print 1 + (\"a\" - 1);"));
+        assertConforms("print 1; print 1 + (\"a\" - 1);");
+        assertConforms("fun f() { return -\"a\"; } print 1; f();");
+
+        // streamed input is folded too
+        String source = "print 60 * 60 * 24; if (!true) print 1; while (nil) print 2; print \"a\" + \"b\";";
+        for (var engine : Lox.ENGINES) {
+            assertEquals(engine + ": " + source, run(engine, source), runStreamed(engine, source));
+        }
+    }
+
+    public void testInlining () {
+        assertConforms("fun sq(x) { return x * x; } fun norm(a, b) { return sq(a) + sq(b); } var s = 0; for (var i = 0; i < 5; i = i + 1) s = s + norm(i, sq(i)); print s;");
+        assertConforms("fun sq(x) { return x * x; } print sq(\"a\");");
+        // rebinding the global falls back to calling whatever it holds
+        assertConforms("fun sq(x) { return x * x; } fun g() { return sq(3); } print g(); { fun neg(x) { return -x; } sq = neg; var sq; } print g(); { sq = 1; var sq; } print g();");
+    }
+
+    public void testScopes () {
+        assertConforms("var a = 1; { print a; var a = 2; print a; { a = 3; var b = a; print b; } print a; } print a;");
+        assertConforms("{ var a = 1; { print a; var a = 2; a = a + 1; print a; } a = a - 1; print a; }");
+        assertConforms("var x = \"global\"; { fun f() { print x; } f(); var x = \"local\"; f(); }");
+        assertConforms("fun counter() { var n = 0; return fun () { n = n + 1; return n; }; } var c = counter(); c(); print c();");
+        assertConforms("fun f(a, a) { var b = a; { var a = b + 1; print a; } return a; } print f(1, 2);");
+    }
+
+    public void testControlFlow () {
+        assertConforms("610.0\n", "fun fib(n) { if (n < 2) return n; return fib(n - 1) + fib(n - 2); } print fib(15);");
+        assertConforms("45.0\n", "var s = 0; for (var i = 0; i < 10; i = i + 1) { s = s + i; } print s;");
+        assertConforms("25.0\n", "var s = 0; for (var i = 0; i < 10; i = i + 1) { if (i == 3) continue; if (i > 7) break; s = s + i; } print s;");
+        assertConforms("0.0\n1.0\nxxx\n", "fun f() { var s = \"\"; var i = 0; for (; i < 3;) { var c = i; i = i + 1; s = s + \"x\"; } for (i = 0; i < 2; i = i + 1) print i; return s; } print f();");
+        assertConforms("5.0\n", "fun stop() { continue; } var n = 0; for (var i = 0; i < 5; i = i + 1) { n = n + 1; stop(); n = n + 10; } print n;");
+        assertConforms("3.0\n", "var fs = nil; for (var i = 0; i < 3; i = i + 1) { fun f() { print i; } fs = f; } fs();");
+        assertConforms("52.0\n", "var s = 0; var i = 0; while (i < 10) { i = i + 1; if (i == 3) continue; s = s + i; } print s;");
+        assertConforms("4.0\n", "{ var i = 0; while (true) { var j = i; { var k = j; if (k > 3) break; } i = i + 1; } print i; }");
+        assertConforms("3.0\n", "fun stop() { break; } var i = 0; while (i < 5) { i = i + 1; { var j = i; if (j > 2) stop(); } } print i;");
+        assertConforms("1.0\n2.0\n", "var i = 0; while (i < 3) { var j = 0; while (true) { j = j + 1; { if (j > i) break; } } print j; i = i + 1; { if (i > 1) break; } }");
+        assertConforms("2.0\nxxx\n", "if (nil) print 1; else if (0) print 2; else print 3; var s = \"\"; var n = 3; while (n > 0) { s = s + \"x\"; n = n - 1; } print s;");
+    }
+
+    public void testTailCalls () {
+        // far deeper than the Java stack allows for ordinary calls
+        assertEquals("100000.0\ntrue\n", run("tree",
+            "fun count(n, acc) { if (n == 0) return acc; return count(n - 1, acc + 1); } print count(100000, 0); " +
+            "fun even(n) { if (n == 0) return true; return odd(n - 1); } fun odd(n) { if (n == 0) return false; return even(n - 1); } print even(100001 - 1);"));
+
+        assertConforms("fun f(n) { if (n > 0) return f(n - 1); return n; } print f(10); fun g() { return clock() > 0; } print g(); fun h(a) { return f(); } h(1);");
+        assertConforms("fun stop() { break; } fun tail() { return stop(); } fun loop() { while (true) { return stop(); } } var i = 0; while (i < 3) { i = i + 1; tail(); print i; } print loop();");
+        assertConforms("fun k(n) { var a = n; fun inner() { return a; } if (n > 0) return k(n - 1); return inner(); } print k(5);");
+    }
+
+    public void testFunctionBodies () {
+        assertConforms("fun f() { var a = 1; { print a; var a = 2; a = a + 1; print a; } { a = 5; } return a; } print f(); print f();");
+        assertConforms("fun g(n) { var s = 0; while (true) { n = n - 1; if (n < 0) break; if (n == 2) continue; s = s + n; } return s; } print g(5);");
+        assertConforms("fun f(n) { for (var i = 0; i < n; i = i + 1) { var j = 0; while (true) { { if (j == i and i == 3) return i * 10; } j = j + 1; if (j > i) break; } } } print f(5); print f(2);");
+        assertConforms("fun g(a) { if (a) { return; } else if (a == nil) return nil; return a; } print g(true); print g(nil); print g(false);");
+        assertConforms("fun h(x) { print !x; print x == 1; print x != nil; print -x; } h(1); h(nil);");
+        assertConforms("fun k(a) { print a; print a = \"s\"; return a + 1; } print k(2);");
+        assertConforms("var g = 1; fun m(a) { var b; g = g + a; print g; print b; } m(2);");
+    }
+
+    public void testTypeChanges () {
+        // operators that have only seen numbers must still handle the other types
+        assertSpecializes("add", "fun add(a, b) { return a + b; } print add(1, 2); print add(\"a\", \"b\"); print add(3, 4); print add(1, \"b\");");
+        assertSpecializes("f", "fun f(a) { return a * 2 + -a; } print f(1); print f(2); print f(\"s\");");
+        assertSpecializes("g", "fun g(a) { return 1 + a * 2; } print g(1); var s = \"\"; print g(s);");
+        assertSpecializes("h", "fun h(a, b) { return a < b; } print h(1, 2); print h(nil, 2);");
+    }
+
+    public void testErrors () {
+        assertConforms("print 1 + \"a\";");
+        assertConforms("{ var s = \"a\"; s = s - 1; }");
+        assertConforms("print -\"a\";");
+        assertConforms("{ var a; print a; }");
+        assertConforms("{ fun f() { print b; } f(); var b = 1; }");
+        assertConforms("{ c = 1; var c; }");
+        assertConforms("fun f(a) {} f(1, 2);");
+        assertConforms("var a = 1; a();");
+        assertConforms("print 1; break;");
+        assertConforms("{ print 1; if (true) { continue; } print 2; }");
+        assertConforms("fun f() { { if (true) continue; } print 1; } f();");
+    }
+
+    public void testJitCompilesInlinableFunctions () {
+        Jit jit = new Jit(10);
+        assertEquals("190.0\n", run(jit, "fun add(a, b) { return a + b; } var s = 0; for (var i = 0; i < 20; i = i + 1) s = add(s, i); print s;"));
+        assertEquals(jit.stats(), 1, jit.compiled());
+        assertTrue(jit.stats(), jit.stats().contains("compiled 'add' (numbers: a, b)"));
+    }
+
+    public void testJitDeoptimizes () {
+        String source = "fun f(a, b) { var c = b; while (c > 10) c = c - 10; if (a == nil) return c; return a + c; } " +
+            "print f(3, 4); print f(5, 16); print f(nil, 25); print f(7, 38);";
+        assertConforms(source);
+
+        Jit jit = new Jit(2);
+        run(jit, source);
+        // compiled in the first call, deoptimised on `nil`, compiled again in
+        // that call without speculating on `a`
+        assertEquals(jit.stats(), 2, jit.compiled());
+        assertEquals(jit.stats(), 1, jit.deoptimized());
+        assertTrue(jit.stats(), jit.stats().contains("compiled 'f' (numbers: a, b)"));
+        assertTrue(jit.stats(), jit.stats().contains("compiled 'f' (numbers: b)"));
+    }
+
+    public void testJitLeavesClosuresToTheInterpreter () {
+        Jit jit = new Jit(1);
+        run(jit, "fun counter() { var n = 0; return fun () { n = n + 1; return n; }; } var c = counter(); c(); print c();");
+        assertEquals(jit.stats(), 1, jit.compiled());
+        assertTrue(jit.stats(), jit.stats().contains("not compiling 'counter': it declares a closure"));
+    }
+
+    // ===== HELPERS =====
+
+    /** The output and error of running `source` with an engine. */
+    static String run (String engine, String source) {
+        LoxInterpreter interpreter = new LoxInterpreter();
+        return run(interpreter, Lox.engine(engine, interpreter), source);
+    }
+
+    /** The output and error of running `source` with the interpreter and `jit`. */
+    static String run (Jit jit, String source) {
+        LoxInterpreter interpreter = new LoxInterpreter();
+        interpreter.enableJit(jit);
+        return run(interpreter, interpreter, source);
+    }
+
+    /** Like `run(String, String)`, but streams `source` through a reader. */
+    static String runStreamed (String engine, String source) {
+        LoxInterpreter interpreter = new LoxInterpreter();
+        PrintStream stdout = System.out;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(out));
+        try {
+            interpreter.interpret(new StringReader(source), Lox.engine(engine, interpreter));
+        } finally {
+            System.setOut(stdout);
+        }
+        return out.toString();
+    }
+
+    static String run (LoxInterpreter interpreter, LoxEngine engine, String source) {
+        PrintStream stdout = System.out;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(out));
+        String error = "";
+        try {
+            engine.interpret(interpreter.parse(source));
+        } catch (RuntimeError e) {
+            error = describe(e, e.token);
+        } catch (SyntaxError e) {
+            error = describe(e, e.token);
+        } finally {
+            System.setOut(stdout);
+        }
+        return out + error;
+    }
+
+    static String describe (RuntimeException e, LoxToken token) {
+        return e.getClass().getSimpleName() + ": " + e.getMessage() + " at '" + token.lexeme + "' " + token.line + ":" + token.col;
+    }
+
+    /**
+     * Asserts that `source` conforms and that the `Jit` compiles `function`
+     * for numbers, then deoptimises it.
+     */
+    static void assertSpecializes (String function, String source) {
+        assertConforms(source);
+
+        Jit jit = new Jit(1);
+        run(jit, source);
+        assertTrue(jit.stats(), jit.stats().contains("compiled '" + function + "' (numbers: "));
+        assertTrue(jit.stats(), jit.stats().contains("deoptimized '" + function + "'"));
+        assertEquals(jit.stats(), 1, jit.deoptimized());
+    }
+
+    /** Asserts that `source` prints `expected` with every engine. */
+    static void assertConforms (String expected, String source) {
+        assertEquals("tree: " + source, expected, run("tree", source));
+        assertConforms(source);
+    }
+
+    static void assertConforms (String source) {
+        String expected = run("tree", source);
+        for (var engine : Lox.ENGINES) {
+            assertEquals(engine + ": " + source, expected, run(engine, source));
+        }
+
+        Jit jit = new Jit(1);
+        assertEquals("jit: " + source, expected, run(jit, source));
+        assertEquals(jit.stats(), 0, jit.failed());
+    }
+}
@@ -0,0 +1,100 @@
+package com.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import com.lox.interpreter.LoxInterpreter;
+
+import junit.framework.TestCase;
+
+/**
+ * Statements entered in the REPL run as soon as they are complete.
+ */
+public class ReplBufferTest extends TestCase {
+    private ReplBuffer repl;
+    private ByteArrayOutputStream out;
+    private PrintStream stdout;
+
+    @Override
+    protected void setUp () {
+        this.repl = new ReplBuffer(new LoxInterpreter());
+        this.out = new ByteArrayOutputStream();
+        this.stdout = System.out;
+        System.setOut(new PrintStream(this.out));
+    }
+
+    @Override
+    protected void tearDown () {
+        System.setOut(this.stdout);
+    }
+
+    private String output () {
+        String output = this.out.toString();
+        this.out.reset();
+        return output;
+    }
+
+    public void testStatementsRunWhenComplete () {
+        this.repl.writeLine("print 1; print");
+        assertEquals("1.0\n", this.output());
+        assertFalse(this.repl.isEmpty());
+
+        this.repl.writeLine("2;");
+        assertEquals("2.0\n", this.output());
+        assertTrue(this.repl.isEmpty());
+    }
+
+    public void testMultiLineDeclaration () {
+        this.repl.writeLine("fun add(a, b) {");
+        this.repl.writeLine("    var sum = a + b;");
+        this.repl.writeLine("    return sum;");
+        assertFalse(this.repl.isEmpty());
+
+        this.repl.writeLine("}");
+        assertTrue(this.repl.isEmpty());
+
+        this.repl.writeLine("print add(1, 2);");
+        assertEquals("3.0\n", this.output());
+    }
+
+    public void testMultiLineAnonymousFunction () {
+        this.repl.writeLine("var f = fun (a) {");
+        this.repl.writeLine("    return a;");
+        this.repl.writeLine("}");
+        assertFalse(this.repl.isEmpty());
+
+        this.repl.writeLine(";");
+        assertTrue(this.repl.isEmpty());
+
+        this.repl.writeLine("print f(1);");
+        assertEquals("1.0\n", this.output());
+    }
+
+    public void testStringAcrossLines () {
+        this.repl.writeLine("print \"a;");
+        assertFalse(this.repl.isEmpty());
+
+        this.repl.writeLine("b\";");
+        assertEquals("a;\nb\n", this.output());
+    }
+
+    public void testIfIsHeldForElse () {
+        this.repl.writeLine("if (false) print 1;");
+        assertEquals("", this.output());
+
+        this.repl.writeLine("else print 2; print 3;");
+        assertEquals("2.0\n3.0\n", this.output());
+
+        this.repl.writeLine("if (true) print 4;");
+        this.repl.writeLine("");
+        assertEquals("4.0\n", this.output());
+        assertTrue(this.repl.isEmpty());
+    }
+
+    public void testFlushRunsHeldStatement () {
+        this.repl.writeLine("if (true) { print 5; }");
+        this.repl.flush();
+        assertEquals("5.0\n", this.output());
+        assertTrue(this.repl.isEmpty());
+    }
+}
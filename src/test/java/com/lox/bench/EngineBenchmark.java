@@ -0,0 +1,78 @@
+package com.lox.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.lox.Lox;
+import com.lox.interpreter.LoxEngine;
+import com.lox.interpreter.LoxInterpreter;
+import com.lox.parser.ast.Stmt;
+
+/**
+ * Runs an already parsed program with each of `Lox.ENGINES`. Scores are per
+ * run of the program:
+ *
+ * <pre>
+ * mvn -B test-compile dependency:build-classpath -Dmdep.includeScope=test -Dmdep.outputFile=target/classpath.txt
+ * java -cp target/classes:target/test-classes:$(cat target/classpath.txt) org.openjdk.jmh.Main EngineBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EngineBenchmark {
+    static final String FIB =
+        "fun fib(n) {\n" +
+        "    if (n < 2) return n;\n" +
+        "    return fib(n - 1) + fib(n - 2);\n" +
+        "}\n" +
+        "fib(20);\n";
+
+    static final String LOOP =
+        "{\n" +
+        "    var sum = 0;\n" +
+        "    for (var i = 0; i < 100000; i = i + 1) {\n" +
+        "        sum = sum + i * 2;\n" +
+        "    }\n" +
+        "}\n";
+
+    @Param({ "tree", "vm", "closure", "specializing", "jit" })
+    public String engine;
+
+    private LoxEngine runner;
+    private List<Stmt> fib;
+    private List<Stmt> loop;
+
+    @Setup
+    public void setUp () {
+        LoxInterpreter interpreter = new LoxInterpreter();
+        this.runner = Lox.engine(this.engine, interpreter);
+        this.fib = interpreter.parse(FIB);
+        this.loop = interpreter.parse(LOOP);
+    }
+
+    @Benchmark
+    public void fib () {
+        this.runner.interpret(this.fib);
+    }
+
+    @Benchmark
+    public void loop () {
+        this.runner.interpret(this.loop);
+    }
+}
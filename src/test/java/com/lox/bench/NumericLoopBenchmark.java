@@ -0,0 +1,73 @@
+package com.lox.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.lox.Lox;
+import com.lox.interpreter.LoxEngine;
+import com.lox.interpreter.LoxInterpreter;
+import com.lox.parser.ast.Stmt;
+
+/**
+ * Runs a loop of arithmetic on local variables with each of `Lox.ENGINES`.
+ * Scores are per iteration of the loop, and so is `gc.alloc.rate.norm`, the
+ * bytes allocated per iteration, with the GC profiler:
+ *
+ * <pre>
+ * mvn -B test-compile dependency:build-classpath -Dmdep.includeScope=test -Dmdep.outputFile=target/classpath.txt
+ * java -cp target/classes:target/test-classes:$(cat target/classpath.txt) org.openjdk.jmh.Main NumericLoopBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NumericLoopBenchmark {
+    static final int ITERATIONS = 100_000;
+
+    static final String LOOP =
+        "fun loop(n) {\n" +
+        "    var sum = 0;\n" +
+        "    var i = 0;\n" +
+        "    while (i < n) {\n" +
+        "        sum = sum + i * 2 - 1;\n" +
+        "        i = i + 1;\n" +
+        "    }\n" +
+        "    return sum;\n" +
+        "}\n" +
+        "loop(" + ITERATIONS + ");\n";
+
+    @Param({ "tree", "vm", "closure", "specializing", "jit" })
+    public String engine;
+
+    private LoxEngine runner;
+    private List<Stmt> loop;
+
+    @Setup
+    public void setUp () {
+        LoxInterpreter interpreter = new LoxInterpreter();
+        this.runner = Lox.engine(this.engine, interpreter);
+        this.loop = interpreter.parse(LOOP);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ITERATIONS)
+    public void loop () {
+        this.runner.interpret(this.loop);
+    }
+}
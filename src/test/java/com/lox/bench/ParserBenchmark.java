@@ -0,0 +1,74 @@
+package com.lox.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.lox.lexer.LoxLexer;
+import com.lox.lexer.TokenBuffer;
+import com.lox.parser.LoxGrammar;
+import com.lox.parser.LoxParser;
+import com.lox.parser.PrattGrammar;
+
+/**
+ * Parses an already lexed program. Scores are per token; run with `-prof gc`
+ * to get the bytes allocated per token (`gc.alloc.rate.norm`):
+ *
+ * <pre>
+ * mvn -B test-compile dependency:build-classpath -Dmdep.includeScope=test -Dmdep.outputFile=target/classpath.txt
+ * java -cp target/classes:target/test-classes:$(cat target/classpath.txt) org.openjdk.jmh.Main ParserBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+    static final String FUNCTION =
+        "fun f(a, b) {\n" +
+        "    if (a < b and b != nil) return a * (b + 1.5);\n" +
+        "    while (a > 0) a = a - 1;\n" +
+        "    return !a or f(a - 1, b) == \"s\";\n" +
+        "}\n";
+    static final int COPIES = 1000;
+    // 55 tokens per copy of `FUNCTION`, plus EOF
+    static final int TOKENS = 55 * COPIES + 1;
+
+    private TokenBuffer tokens;
+
+    @Setup
+    public void setUp () {
+        this.tokens = new LoxLexer(FUNCTION.repeat(COPIES)).tokenizeCompact();
+        if (this.tokens.size() != TOKENS) {
+            throw new IllegalStateException("expected " + TOKENS + " tokens, got " + this.tokens.size());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public Object recursiveDescent () {
+        LoxParser parser = new LoxParser(this.tokens, new LoxGrammar());
+        parser.parse();
+        return parser.program;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public Object pratt () {
+        LoxParser parser = new LoxParser(this.tokens, new PrattGrammar());
+        parser.parse();
+        return parser.program;
+    }
+}
@@ -0,0 +1,139 @@
+package com.lox.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import com.lox.lexer.LoxLexer;
+import com.lox.lexer.SymbolTable;
+import com.lox.parser.LoxParser;
+import com.lox.parser.PrattGrammar;
+import com.lox.parser.PrattGrammarTest;
+import com.lox.parser.ast.Stmt;
+
+import junit.framework.TestCase;
+
+public class AstCacheTest extends TestCase {
+
+    static final String[] CORPUS = {
+        "",
+        "var a = 1; var b; print a + 2.5 * -b;",
+        "fun fib(n) {\n    if (n < 2) return n;\n    return fib(n - 1) + fib(n - 2);\n}\nprint fib(10);",
+        "for (var i = 0; i < 10; i = i + 1) { if (i == 3) continue; else if (i > 8) break; else print i; }",
+        "var f = fun (a, b) { return; }; f(\"x\\\"y\", nil)(true, false);",
+        "while (!(x != \"caf\u00e9\")) { x = y = 1; }",
+    };
+
+    private Path directory;
+
+    @Override
+    protected void setUp () throws IOException {
+        this.directory = Files.createTempDirectory("lox-ast-cache");
+    }
+
+    @Override
+    protected void tearDown () throws IOException {
+        try (Stream<Path> paths = Files.walk(this.directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    public void testRoundTripsTheAst () throws IOException {
+        for (String source : CORPUS) {
+            List<Stmt> program = parse(source, new SymbolTable());
+
+            SymbolTable symbols = new SymbolTable();
+            List<Stmt> decoded = AstCodec.read(new DataInputStream(new ByteArrayInputStream(encode(program))), symbols);
+
+            assertEquals(PrattGrammarTest.describe(program), PrattGrammarTest.describe(decoded));
+        }
+    }
+
+    public void testDecodedNamesAreInterned () throws IOException {
+        SymbolTable symbols = new SymbolTable();
+        List<Stmt> program = parse("var x = 1; print x;", new SymbolTable());
+        List<Stmt> decoded = AstCodec.read(new DataInputStream(new ByteArrayInputStream(encode(program))), symbols);
+
+        Stmt.VarDeclStmt declaration = (Stmt.VarDeclStmt)decoded.get(0);
+        assertSame(symbols.intern("x"), declaration.identifier.lexeme);
+    }
+
+    public void testHitsOnlyForTheSameSourceAndVersion () {
+        AstCache cache = new AstCache(this.directory, AstCache.DEFAULT_MAX_SIZE, "1");
+        String key = cache.key(bytes(CORPUS[2]));
+        assertNull(cache.load(key, new SymbolTable()));
+
+        List<Stmt> program = parse(CORPUS[2], new SymbolTable());
+        cache.store(key, program);
+        List<Stmt> loaded = cache.load(key, new SymbolTable());
+        assertEquals(PrattGrammarTest.describe(program), PrattGrammarTest.describe(loaded));
+
+        assertFalse(key.equals(cache.key(bytes(CORPUS[1]))));
+        assertFalse(key.equals(new AstCache(this.directory, AstCache.DEFAULT_MAX_SIZE, "2").key(bytes(CORPUS[2]))));
+    }
+
+    public void testCorruptEntryIsAMiss () throws IOException {
+        AstCache cache = new AstCache(this.directory, AstCache.DEFAULT_MAX_SIZE, "1");
+        String key = cache.key(bytes(CORPUS[1]));
+        cache.store(key, parse(CORPUS[1], new SymbolTable()));
+
+        Path entry;
+        try (Stream<Path> entries = Files.list(this.directory)) {
+            entry = entries.findFirst().get();
+        }
+        byte[] truncated = Files.readAllBytes(entry);
+        Files.write(entry, Arrays.copyOf(truncated, truncated.length / 2));
+
+        assertNull(cache.load(key, new SymbolTable()));
+        assertFalse(Files.exists(entry));
+    }
+
+    public void testEvictsLeastRecentlyUsedEntries () throws IOException {
+        AstCache unbounded = new AstCache(this.directory, Long.MAX_VALUE, "1");
+        long entrySize = encode(parse(CORPUS[2], new SymbolTable())).length;
+        AstCache cache = new AstCache(this.directory, entrySize * 2, "1");
+
+        String[] keys = new String[3];
+        for (int i = 0; i < keys.length; i++) {
+            // same AST, distinct keys
+            keys[i] = unbounded.key(bytes(CORPUS[2] + "\n".repeat(i)));
+            cache.store(keys[i], parse(CORPUS[2], new SymbolTable()));
+            Files.setLastModifiedTime(this.directory.resolve(keys[i] + ".loxast"), FileTime.fromMillis(1000L * (i + 1)));
+        }
+
+        assertNull(cache.load(keys[0], new SymbolTable()));
+        assertNotNull(cache.load(keys[1], new SymbolTable()));
+        assertNotNull(cache.load(keys[2], new SymbolTable()));
+    }
+
+    // ===== HELPERS =====
+
+    static ByteBuffer bytes (String source) {
+        return ByteBuffer.wrap(source.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static List<Stmt> parse (String source, SymbolTable symbols) {
+        LoxParser parser = new LoxParser(new LoxLexer(source, false, symbols).tokenizeCompact(), new PrattGrammar());
+        parser.parse();
+        return parser.program;
+    }
+
+    static byte[] encode (List<Stmt> program) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        AstCodec.write(program, new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,130 @@
+package com.lox.interpreter;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.lox.lexer.LoxToken;
+import com.lox.parser.ast.Expr;
+import com.lox.parser.ast.Stmt;
+
+import junit.framework.TestCase;
+
+/**
+ * The `ConstantFolder` must replace what can be evaluated without running the
+ * program by its result, and leave everything else as it was parsed.
+ */
+public class ConstantFolderTest extends TestCase {
+
+    public void testOperatorsOnLiterals () {
+        assertFolds("(print 86400.0)", "print 60 * 60 * (24);");
+        assertFolds("(print \"prefix_suffix\")", "print \"prefix\" + \"_\" + \"suffix\";");
+        assertFolds("(print Infinity) (print true) (print true) (print false)", "print -(2 - 3) / 0; print 0 / 0 == 0 / 0; print !nil; print 1 == \"1\";");
+        assertFolds("(print (+ \"ab\" x)) (print (* x 1.0)) (print (+ x 3.0))", "print \"a\" + \"b\" + x; print x * 1; print x + (1 + 2);");
+    }
+
+    public void testFailingOperatorsAreKept () {
+        assertFolds("(print (+ 1.0 (- \"a\" 1.0)))", "print 1 + (\"a\" - 1);");
+        assertFolds("(print (- \"a\")) (print (< nil 1.0))", "print -\"a\"; print nil < 1;");
+    }
+
+    public void testLogicalOperators () {
+        assertFolds("(print nil) (print 1.0) (print x) (print (and x 2.0))", "print nil and f(); print 1 or f(); print nil or x; print x and 1 + 1;");
+    }
+
+    public void testDeadBranches () {
+        assertFolds("(if x (print 2.0) else (print 3.0))", "if (false) print 1; else if (x) print 2; else if (true) print 3; else print 4;");
+        assertFolds("(print 3.0)", "if (nil) print 1; else print 3;");
+        assertFolds("", "if (!true) print 1; while (1 > 2 or nil) print 2;");
+        assertFolds("{ (var i 0.0) } (while x { })", "for (var i = 0; false;) print i; while (x) if (false) print 1;");
+        assertFolds("(fun f (a) { (if a (return 1.0) else (return 2.0)) (return 3.0) })", "fun f(a) { if (a) return 1; else if (true) return 2; return 3; }");
+    }
+
+    public void testStreamedInputIsFolded () {
+        List<Stmt> streamed = new ArrayList<>();
+        new LoxInterpreter().interpret(new StringReader("print 60 * 60 * 24; if (!true) print 1; while (nil) print 2; print \"a\" + \"b\";"), streamed::addAll);
+        assertEquals("(print 86400.0) (print \"ab\")", render(streamed));
+    }
+
+    // ===== HELPERS =====
+
+    static void assertFolds (String expected, String source) {
+        assertEquals(source, expected, render(new LoxInterpreter().parse(source)));
+    }
+
+    /** Renders statements and expressions as s-expressions. */
+    static String render (List<? extends Stmt> statements) {
+        List<String> rendered = new ArrayList<>();
+        for (var statement : statements) {
+            rendered.add(render(statement));
+        }
+        return String.join(" ", rendered);
+    }
+
+    static String render (Stmt statement) {
+        if (statement instanceof Stmt.PrintStmt print) {
+            return "(print " + render(print.expression) + ")";
+        } else if (statement instanceof Stmt.ExpressionStmt expression) {
+            return "(; " + render(expression.expression) + ")";
+        } else if (statement instanceof Stmt.VarDeclStmt varDecl) {
+            return "(var " + varDecl.identifier.lexeme + (varDecl.expression == null ? "" : " " + render(varDecl.expression)) + ")";
+        } else if (statement instanceof Stmt.FunDeclStmt funDecl) {
+            return "(fun " + funDecl.identifier.lexeme + " " + parameters(funDecl.parameters) + " " + render(funDecl.body) + ")";
+        } else if (statement instanceof Stmt.ReturnStmt returnStmt) {
+            return returnStmt.expression == null ? "(return)" : "(return " + render(returnStmt.expression) + ")";
+        } else if (statement instanceof Stmt.BlockStmt block) {
+            return block.declarations.isEmpty() ? "{ }" : "{ " + render(block.declarations) + " }";
+        } else if (statement instanceof Stmt.IfStmt ifStmt) {
+            StringBuilder rendered = new StringBuilder("(if " + render(ifStmt.condition) + " " + render(ifStmt.statement));
+            for (var elseIf : ifStmt.elseIfStatements) {
+                rendered.append(" elif ").append(render(elseIf.condition)).append(" ").append(render(elseIf.statement));
+            }
+            if (ifStmt.elseStatement != null) {
+                rendered.append(" else ").append(render(ifStmt.elseStatement));
+            }
+            return rendered.append(")").toString();
+        } else if (statement instanceof Stmt.WhileStmt whileStmt) {
+            return "(while " + render(whileStmt.condition) + " " + render(whileStmt.statement) + ")";
+        } else if (statement instanceof Stmt.ForStmt forStmt) {
+            return "(for " + (forStmt.initializer == null ? "_" : render(forStmt.initializer)) + " " + render(forStmt.condition) + " " + render(forStmt.increment) + " " + render(forStmt.statement) + ")";
+        }
+        return ((Stmt.SingleKeywordStmt)statement).keyword.lexeme;
+    }
+
+    static String render (Expr expression) {
+        if (expression == null) {
+            return "_";
+        } else if (expression instanceof Expr.Literal literal) {
+            Object value = literal.token.literal;
+            return value == null ? "nil" : value instanceof String ? "\"" + value + "\"" : value.toString();
+        } else if (expression instanceof Expr.Variable variable) {
+            return variable.token.lexeme;
+        } else if (expression instanceof Expr.Binary binary) {
+            return "(" + binary.operator.lexeme + " " + render(binary.left) + " " + render(binary.right) + ")";
+        } else if (expression instanceof Expr.Logical logical) {
+            return "(" + logical.operator.lexeme + " " + render(logical.left) + " " + render(logical.right) + ")";
+        } else if (expression instanceof Expr.Unary unary) {
+            return "(" + unary.operator.lexeme + " " + render(unary.right) + ")";
+        } else if (expression instanceof Expr.Grouping group) {
+            return "(group " + render(group.expression) + ")";
+        } else if (expression instanceof Expr.Assignment assignment) {
+            return "(= " + assignment.variable.lexeme + " " + render(assignment.right) + ")";
+        } else if (expression instanceof Expr.Call call) {
+            StringBuilder rendered = new StringBuilder("(call " + render(call.callee));
+            for (var argument : call.arguments) {
+                rendered.append(" ").append(render(argument));
+            }
+            return rendered.append(")").toString();
+        }
+        Expr.AnonymousFunc function = (Expr.AnonymousFunc)expression;
+        return "(fun " + parameters(function.parameters) + " " + render(function.body) + ")";
+    }
+
+    private static String parameters (List<LoxToken> parameters) {
+        List<String> names = new ArrayList<>();
+        for (var parameter : parameters) {
+            names.add(parameter.lexeme);
+        }
+        return "(" + String.join(" ", names) + ")";
+    }
+}
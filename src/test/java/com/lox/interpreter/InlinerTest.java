@@ -0,0 +1,75 @@
+package com.lox.interpreter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.lox.jit.Jit;
+import com.lox.parser.ast.Expr;
+import com.lox.parser.ast.Stmt;
+
+import junit.framework.TestCase;
+
+/**
+ * The `Inliner` must mark the calls of small global functions, and only the
+ * calls it can be sure reach the function it marks them with.
+ */
+public class InlinerTest extends TestCase {
+
+    static final String SQ = "fun sq(x) { return x * x; } ";
+
+    public void testSmallFunctionsAreInlined () {
+        assertEquals(List.of(true, true), marks(SQ + "print sq(3); print sq(sq(2));"));
+        assertEquals(List.of(true), marks("fun two(a, b) { return a + b * 2; } print two(1, 2);"));
+
+        List<Stmt> program = inline(SQ + "fun g() { return sq(3); }");
+        Stmt.ReturnStmt returnStmt = (Stmt.ReturnStmt)((Stmt.FunDeclStmt)program.get(1)).body.declarations.get(0);
+        assertSame(program.get(0), ((Expr.Call)returnStmt.expression).inlined);
+    }
+
+    public void testBodiesThatAreNotASmallReturn () {
+        assertEquals(List.of(false), marks("fun fact(n) { return n * fact(n - 1); } print fact(3);"));
+        assertEquals(List.of(false), marks("fun big(x) { print x; return x; } print big(1);"));
+        assertEquals(List.of(false), marks("fun make() { return fun () { return 1; }; } print make();"));
+        assertEquals(List.of(false), marks("fun long(x) { return x + x + x + x + x + x + x + x + x; } print long(1);"));
+    }
+
+    public void testCallsThatMayNotReachTheFunction () {
+        assertEquals(List.of(false), marks(SQ + "print sq(1, 2);"));
+        assertEquals(List.of(false), marks(SQ + "fun sq(x) { return x; } print sq(2);"));
+        assertEquals(List.of(false), marks(SQ + "sq = nil; print sq(2);"));
+        assertEquals(List.of(false), marks("if (clock() > 0) { } else fun f(x) { return x; } print f(2);"));
+        assertEquals(List.of(false), marks("var f = 1; print f(2);"));
+        // local functions are looked up in their frame, not inlined
+        List<Stmt> program = inline(SQ + "{ fun sq(x) { return x; } print sq(2); }");
+        Stmt.PrintStmt print = (Stmt.PrintStmt)((Stmt.BlockStmt)program.get(1)).declarations.get(1);
+        assertNull(((Expr.Call)print.expression).inlined);
+    }
+
+    public void testNothingIsInlinedForTheJit () {
+        LoxInterpreter interpreter = new LoxInterpreter();
+        interpreter.enableJit(new Jit());
+        List<Stmt> program = interpreter.parse(SQ + "var s = sq(3);");
+        interpreter.interpret(program);
+        assertNull(((Expr.Call)((Stmt.VarDeclStmt)program.get(1)).expression).inlined);
+    }
+
+    // ===== HELPERS =====
+
+    static List<Stmt> inline (String source) {
+        List<Stmt> program = new LoxInterpreter().parse(source);
+        new Resolver().resolve(program);
+        new Inliner().inline(program);
+        return program;
+    }
+
+    /** Whether the call of each top-level `print` of `source` was inlined. */
+    static List<Boolean> marks (String source) {
+        List<Boolean> marks = new ArrayList<>();
+        for (var statement : inline(source)) {
+            if (statement instanceof Stmt.PrintStmt print) {
+                marks.add(((Expr.Call)print.expression).inlined != null);
+            }
+        }
+        return marks;
+    }
+}
@@ -0,0 +1,98 @@
+package com.lox.interpreter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+import com.lox.interpreter.exceptions.RuntimeError;
+import com.lox.parser.ast.Expr;
+import com.lox.parser.ast.Stmt;
+
+import junit.framework.TestCase;
+
+/**
+ * Resolved programs must behave exactly as if every scope were looked up by
+ * name, including closures over variables declared after them.
+ */
+public class ResolverTest extends TestCase {
+
+    public void testShadowing () {
+        assertOutput("1.0\n2.0\n1.0\n", "var a = 1; { print a; var a = 2; print a; } print a;");
+        assertOutput("1.0\n", "var a = 1; { var a = a; print a; }");
+        assertOutput("3.0\n", "{ var a = 1; var a = a + 2; print a; }");
+    }
+
+    public void testClosures () {
+        assertOutput("1.0\n", "{ fun f() { print x; } var x = 1; f(); }");
+        assertOutput("global\nlocal\n", "var x = \"global\"; { fun f() { print x; } f(); var x = \"local\"; f(); }");
+        assertOutput("1.0\n2.0\n", "fun counter() { var n = 0; return fun () { n = n + 1; return n; }; } var c = counter(); print c(); print c();");
+        assertOutput("2.0\n", "fun f(a, a) { return a; } print f(1, 2);");
+    }
+
+    public void testLoopsAndRecursion () {
+        assertOutput("55.0\n", "fun fib(n) { if (n < 2) return n; return fib(n - 1) + fib(n - 2); } print fib(10);");
+        assertOutput("45.0\n", "var sum = 0; for (var i = 0; i < 10; i = i + 1) { var j = i; sum = sum + j; } print sum;");
+        assertOutput("1.0\n1.0\n", "{ var i = 0; while ((i = i + 1) < 3) if (i > 1) print f(); else fun f() { return 1; } print f(); }");
+    }
+
+    public void testBlocksWithoutDeclarationsHaveNoFrame () {
+        List<Stmt> program = new LoxInterpreter().parse("{ var a = 1; { { print a; } } }");
+        new Resolver().resolve(program);
+        Stmt.BlockStmt inner = (Stmt.BlockStmt)((Stmt.BlockStmt)program.get(0)).declarations.get(1);
+        Stmt.PrintStmt print = (Stmt.PrintStmt)((Stmt.BlockStmt)inner.declarations.get(0)).declarations.get(0);
+        assertEquals(0, inner.locals.length);
+        assertEquals(0, ((Expr.Variable)print.expression).depth);
+
+        // frames of finished calls are reused by the next ones
+        assertOutput("210.0\n", "fun f(n) { if (n < 1) return 0; var m = n; { var k; k = f(n - 1); return k + m; } } print f(20);");
+        assertError("variable is uninitialized before use", "fun f(n) { var a; if (n > 0) { a = 1; return a; } return a; } f(1); f(0);");
+    }
+
+    public void testTailCallsAreMarked () {
+        List<Stmt> program = new LoxInterpreter().parse(
+            "fun f(n) { if (n > 0) return f(n - 1); while (n) return f(n); { return n + f(n); } return fun () { return f(n); }; }"
+        );
+        new Resolver().resolve(program);
+        List<Stmt> body = ((Stmt.FunDeclStmt)program.get(0)).body.declarations;
+        assertTrue(((Stmt.ReturnStmt)((Stmt.IfStmt)body.get(0)).statement).tailCall);
+        // a `return` in a loop must leave the loop before the call
+        assertFalse(((Stmt.ReturnStmt)((Stmt.WhileStmt)body.get(1)).statement).tailCall);
+        assertFalse(((Stmt.ReturnStmt)((Stmt.BlockStmt)body.get(2)).declarations.get(0)).tailCall);
+        Stmt.ReturnStmt closure = (Stmt.ReturnStmt)body.get(3);
+        assertFalse(closure.tailCall);
+        assertTrue(((Stmt.ReturnStmt)((Expr.AnonymousFunc)closure.expression).body.declarations.get(0)).tailCall);
+    }
+
+    public void testErrorsAreUnchanged () {
+        assertError("variable is uninitialized before use", "{ var a; print a; }");
+        assertError("cannot use an undeclared variable: b", "{ fun f() { print b; } f(); var b = 1; }");
+        assertError("undeclared variable", "{ c = 1; var c; }");
+    }
+
+    // ===== HELPERS =====
+
+    static void assertOutput (String expected, String source) {
+        PrintStream stdout = System.out;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(out));
+        try {
+            new LoxInterpreter().interpret(source);
+        } finally {
+            System.setOut(stdout);
+        }
+        assertEquals(source, expected, out.toString());
+    }
+
+    static void assertError (String message, String source) {
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(new ByteArrayOutputStream()));
+        try {
+            new LoxInterpreter().interpret(source);
+            fail("expected a RuntimeError: " + source);
+        } catch (RuntimeError e) {
+            assertEquals(source, message, e.getMessage());
+        } finally {
+            System.setOut(stdout);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.lox.jit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.jar.JarFile;
+
+import com.lox.interpreter.LoxInterpreter;
+
+import junit.framework.TestCase;
+
+public class AotCompilerTest extends TestCase {
+
+    static final String PROGRAM = String.join("\n",
+        "var greeting = \"tab\\there \\\"quoted\\\" \\\\ café\";",
+        "fun fib(n) { if (n < 2) return n; return fib(n - 1) + fib(n - 2); }",
+        "fun counter() { var c = 0; fun inc() { c = c + 1; return c; } return inc; }",
+        "fun sum(n) { var s = 0; var i = 0; while (i < n) { s = s + i; i = i + 1; } return s; }",
+        "fun describe(x) { if (x == nil) return \"nothing\"; return x; }",
+        "print greeting;",
+        "print fib(15);",
+        "var next = counter(); next(); print next();",
+        "print sum(1000);",
+        "print describe(nil); print describe(true); print describe(fib);"
+    );
+
+    private Path jar;
+
+    @Override
+    protected void setUp () throws IOException {
+        this.jar = Files.createTempFile("lox-aot", ".jar");
+    }
+
+    @Override
+    protected void tearDown () throws IOException {
+        Files.delete(this.jar);
+    }
+
+    public void testTheJarRunsTheProgram () throws Exception {
+        if (!new InMemoryCompiler().isAvailable()) {
+            return;
+        }
+        LoxInterpreter interpreter = new LoxInterpreter();
+        List<String> report = new AotCompiler().compile(interpreter.parse(PROGRAM), this.jar);
+        assertEquals(List.of(
+            "compiled 'fib'",
+            "interpreting 'counter': it declares a closure",
+            "compiled 'inc'",
+            "compiled 'sum'",
+            "compiled 'describe'"
+        ), report);
+
+        try (JarFile file = new JarFile(this.jar.toFile())) {
+            assertEquals(AotCompiler.MAIN_CLASS, file.getManifest().getMainAttributes().getValue("Main-Class"));
+            assertNull(file.getEntry("com/lox/App.class"));
+        }
+
+        // nothing but the jar and the JDK, as with `java -jar`
+        PrintStream stdout = System.out;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (URLClassLoader loader = new URLClassLoader(new URL[] { this.jar.toUri().toURL() }, ClassLoader.getPlatformClassLoader())) {
+            System.setOut(new PrintStream(out));
+            loader.loadClass(AotCompiler.MAIN_CLASS).getMethod("main", String[].class).invoke(null, (Object)new String[0]);
+        } finally {
+            System.setOut(stdout);
+        }
+
+        LoxInterpreter expected = new LoxInterpreter();
+        ByteArrayOutputStream interpreted = new ByteArrayOutputStream();
+        try {
+            System.setOut(new PrintStream(interpreted));
+            expected.interpret(expected.parse(PROGRAM));
+        } finally {
+            System.setOut(stdout);
+        }
+        assertEquals(interpreted.toString(), out.toString());
+    }
+}
@@ -0,0 +1,210 @@
+package com.lox.lexer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import junit.framework.TestCase;
+
+/**
+ * Differential tests: the `LoxScanner` (and the `TokenBuffer` and
+ * `StreamingTokenSource` and `ParallelLexer` built on it) must produce exactly
+ * the same token stream (and the same error output) as the `LoxTokenPattern`
+ * regex cascade.
+ */
+public class LoxLexerTest extends TestCase {
+
+    static final String[] CORPUS = {
+        "",
+        "var a = 1;\nprint a + 2.5;",
+        "fun fib(n) {\n    if (n < 2) return n;\n    return fib(n - 1) + fib(n - 2);\n}\nprint fib(10);",
+        "for (var i = 0; i <= 10; i = i + 1) { if (i != 3 and i >= 1 or !false) continue; else break; }",
+        "while (x == nil) { x = \"str\" + \"ing\"; }",
+        "var s = \"multi\nline\rstring\";\nprint s;",
+        "var e = \"escaped \\\" quote \\\\ backslash\";",
+        "class Foo { } this.super; return;",
+        "true1 false_ nil0 andor if_ elsewhere fun2 _var",
+        "1.2.3 .5 5. 12abc a1.b2",
+        "a\tb\u000Bc\fd\r\ne",
+        "if\u00e9 true\u00e9 if\u0301 nil\u0660",
+        "var x = 1; @ var y = 2;",
+        "\"unterminated",
+        "\"bad escape \\\n\"",
+        "a /b/ c*d-e+f;g,h",
+        "!=!==<=>=<>=",
+    };
+
+    static final String[] FRAGMENTS = {
+        "var", "fun", "if", "else", "and", "or", "true", "false", "nil", "while", "for", "return",
+        "print", "break", "continue", "class", "this", "super", "x", "y1", "_z", "\u00e9", "\u0301",
+        " ", " ", "\t", "\n", "\r", "\"", "\\", "\\\"", "1", "2.5", ".", "0.", "(", ")", "{", "}",
+        ",", ";", "-", "+", "/", "*", "!", "=", "<", ">", "#",
+    };
+
+    public void testScannerMatchesRegexPatternsOnCorpus () {
+        for (String source : CORPUS) {
+            assertSameTokens(source);
+        }
+    }
+
+    public void testScannerMatchesRegexPatternsOnRandomSources () {
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            StringBuilder source = new StringBuilder();
+            int fragments = random.nextInt(40);
+            for (int j = 0; j < fragments; j++) {
+                source.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+            }
+            assertSameTokens(source.toString());
+        }
+    }
+
+    public void testParallelLexerMatchesScanner () {
+        List<String> sources = new ArrayList<>(List.of(CORPUS));
+        sources.add("var a = \"one\ntwo\nthree\";\nprint a;\nvar b = 2;\nprint b;\n");
+        sources.add("print 1;\nprint \"a\nb\";\n@\nprint 2;\n");
+
+        Random random = new Random(7);
+        for (int i = 0; i < 200; i++) {
+            StringBuilder source = new StringBuilder();
+            int fragments = random.nextInt(200);
+            for (int j = 0; j < fragments; j++) {
+                source.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+            }
+            sources.add(source.toString());
+        }
+
+        for (String source : sources) {
+            List<String> expected = new ArrayList<>();
+            String expectedErr = lexCompact(source, expected);
+            for (int chunks = 1; chunks <= 8; chunks++) {
+                List<String> actual = new ArrayList<>();
+                String actualErr = lexParallel(source, chunks, actual);
+                assertEquals(chunks + " chunks of: " + source, expected, actual);
+                assertEquals(chunks + " chunk errors of: " + source, expectedErr, actualErr);
+            }
+        }
+    }
+
+    public void testIdentifiersAndStringsAreInterned () {
+        SymbolTable symbols = new SymbolTable();
+        TokenBuffer buffer = new LoxLexer("x = x + \"s\" + \"s\";", false, symbols).tokenizeCompact();
+
+        assertSame(buffer.token(0).lexeme, buffer.token(2).lexeme);
+        assertSame(buffer.token(4).literal, buffer.token(6).literal);
+        assertSame(symbols.intern("x"), buffer.token(0).literal);
+    }
+
+    // ===== HELPERS =====
+
+    static List<String> describe (List<LoxToken> tokens) {
+        List<String> described = new ArrayList<>();
+        for (LoxToken token : tokens) {
+            String literalType = token.literal == null ? "null" : token.literal.getClass().getSimpleName();
+            described.add(token.toString() + " [" + literalType + "]");
+        }
+        return described;
+    }
+
+    static String lex (String source, boolean useRegexPatterns, List<String> out) {
+        PrintStream err = System.err;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(captured));
+        try {
+            LoxLexer lexer = new LoxLexer(source, useRegexPatterns);
+            lexer.tokenize();
+            out.addAll(describe(lexer.tokens));
+        } finally {
+            System.setErr(err);
+        }
+        return captured.toString();
+    }
+
+    static String lexCompact (String source, List<String> out) {
+        PrintStream err = System.err;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(captured));
+        try {
+            TokenBuffer buffer = new LoxLexer(source).tokenizeCompact();
+            List<LoxToken> tokens = new ArrayList<>();
+            for (int i = 0; i < buffer.size(); i++) {
+                tokens.add(buffer.token(i));
+            }
+            out.addAll(describe(tokens));
+        } finally {
+            System.setErr(err);
+        }
+        return captured.toString();
+    }
+
+    static String lexParallel (String source, int chunks, List<String> out) {
+        PrintStream err = System.err;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(captured));
+        try {
+            ParallelLexer lexer = new ParallelLexer(source, new SymbolTable(), ForkJoinPool.commonPool());
+            TokenBuffer buffer = lexer.tokenize(chunks);
+            List<LoxToken> tokens = new ArrayList<>();
+            for (int i = 0; i < buffer.size(); i++) {
+                tokens.add(buffer.token(i));
+            }
+            out.addAll(describe(tokens));
+        } finally {
+            System.setErr(err);
+        }
+        return captured.toString();
+    }
+
+    /** Reads one character at a time to exercise refills of the lookahead window. */
+    static class TrickleReader extends StringReader {
+        TrickleReader (String source) {
+            super(source);
+        }
+
+        @Override
+        public int read (char[] buffer, int offset, int length) throws java.io.IOException {
+            return super.read(buffer, offset, Math.min(length, 1));
+        }
+    }
+
+    static String lexStreaming (String source, List<String> out) {
+        PrintStream err = System.err;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(captured));
+        try {
+            Reader reader = new TrickleReader(source);
+            TokenSource stream = new LoxLexer(reader, false, new SymbolTable()).tokenizeLazily(3);
+            List<LoxToken> tokens = new ArrayList<>();
+            for (int i = 0; stream.has(i); i++) {
+                tokens.add(stream.token(i));
+            }
+            out.addAll(describe(tokens));
+        } finally {
+            System.setErr(err);
+        }
+        return captured.toString();
+    }
+
+    static void assertSameTokens (String source) {
+        List<String> expected = new ArrayList<>();
+        List<String> actual = new ArrayList<>();
+        List<String> compact = new ArrayList<>();
+        List<String> streamed = new ArrayList<>();
+        String expectedErr = lex(source, true, expected);
+        String actualErr = lex(source, false, actual);
+        String compactErr = lexCompact(source, compact);
+        String streamedErr = lexStreaming(source, streamed);
+
+        assertEquals("tokens of: " + source, expected, actual);
+        assertEquals("errors of: " + source, expectedErr, actualErr);
+        assertEquals("compact tokens of: " + source, expected, compact);
+        assertEquals("compact errors of: " + source, expectedErr, compactErr);
+        assertEquals("streamed tokens of: " + source, expected, streamed);
+        assertEquals("streamed errors of: " + source, expectedErr, streamedErr);
+    }
+}
@@ -0,0 +1,125 @@
+package com.lox.parser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.List;
+import java.util.Random;
+
+import com.lox.lexer.LoxLexer;
+import com.lox.lexer.LoxToken;
+import com.lox.parser.exceptions.ParseError;
+
+import junit.framework.TestCase;
+
+/**
+ * Differential tests: the `PrattGrammar` must produce exactly the same ASTs
+ * (and the same parse errors) as the recursive descent `LoxGrammar`.
+ */
+public class PrattGrammarTest extends TestCase {
+
+    static final String[] CORPUS = {
+        "",
+        "print 1 + 2 * 3 - 4 / 5;",
+        "print 1 - 2 - 3; print 8 / 4 / 2;",
+        "print a and b or c and d; print a or b and c or d;",
+        "print !a == b != -c < d <= e > f >= g;",
+        "a = b = c + 1; var x = y = (1 + 2) * 3;",
+        "print f(1, g(2) + 3)(4) * -h();",
+        "var f = fun (a, b) { return a + b; }; f(fun () { print 1; });",
+        "if (a < b and c) print 1; else if (d) print 2; else print 3;",
+        "for (var i = 0; i < 10; i = i + 1) { while (i >= 5 or false) break; }",
+        "fun fib(n) { if (n < 2) return n; return fib(n - 1) + fib(n - 2); }",
+        "print --!!x; print (((1)));",
+        "print 1 +;",
+        "print (1 + 2;",
+        "a + b = c;",
+        "print 1 2;",
+        "print a and;",
+        "f(1,);",
+    };
+
+    static final String[] OPERANDS = {
+        "1", "2.5", "x", "\"s\"", "true", "nil", "f()", "g(x, 1)", "(a)", "-b", "!c", "(1 + y)",
+    };
+
+    static final String[] OPERATORS = {
+        "+", "-", "*", "/", "==", "!=", "<", "<=", ">", ">=", "and", "or",
+    };
+
+    public void testSameAstsOnCorpus () {
+        for (String source : CORPUS) {
+            assertSameAst(source);
+        }
+    }
+
+    public void testSameAstsOnRandomExpressions () {
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            StringBuilder source = new StringBuilder("print ");
+            int operands = 1 + random.nextInt(12);
+            for (int j = 0; j < operands; j++) {
+                if (j > 0) {
+                    source.append(' ').append(OPERATORS[random.nextInt(OPERATORS.length)]).append(' ');
+                }
+                // occasionally drop an operand to produce a parse error
+                if (random.nextInt(50) != 0) {
+                    source.append(OPERANDS[random.nextInt(OPERANDS.length)]);
+                }
+            }
+            source.append(';');
+            assertSameAst(source.toString());
+        }
+    }
+
+    // ===== HELPERS =====
+
+    static String parse (String source, LoxGrammar grammar) {
+        PrintStream out = System.out;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(captured));
+        try {
+            LoxParser parser = new LoxParser(new LoxLexer(source).tokenizeCompact(), grammar);
+            parser.parse();
+            return describe(parser.program);
+        } catch (ParseError e) {
+            return "ParseError: " + captured;
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    /**
+     * Renders an AST with every field of every node, so that two ASTs render
+     * the same only if they are structurally identical.
+     */
+    public static String describe (Object node) {
+        if (node == null) {
+            return "null";
+        } else if (node instanceof LoxToken) {
+            return node.toString();
+        } else if (node instanceof List) {
+            StringBuilder described = new StringBuilder("[");
+            for (Object element : (List<?>)node) {
+                described.append(describe(element)).append(", ");
+            }
+            return described.append("]").toString();
+        }
+
+        StringBuilder described = new StringBuilder(node.getClass().getSimpleName()).append("{");
+        for (Field field : node.getClass().getFields()) {
+            if (Modifier.isStatic(field.getModifiers())) continue;
+            try {
+                described.append(field.getName()).append(": ").append(describe(field.get(node))).append(", ");
+            } catch (IllegalAccessException e) {
+                throw new AssertionError(e);
+            }
+        }
+        return described.append("}").toString();
+    }
+
+    static void assertSameAst (String source) {
+        assertEquals("AST of: " + source, parse(source, new LoxGrammar()), parse(source, new PrattGrammar()));
+    }
+}